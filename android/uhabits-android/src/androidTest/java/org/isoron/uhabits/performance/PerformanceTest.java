@@ -27,9 +27,13 @@ import org.isoron.uhabits.core.commands.*;
 import org.isoron.uhabits.core.database.*;
 import org.isoron.uhabits.core.models.*;
 import org.isoron.uhabits.core.models.sqlite.*;
+import org.isoron.uhabits.core.models.sqlite.records.*;
+import org.isoron.uhabits.core.utils.*;
 import org.junit.*;
 import org.junit.runner.*;
 
+import java.util.*;
+
 import static org.isoron.uhabits.core.models.Timestamp.*;
 
 @RunWith(AndroidJUnit4.class)
@@ -86,4 +90,44 @@ public class PerformanceTest extends BaseAndroidTest
         db.setTransactionSuccessful();
         db.endTransaction();
     }
+
+    @Ignore
+    @Test(timeout = 5000)
+    public void benchmarkSetValues()
+    {
+        List<Repetition> reps = new ArrayList<>();
+        for (int i = 0; i < 20_000; i++)
+            reps.add(new Repetition(new Timestamp(i * DAY_LENGTH), 2));
+
+        Habit habit = fixtures.createEmptyHabit();
+        habit.getRepetitions().setValues(reps);
+    }
+
+    @Ignore
+    @Test(timeout = 5000)
+    public void benchmarkFindAllRepetitions()
+    {
+        List<Repetition> reps = new ArrayList<>();
+        for (int i = 0; i < 20_000; i++)
+            reps.add(new Repetition(new Timestamp(i * DAY_LENGTH), 2));
+
+        Habit habit = fixtures.createEmptyHabit();
+        habit.getRepetitions().setValues(reps);
+
+        Repository<RepetitionRecord> repository =
+            modelFactory.buildRepetitionListRepository();
+        repository.findAll("where habit = ? order by timestamp",
+            habit.getId().toString());
+    }
+
+    @Ignore
+    @Test(timeout = 5000)
+    public void benchmarkTruncate()
+    {
+        long from = timestamp(2000, Calendar.JANUARY, 1);
+        long to = timestamp(2020, Calendar.JANUARY, 1);
+        for (DateUtils.TruncateField field : DateUtils.TruncateField.values())
+            for (long t = from; t < to; t += DAY_LENGTH)
+                DateUtils.truncate(field, t, Calendar.SUNDAY);
+    }
 }
@@ -21,10 +21,13 @@ package org.isoron.uhabits
 
 import android.app.*
 import android.content.*
+import android.database.sqlite.*
 import org.isoron.androidbase.*
 import org.isoron.uhabits.core.database.*
+import org.isoron.uhabits.core.models.sqlite.*
 import org.isoron.uhabits.core.reminders.*
 import org.isoron.uhabits.core.ui.*
+import org.isoron.uhabits.core.ui.screens.habits.list.*
 import org.isoron.uhabits.core.utils.*
 import org.isoron.uhabits.utils.*
 import org.isoron.uhabits.widgets.*
@@ -46,7 +49,7 @@ class HabitsApplication : Application() {
 
         if (isTestMode()) {
             val db = DatabaseUtils.getDatabaseFile(context)
-            if (db.exists()) db.delete()
+            SQLiteDatabase.deleteDatabase(db)
         }
 
         try {
@@ -54,6 +57,8 @@ class HabitsApplication : Application() {
         } catch (e: UnsupportedDatabaseVersionException) {
             val db = DatabaseUtils.getDatabaseFile(context)
             db.renameTo(File(db.absolutePath + ".invalid"))
+            File(db.absolutePath + "-wal").renameTo(File(db.absolutePath + ".invalid-wal"))
+            File(db.absolutePath + "-shm").delete()
             DatabaseUtils.initializeDatabase(context)
         }
 
@@ -66,6 +71,14 @@ class HabitsApplication : Application() {
 
         DateUtils.setStartDayOffset(3, 0)
 
+        val modelFactory = component.modelFactory
+        if (modelFactory is SQLModelFactory) {
+            val snapshotFile = File(cacheDir, "habit_list.snapshot")
+            val counter = ChangeCounter(modelFactory.db)
+            component.habitCardListCache.setSnapshot(
+                    HabitCardListSnapshot(snapshotFile, counter))
+        }
+
         widgetUpdater = component.widgetUpdater
         widgetUpdater.startListening()
         widgetUpdater.scheduleStartDayWidgetUpdate()
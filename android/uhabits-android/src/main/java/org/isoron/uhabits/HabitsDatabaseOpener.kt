@@ -34,21 +34,25 @@ class HabitsDatabaseOpener(
         private val version: Int
 ) : SQLiteOpenHelper(context, databaseFilename, null, version) {
 
+    /**
+     * With write-ahead logging, SQLiteDatabase keeps a pool of read-only
+     * connections, and queries made outside of a transaction run on them.
+     * Widgets, sync and the habit list can then keep reading while an
+     * import or a sync merge is writing.
+     */
+    override fun onConfigure(db: SQLiteDatabase) {
+        super.onConfigure(db)
+        db.enableWriteAheadLogging()
+    }
+
     override fun onCreate(db: SQLiteDatabase) {
-        db.disableWriteAheadLogging()
         db.version = 8
         onUpgrade(db, -1, version)
     }
 
-    override fun onOpen(db: SQLiteDatabase) {
-        super.onOpen(db)
-        db.disableWriteAheadLogging()
-    }
-
     override fun onUpgrade(db: SQLiteDatabase,
                            oldVersion: Int,
                            newVersion: Int) {
-        db.disableWriteAheadLogging()
         if (db.version < 8) throw UnsupportedDatabaseVersionException()
         val helper = MigrationHelper(AndroidDatabase(db, File(databaseFilename)))
         helper.migrateTo(newVersion)
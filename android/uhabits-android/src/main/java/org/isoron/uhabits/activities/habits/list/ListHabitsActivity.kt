@@ -24,6 +24,7 @@ import kotlinx.coroutines.*
 import org.isoron.uhabits.*
 import org.isoron.uhabits.activities.*
 import org.isoron.uhabits.activities.habits.list.views.*
+import org.isoron.uhabits.core.models.sqlite.*
 import org.isoron.uhabits.core.preferences.*
 import org.isoron.uhabits.core.sync.*
 import org.isoron.uhabits.core.tasks.*
@@ -63,6 +64,10 @@ class ListHabitsActivity : HabitsActivity() {
         midnightTimer.onPause()
         screen.onDettached()
         adapter.cancelRefresh()
+        (appComponent.modelFactory as? SQLModelFactory)?.let {
+            it.repetitionWriteQueue.flushInBackground()
+            it.derivedDataCache.flushInBackground()
+        }
         scope.launch {
             syncManager.onPause()
         }
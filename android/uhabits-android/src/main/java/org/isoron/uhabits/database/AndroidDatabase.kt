@@ -21,6 +21,7 @@ package org.isoron.uhabits.database
 
 import android.content.*
 import android.database.sqlite.*
+import android.util.*
 import org.isoron.uhabits.core.database.*
 import java.io.*
 
@@ -29,18 +30,53 @@ class AndroidDatabase(
         private val file: File?,
 ) : Database {
 
-    override fun beginTransaction() = db.beginTransaction()
+    /**
+     * Compiled statements of the inserts, updates and deletes, keyed by
+     * their SQL. Queries are not cached here, since SQLiteDatabase already
+     * keeps its own cache of prepared statements for them.
+     *
+     * Statements are taken out of the cache while in use, see withStatement,
+     * so they are only closed when evicted or replaced, not when removed.
+     */
+    private val statements = object : LruCache<String, SQLiteStatement>(32) {
+        override fun entryRemoved(evicted: Boolean,
+                                  key: String,
+                                  oldValue: SQLiteStatement,
+                                  newValue: SQLiteStatement?) {
+            if (evicted || newValue != null) oldValue.close()
+        }
+    }
+
+    private val templates = HashMap<Template, String>()
+
+    private data class Template(val tableName: String,
+                                val columns: List<String>,
+                                val where: String?)
+
+    override fun beginTransaction() = db.beginTransactionNonExclusive()
     override fun setTransactionSuccessful() = db.setTransactionSuccessful()
     override fun endTransaction() = db.endTransaction()
-    override fun close() = db.close()
+    override fun close() {
+        synchronized(statements) { statements.evictAll() }
+        db.close()
+    }
     override fun getVersion() = db.version
 
     override fun getFile(): File? {
         return file
     }
 
-    override fun query(query: String, vararg params: String)
-            = AndroidCursor(db.rawQuery(query, params))
+    /**
+     * Parameters are bound by a cursor factory, since rawQuery only accepts
+     * strings, which SQLite would have to convert back into numbers.
+     */
+    override fun query(query: String, vararg params: Any?): Cursor {
+        val factory = SQLiteDatabase.CursorFactory { _, driver, editTable, q ->
+            bind(q, params)
+            SQLiteCursor(driver, editTable, q)
+        }
+        return AndroidCursor(db.rawQueryWithFactory(factory, query, null, null))
+    }
 
     override fun execute(query: String, vararg params: Any)
             = db.execSQL(query, params)
@@ -48,9 +84,10 @@ class AndroidDatabase(
     override fun update(tableName: String,
                         map: Map<String, Any?>,
                         where: String,
-                        vararg params: String): Int {
-        val values = mapToContentValues(map)
-        return db.update(tableName, values, where, params)
+                        vararg params: Any?): Int {
+        val columns = map.keys.toTypedArray()
+        val values = Array(columns.size) { map[columns[it]] }
+        return update(tableName, columns, values, where, *params)
     }
 
     override fun insert(tableName: String, map: Map<String, Any?>): Long? {
@@ -58,10 +95,123 @@ class AndroidDatabase(
         return db.insert(tableName, null, values)
     }
 
+    override fun insert(tableName: String,
+                        columns: Array<String>,
+                        values: Array<Any?>): Long? {
+        val sql = getInsertSql(tableName, columns)
+        return withStatement(sql) { st ->
+            bind(st, values)
+            st.executeInsert()
+        }
+    }
+
+    override fun update(tableName: String,
+                        columns: Array<String>,
+                        values: Array<Any?>,
+                        where: String,
+                        vararg params: Any?): Int {
+        val sql = getTemplate(Template(tableName, columns.toList(), where)) {
+            String.format("update %s set %s where %s", tableName,
+                          columns.joinToString(", ") { "$it=?" }, where)
+        }
+        return withStatement(sql) { st ->
+            bind(st, arrayOf(*values, *params))
+            st.executeUpdateDelete()
+        }
+    }
+
+    override fun executeBatch(query: String, rows: List<Array<Any?>>): IntArray {
+        db.beginTransactionNonExclusive()
+        try {
+            val counts = withStatement(query) { st ->
+                IntArray(rows.size) { i ->
+                    bind(st, rows[i])
+                    st.executeUpdateDelete()
+                }
+            }
+            db.setTransactionSuccessful()
+            return counts
+        } finally {
+            db.endTransaction()
+        }
+    }
+
+    override fun insertBatch(tableName: String,
+                             columns: Array<String>,
+                             rows: List<Array<Any?>>): LongArray {
+        val sql = getInsertSql(tableName, columns)
+        db.beginTransactionNonExclusive()
+        try {
+            val ids = withStatement(sql) { st ->
+                LongArray(rows.size) { i ->
+                    bind(st, rows[i])
+                    st.executeInsert()
+                }
+            }
+            db.setTransactionSuccessful()
+            return ids
+        } finally {
+            db.endTransaction()
+        }
+    }
+
     override fun delete(tableName: String,
                         where: String,
-                        vararg params: String) {
-        db.delete(tableName, where, params)
+                        vararg params: Any?) {
+        val sql = String.format("delete from %s where %s", tableName, where)
+        withStatement(sql) { st ->
+            bind(st, params)
+            st.executeUpdateDelete()
+        }
+    }
+
+    private fun getInsertSql(tableName: String, columns: Array<String>): String {
+        return getTemplate(Template(tableName, columns.toList(), null)) {
+            String.format("insert into %s(%s) values(%s)", tableName,
+                          columns.joinToString(", "),
+                          columns.joinToString(", ") { "?" })
+        }
+    }
+
+    private fun getTemplate(template: Template, build: () -> String): String {
+        synchronized(templates) {
+            return templates.getOrPut(template, build)
+        }
+    }
+
+    /**
+     * Runs the given block with a compiled statement for the given SQL. The
+     * cache lock is never held while the statement runs. Running SQL may wait
+     * for a transaction on another thread, and that thread may need the cache
+     * too. The statement is taken out of the cache instead, so concurrent
+     * uses of the same SQL each compile their own statement.
+     */
+    private inline fun <T> withStatement(sql: String,
+                                         block: (SQLiteStatement) -> T): T {
+        val st = synchronized(statements) { statements.remove(sql) }
+                ?: db.compileStatement(sql)
+        try {
+            return block(st)
+        } finally {
+            synchronized(statements) { statements.put(sql, st) }
+        }
+    }
+
+    private fun bind(st: SQLiteProgram, values: Array<out Any?>) {
+        st.clearBindings()
+        for ((i, value) in values.withIndex()) {
+            val index = i + 1
+            when (value) {
+                null -> st.bindNull(index)
+                is Int -> st.bindLong(index, value.toLong())
+                is Long -> st.bindLong(index, value)
+                is Double -> st.bindDouble(index, value)
+                is Float -> st.bindDouble(index, value.toDouble())
+                is String -> st.bindString(index, value)
+                else -> throw IllegalStateException(
+                        "unsupported type: " + value)
+            }
+        }
     }
 
     private fun mapToContentValues(map: Map<String, Any?>): ContentValues {
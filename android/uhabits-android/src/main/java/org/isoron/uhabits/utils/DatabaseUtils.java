@@ -20,6 +20,7 @@
 package org.isoron.uhabits.utils;
 
 import android.content.*;
+import android.database.*;
 import android.database.sqlite.*;
 import android.util.*;
 
@@ -30,6 +31,8 @@ import org.isoron.androidbase.utils.*;
 import org.isoron.uhabits.*;
 import org.isoron.uhabits.core.*;
 import org.isoron.uhabits.core.Config;
+import org.isoron.uhabits.core.models.*;
+import org.isoron.uhabits.core.models.sqlite.*;
 import org.isoron.uhabits.core.utils.*;
 
 import java.io.*;
@@ -79,6 +82,14 @@ public abstract class DatabaseUtils
         String filename = String.format(format, dir.getAbsolutePath(), date);
         Log.i("DatabaseUtils", "Writing: " + filename);
 
+        // Recent changes may still be queued, or in the write-ahead log,
+        // instead of the database file itself
+        HabitsApplication app = (HabitsApplication) context.getApplicationContext();
+        ModelFactory modelFactory = app.getComponent().getModelFactory();
+        if (modelFactory instanceof SQLModelFactory)
+            ((SQLModelFactory) modelFactory).repetitionWriteQueue.flush();
+        checkpoint();
+
         File db = getDatabaseFile(context);
         File dbCopy = new File(filename);
         FileUtilsKt.copyTo(db, dbCopy);
@@ -86,6 +97,19 @@ public abstract class DatabaseUtils
         return dbCopy.getAbsolutePath();
     }
 
+    /**
+     * Moves all the changes in the write-ahead log back into the database
+     * file, so that the file can be copied on its own.
+     */
+    public static void checkpoint()
+    {
+        try (Cursor c = openDatabase().rawQuery(
+            "pragma wal_checkpoint(full)", null))
+        {
+            c.moveToNext();
+        }
+    }
+
     @NonNull
     public static SQLiteDatabase openDatabase()
     {
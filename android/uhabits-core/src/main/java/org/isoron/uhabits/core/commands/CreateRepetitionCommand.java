@@ -54,7 +54,7 @@ public class CreateRepetitionCommand implements Command
     {
         RepetitionList reps = habit.getRepetitions();
         reps.setValue(timestamp, value);
-        habitList.resort();
+        habitList.reposition(habit);
     }
 
     @NonNull
@@ -0,0 +1,55 @@
+/*
+ * Copyright (C) 2017 linson Santos Xavier <isoron@gmail.com>
+ *
+ * This file is part of Loop Habit Tracker.
+ *
+ * Loop Habit Tracker is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * Loop Habit Tracker is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.isoron.uhabits.core.database;
+
+import androidx.annotation.*;
+
+/**
+ * Counter stored in the database, which the database itself increments,
+ * through triggers, whenever a habit or a repetition is inserted, updated or
+ * removed.
+ * <p>
+ * The counter can be used to check whether anything derived from the habits
+ * or from the repetitions is still up to date. It starts at a random value,
+ * so that the counters of two different databases are unlikely to match.
+ * The table and the triggers are created by migration 26.
+ */
+public class ChangeCounter
+{
+    @NonNull
+    private final Database db;
+
+    public ChangeCounter(@NonNull Database db)
+    {
+        this.db = db;
+    }
+
+    /**
+     * Returns the current value of the counter.
+     */
+    public long get()
+    {
+        try (Cursor c = db.query("select value from ChangeCounter where id = 1"))
+        {
+            if (!c.moveToNext()) throw new IllegalStateException();
+            return c.getLong(0);
+        }
+    }
+}
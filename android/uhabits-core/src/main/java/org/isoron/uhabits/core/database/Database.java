@@ -22,9 +22,18 @@ package org.isoron.uhabits.core.database;
 import java.io.*;
 import java.util.*;
 
+/**
+ * Database used by the models.
+ * <p>
+ * Parameters of queries and statements are bound according to their type.
+ * Implementations accept null, Integer, Long, Double, Float and String
+ * parameters, and throw IllegalStateException for any other type. Numbers
+ * should be passed as numbers, so that SQLite does not have to convert them
+ * back from text.
+ */
 public interface Database
 {
-    Cursor query(String query, String... params);
+    Cursor query(String query, Object... params);
 
     default void query(String query, ProcessCallback callback)
     {
@@ -37,14 +46,55 @@ public interface Database
     int update(String tableName,
                Map<String, Object> values,
                String where,
-               String... params);
+               Object... params);
 
     Long insert(String tableName, Map<String, Object> values);
 
-    void delete(String tableName, String where, String... params);
+    /**
+     * Inserts a row with the given columns, where values[i] is the value of
+     * columns[i]. Unlike the map-based variant, the columns of a table are
+     * usually the same on every call, so implementations may build the SQL
+     * statement once for each table and set of columns, and reuse it.
+     */
+    default Long insert(String tableName, String columns[], Object values[])
+    {
+        return insert(tableName, toMap(columns, values));
+    }
+
+    /**
+     * Updates the rows matching the given where clause, setting each of the
+     * given columns to the corresponding value. See the array-based insert
+     * for more details.
+     */
+    default int update(String tableName,
+                       String columns[],
+                       Object values[],
+                       String where,
+                       Object... params)
+    {
+        return update(tableName, toMap(columns, values), where, params);
+    }
+
+    void delete(String tableName, String where, Object... params);
 
     void execute(String query, Object... params);
 
+    /**
+     * Executes the given statement once for each row of parameters, as a
+     * single transaction, and returns the number of rows changed by each
+     * execution. The statement is prepared only once.
+     */
+    int[] executeBatch(String query, List<Object[]> rows);
+
+    /**
+     * Inserts the given rows, as a single transaction, and returns the id of
+     * each inserted row. For each row, values[i] is the value of columns[i].
+     * Unlike the other inserts, null values are stored as null, instead of
+     * being left out of the statement. The id column of every row must be
+     * null, so that the ids are generated by the database.
+     */
+    long[] insertBatch(String tableName, String columns[], List<Object[]> rows);
+
     void beginTransaction();
 
     void setTransactionSuccessful();
@@ -57,6 +107,13 @@ public interface Database
 
     File getFile();
 
+    static Map<String, Object> toMap(String columns[], Object values[])
+    {
+        Map<String, Object> map = new HashMap<>();
+        for (int i = 0; i < columns.length; i++) map.put(columns[i], values[i]);
+        return map;
+    }
+
     interface ProcessCallback
     {
         void process(Cursor cursor);
@@ -27,9 +27,21 @@ public class JdbcCursor implements Cursor
 {
     private ResultSet resultSet;
 
+    private Runnable onClose;
+
     public JdbcCursor(ResultSet resultSet)
+    {
+        this(resultSet, null);
+    }
+
+    /**
+     * Creates a cursor that runs the given callback once it is closed, so
+     * that the statement that produced the result set can be reused.
+     */
+    public JdbcCursor(ResultSet resultSet, Runnable onClose)
     {
         this.resultSet = resultSet;
+        this.onClose = onClose;
     }
 
     @Override
@@ -38,6 +50,8 @@ public class JdbcCursor implements Cursor
         try
         {
             resultSet.close();
+            if (onClose != null) onClose.run();
+            onClose = null;
         }
         catch (SQLException e)
         {
@@ -24,25 +24,85 @@ import org.apache.commons.lang3.*;
 import java.io.*;
 import java.sql.*;
 import java.util.*;
+import java.util.concurrent.locks.*;
 
+/**
+ * Database backed by a JDBC connection.
+ * <p>
+ * Prepared statements are kept in a small LRU cache, keyed by their SQL, so
+ * that repeated queries and updates are only compiled once. The SQL of the
+ * array-based inserts and updates is also built once for each table and set
+ * of columns. Parameters are bound according to their type, so that SQLite
+ * does not have to convert numbers back from text.
+ * <p>
+ * When opened from a URL, the database is switched to write-ahead logging,
+ * and all writes go through a single writer connection, while queries run
+ * on a small pool of read-only connections. Queries made by the thread that
+ * holds an open transaction still run on the writer, so that they see the
+ * changes of that transaction. Other threads can keep reading the last
+ * committed data while a long transaction, such as an import, is running.
+ */
 public class JdbcDatabase implements Database
 {
-    private Connection connection;
+    private static final int STATEMENT_CACHE_SIZE = 32;
+
+    public static final int DEFAULT_MAX_READERS = 4;
+
+    private final PooledConnection writer;
+
+    /**
+     * Serializes the writes. It is held for as long as a transaction is
+     * open, so that the writes of other threads do not become part of it.
+     */
+    private final ReentrantLock writeLock = new ReentrantLock();
+
+    private final String url;
+
+    private final int maxReaders;
+
+    private final ArrayDeque<PooledConnection> idleReaders = new ArrayDeque<>();
+
+    private int readerCount;
+
+    private boolean closed;
 
     private boolean transactionSuccessful;
 
+    private boolean transactionFailed;
+
+    private int transactionDepth;
+
+    private final HashMap<Template, String> templates = new HashMap<>();
+
+    /**
+     * Creates a database that runs every query and update on the given
+     * connection. This is the only option for in-memory databases, which
+     * cannot be shared between connections.
+     */
     public JdbcDatabase(Connection connection)
     {
-        this.connection = connection;
+        this.writer = new PooledConnection(connection);
+        this.url = null;
+        this.maxReaders = 0;
     }
 
-    @Override
-    public Cursor query(String query, String... params)
+    /**
+     * Opens the database at the given URL in write-ahead logging mode, with
+     * one writer connection and up to the given number of reader connections.
+     * The readers are only opened when needed.
+     */
+    public JdbcDatabase(String url, int maxReaders)
     {
         try
         {
-            PreparedStatement st = buildStatement(query, params);
-            return new JdbcCursor(st.executeQuery());
+            Connection connection = DriverManager.getConnection(url);
+            try (Statement st = connection.createStatement())
+            {
+                st.execute("pragma journal_mode=wal");
+            }
+            this.writer = new PooledConnection(connection);
+            this.url = url;
+            this.maxReaders = maxReaders;
         }
         catch (SQLException e)
         {
@@ -50,148 +110,430 @@ public class JdbcDatabase implements Database
         }
     }
 
+    public JdbcDatabase(String url)
+    {
+        this(url, DEFAULT_MAX_READERS);
+    }
+
+    @Override
+    public Cursor query(String query, Object... params)
+    {
+        if (!writeLock.isHeldByCurrentThread())
+        {
+            PooledConnection reader = acquireReader();
+            if (reader != null)
+            {
+                try
+                {
+                    return reader.query(query, params,
+                        () -> releaseReader(reader));
+                }
+                catch (RuntimeException e)
+                {
+                    releaseReader(reader);
+                    throw e;
+                }
+            }
+        }
+
+        writeLock.lock();
+        try
+        {
+            return writer.query(query, params, null);
+        }
+        finally
+        {
+            writeLock.unlock();
+        }
+    }
+
     @Override
     public int update(String tableName,
                       Map<String, Object> map,
                       String where,
-                      String... params)
+                      Object... params)
     {
+        ArrayList<String> fields = new ArrayList<>();
+        ArrayList<Object> values = new ArrayList<>();
+
+        for (Map.Entry<String, Object> entry : map.entrySet())
+        {
+            if (entry.getValue() == null) continue;
+            fields.add(entry.getKey() + "=?");
+            values.add(entry.getValue());
+        }
+        values.addAll(Arrays.asList(params));
+
+        String query = String.format("update %s set %s where %s", tableName,
+            StringUtils.join(fields, ", "), where);
+
+        return executeUpdate(query, values.toArray());
+    }
+
+    @Override
+    public int update(String tableName,
+                      String columns[],
+                      Object values[],
+                      String where,
+                      Object... params)
+    {
+        Object args[] = new Object[countNonNull(values) + params.length];
+        int n = copyNonNull(values, args);
+        System.arraycopy(params, 0, args, n, params.length);
+
+        String query = getTemplate(new Template(Template.UPDATE, tableName,
+            columns, values, where));
+
+        return executeUpdate(query, args);
+    }
+
+    @Override
+    public Long insert(String tableName, Map<String, Object> map)
+    {
+        ArrayList<String> fields = new ArrayList<>();
+        ArrayList<Object> params = new ArrayList<>();
+        ArrayList<String> questionMarks = new ArrayList<>();
+
+        for (Map.Entry<String, Object> entry : map.entrySet())
+        {
+            if (entry.getValue() == null) continue;
+            fields.add(entry.getKey());
+            params.add(entry.getValue());
+            questionMarks.add("?");
+        }
+
+        String query =
+            String.format("insert into %s(%s) values(%s)", tableName,
+                StringUtils.join(fields, ", "),
+                StringUtils.join(questionMarks, ", "));
+
+        return executeInsert(query, params.toArray());
+    }
+
+    @Override
+    public Long insert(String tableName, String columns[], Object values[])
+    {
+        Object args[] = new Object[countNonNull(values)];
+        copyNonNull(values, args);
+
+        String query = getTemplate(new Template(Template.INSERT, tableName,
+            columns, values, null));
+
+        return executeInsert(query, args);
+    }
+
+    @Override
+    public void delete(String tableName, String where, Object... params)
+    {
+        String query =
+            String.format("delete from %s where %s", tableName, where);
+        execute(query, params);
+    }
+
+    @Override
+    public void execute(String query, Object... params)
+    {
+        writeLock.lock();
         try
         {
-            ArrayList<String> fields = new ArrayList<>();
-            ArrayList<String> values = new ArrayList<>();
+            PreparedStatement st = writer.getStatement(query).statement;
+            bind(st, params);
+            st.execute();
+        }
+        catch (SQLException e)
+        {
+            throw new RuntimeException(e);
+        }
+        finally
+        {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Batches use their own statement, prepared once for the whole batch,
+     * since the SQLite driver does not fully reset a statement after
+     * executing a batch, and it could not be reused for single updates.
+     */
+    @Override
+    public int[] executeBatch(String query, List<Object[]> rows)
+    {
+        if (rows.isEmpty()) return new int[0];
 
-            for (Map.Entry<String, Object> entry : map.entrySet())
+        beginTransaction();
+        try (PreparedStatement st = writer.connection.prepareStatement(query))
+        {
+            for (Object row[] : rows)
             {
-                if (entry.getValue() == null) continue;
-                fields.add(entry.getKey() + "=?");
-                values.add(entry.getValue().toString());
+                bind(st, row);
+                st.addBatch();
             }
-            values.addAll(Arrays.asList(params));
-
-            String query = String.format("update %s set %s where %s", tableName,
-                StringUtils.join(fields, ", "), where);
-
-            PreparedStatement st = buildStatement(query, values.toArray());
-            return st.executeUpdate();
+            int counts[] = st.executeBatch();
+            setTransactionSuccessful();
+            return counts;
         }
         catch (SQLException e)
         {
             throw new RuntimeException(e);
         }
+        finally
+        {
+            endTransaction();
+        }
     }
 
+    /**
+     * JDBC batches do not return the generated keys, so only the id of the
+     * last row is read. Since the rows leave their ids to SQLite, and no one
+     * else can use the writer while the batch runs, each row gets the id
+     * that follows the one of the previous row.
+     */
     @Override
-    public Long insert(String tableName, Map<String, Object> map)
+    public long[] insertBatch(String tableName,
+                              String columns[],
+                              List<Object[]> rows)
     {
+        if (rows.isEmpty()) return new long[0];
+
+        String query = getTemplate(new Template(Template.INSERT, tableName,
+            columns, new boolean[columns.length], null));
+
+        beginTransaction();
         try
         {
-            ArrayList<String> fields = new ArrayList<>();
-            ArrayList<Object> params = new ArrayList<>();
-            ArrayList<String> questionMarks = new ArrayList<>();
+            executeBatch(query, rows);
 
-            for (Map.Entry<String, Object> entry : map.entrySet())
+            long last;
+            try (Cursor c = query("select last_insert_rowid()"))
             {
-                if (entry.getValue() == null) continue;
-                fields.add(entry.getKey());
-                params.add(entry.getValue());
-                questionMarks.add("?");
+                c.moveToNext();
+                last = c.getLong(0);
             }
 
-            String query =
-                String.format("insert into %s(%s) values(%s)", tableName,
-                    StringUtils.join(fields, ", "),
-                    StringUtils.join(questionMarks, ", "));
+            long ids[] = new long[rows.size()];
+            for (int i = 0; i < ids.length; i++)
+                ids[i] = last - ids.length + 1 + i;
 
-            PreparedStatement st = buildStatement(query, params.toArray());
-            st.execute();
+            setTransactionSuccessful();
+            return ids;
+        }
+        finally
+        {
+            endTransaction();
+        }
+    }
 
-            Long id = null;
-            ResultSet keys = st.getGeneratedKeys();
-            if (keys.next()) id = keys.getLong(1);
-            return id;
+    private int executeUpdate(String query, Object params[])
+    {
+        writeLock.lock();
+        try
+        {
+            PreparedStatement st = writer.getStatement(query).statement;
+            bind(st, params);
+            return st.executeUpdate();
         }
         catch (SQLException e)
         {
             throw new RuntimeException(e);
         }
+        finally
+        {
+            writeLock.unlock();
+        }
     }
 
-    @Override
-    public void delete(String tableName, String where, String... params)
+    private Long executeInsert(String query, Object params[])
     {
-        String query =
-            String.format("delete from %s where %s", tableName, where);
-        execute(query, (Object[]) params);
+        writeLock.lock();
+        try
+        {
+            PreparedStatement st = writer.getStatement(query).statement;
+            bind(st, params);
+            st.execute();
+
+            try (ResultSet keys = st.getGeneratedKeys())
+            {
+                if (keys.next()) return keys.getLong(1);
+                return null;
+            }
+        }
+        catch (SQLException e)
+        {
+            throw new RuntimeException(e);
+        }
+        finally
+        {
+            writeLock.unlock();
+        }
     }
 
-    @Override
-    public void execute(String query, Object... params)
+    /**
+     * Returns an idle reader, opening a new one if the pool is not full yet.
+     * Returns null if there are no readers, or if all of them are busy, in
+     * which case the query runs on the writer.
+     */
+    private PooledConnection acquireReader()
     {
+        synchronized (idleReaders)
+        {
+            if (closed) throw new IllegalStateException("database is closed");
+            PooledConnection reader = idleReaders.poll();
+            if (reader != null || readerCount >= maxReaders) return reader;
+            readerCount++;
+        }
+
         try
         {
-            buildStatement(query, params).execute();
+            Connection connection = DriverManager.getConnection(url);
+            try (Statement st = connection.createStatement())
+            {
+                st.execute("pragma query_only=1");
+            }
+            return new PooledConnection(connection);
         }
         catch (SQLException e)
         {
+            synchronized (idleReaders)
+            {
+                readerCount--;
+            }
             throw new RuntimeException(e);
         }
     }
 
-    private PreparedStatement buildStatement(String query, Object[] params)
+    private void releaseReader(PooledConnection reader)
+    {
+        synchronized (idleReaders)
+        {
+            if (!closed)
+            {
+                idleReaders.push(reader);
+                return;
+            }
+        }
+        reader.close();
+    }
+
+    private String getTemplate(Template template)
+    {
+        synchronized (templates)
+        {
+            String query = templates.get(template);
+            if (query == null)
+            {
+                query = template.build();
+                templates.put(template, query);
+            }
+            return query;
+        }
+    }
+
+    private static void bind(PreparedStatement st, Object params[])
         throws SQLException
     {
-        PreparedStatement st = connection.prepareStatement(query);
-        int index = 1;
-        for (Object param : params) st.setString(index++, param.toString());
-        return st;
+        for (int i = 0; i < params.length; i++)
+        {
+            Object param = params[i];
+            int index = i + 1;
+            if (param == null) st.setNull(index, Types.NULL);
+            else if (param instanceof Long) st.setLong(index, (Long) param);
+            else if (param instanceof Integer) st.setInt(index, (Integer) param);
+            else if (param instanceof Double) st.setDouble(index, (Double) param);
+            else if (param instanceof Float) st.setDouble(index, (Float) param);
+            else if (param instanceof String) st.setString(index, (String) param);
+            else throw new IllegalStateException("unsupported type: " + param);
+        }
+    }
+
+    private static int countNonNull(Object values[])
+    {
+        int count = 0;
+        for (Object v : values) if (v != null) count++;
+        return count;
+    }
+
+    private static int copyNonNull(Object values[], Object dest[])
+    {
+        int n = 0;
+        for (Object v : values) if (v != null) dest[n++] = v;
+        return n;
     }
 
     @Override
-    public synchronized void beginTransaction()
+    public void beginTransaction()
     {
+        writeLock.lock();
         try
         {
-            connection.setAutoCommit(false);
+            // Nested transactions are part of the outermost one, as on Android
+            if (transactionDepth == 0)
+            {
+                writer.connection.setAutoCommit(false);
+                transactionFailed = false;
+            }
+            transactionDepth++;
             transactionSuccessful = false;
         }
         catch (SQLException e)
         {
+            writeLock.unlock();
             throw new RuntimeException(e);
         }
     }
 
     @Override
-    public synchronized void setTransactionSuccessful()
+    public void setTransactionSuccessful()
     {
         transactionSuccessful = true;
     }
 
     @Override
-    public synchronized void endTransaction()
+    public void endTransaction()
     {
         try
         {
-            if (transactionSuccessful) connection.commit();
-            else connection.rollback();
-            connection.setAutoCommit(true);
+            if (!transactionSuccessful) transactionFailed = true;
+            transactionSuccessful = false;
+            if (--transactionDepth > 0) return;
+
+            if (transactionFailed) writer.connection.rollback();
+            else writer.connection.commit();
+            writer.connection.setAutoCommit(true);
         }
         catch (SQLException e)
         {
             throw new RuntimeException(e);
         }
+        finally
+        {
+            writeLock.unlock();
+        }
     }
 
+    /**
+     * Closes the writer and the idle readers. Readers that still have an
+     * open cursor are closed together with it.
+     */
     @Override
     public void close()
     {
+        ArrayList<PooledConnection> readers;
+        synchronized (idleReaders)
+        {
+            closed = true;
+            readers = new ArrayList<>(idleReaders);
+            idleReaders.clear();
+        }
+        for (PooledConnection reader : readers) reader.close();
+
+        writeLock.lock();
         try
         {
-            connection.close();
+            writer.close();
         }
-        catch (SQLException e)
+        finally
         {
-            throw new RuntimeException(e);
+            writeLock.unlock();
         }
     }
 
@@ -210,4 +552,248 @@ public class JdbcDatabase implements Database
     {
         return null;
     }
+
+    /**
+     * A connection, together with its cache of prepared statements.
+     */
+    private static class PooledConnection
+    {
+        final Connection connection;
+
+        private final LinkedHashMap<String, CachedStatement> statements =
+            new LinkedHashMap<String, CachedStatement>(16, 0.75f, true)
+            {
+                @Override
+                protected boolean removeEldestEntry(
+                    Map.Entry<String, CachedStatement> eldest)
+                {
+                    if (size() <= STATEMENT_CACHE_SIZE) return false;
+                    eldest.getValue().evict();
+                    return true;
+                }
+            };
+
+        PooledConnection(Connection connection)
+        {
+            this.connection = connection;
+        }
+
+        /**
+         * Runs the given query. The callback, if any, runs after the cursor
+         * and its statement have been released.
+         */
+        synchronized Cursor query(String query,
+                                  Object params[],
+                                  Runnable onClose)
+        {
+            try
+            {
+                // A statement can only have one open result set. If a
+                // previous cursor over the same query is still open, a
+                // separate statement is used, and closed together with its
+                // cursor.
+                CachedStatement cached = getStatement(query);
+                CachedStatement st = cached.open ?
+                    new CachedStatement(connection.prepareStatement(query)) :
+                    cached;
+
+                bind(st.statement, params);
+                ResultSet rs = st.statement.executeQuery();
+                st.open = true;
+                return new JdbcCursor(rs, () ->
+                {
+                    release(st, cached);
+                    if (onClose != null) onClose.run();
+                });
+            }
+            catch (SQLException e)
+            {
+                throw new RuntimeException(e);
+            }
+        }
+
+        /**
+         * Returns the cached statement for the given SQL, preparing it if
+         * needed.
+         */
+        synchronized CachedStatement getStatement(String query)
+            throws SQLException
+        {
+            CachedStatement cached = statements.get(query);
+            if (cached == null)
+            {
+                cached = new CachedStatement(connection.prepareStatement(query));
+                statements.put(query, cached);
+            }
+            return cached;
+        }
+
+        private synchronized void release(CachedStatement st,
+                                          CachedStatement cached)
+        {
+            st.open = false;
+            if (st != cached) st.evicted = true;
+            if (!st.evicted) return;
+            try
+            {
+                st.statement.close();
+            }
+            catch (SQLException e)
+            {
+                throw new RuntimeException(e);
+            }
+        }
+
+        synchronized void close()
+        {
+            try
+            {
+                for (CachedStatement st : statements.values())
+                    st.statement.close();
+                statements.clear();
+                connection.close();
+            }
+            catch (SQLException e)
+            {
+                throw new RuntimeException(e);
+            }
+        }
+    }
+
+    private static class CachedStatement
+    {
+        final PreparedStatement statement;
+
+        /**
+         * True while a cursor over the results of this statement is open.
+         */
+        boolean open;
+
+        /**
+         * True if this statement has been removed from the cache. It is
+         * closed immediately, or once its cursor is closed.
+         */
+        boolean evicted;
+
+        CachedStatement(PreparedStatement statement)
+        {
+            this.statement = statement;
+        }
+
+        void evict()
+        {
+            evicted = true;
+            if (open) return;
+            try
+            {
+                statement.close();
+            }
+            catch (SQLException e)
+            {
+                throw new RuntimeException(e);
+            }
+        }
+    }
+
+    /**
+     * Identifies the SQL of an array-based insert or update. Since null
+     * values are left out of the statement, the template also depends on
+     * which of the values are null.
+     */
+    private static class Template
+    {
+        static final int INSERT = 0;
+
+        static final int UPDATE = 1;
+
+        final int kind;
+
+        final String tableName;
+
+        final String columns[];
+
+        final boolean nulls[];
+
+        final String where;
+
+        final int hash;
+
+        Template(int kind,
+                 String tableName,
+                 String columns[],
+                 Object values[],
+                 String where)
+        {
+            this(kind, tableName, columns, findNulls(values), where);
+        }
+
+        Template(int kind,
+                 String tableName,
+                 String columns[],
+                 boolean nulls[],
+                 String where)
+        {
+            this.kind = kind;
+            this.tableName = tableName;
+            this.columns = columns;
+            this.where = where;
+            this.nulls = nulls;
+
+            int h = kind;
+            h = 31 * h + tableName.hashCode();
+            h = 31 * h + Arrays.hashCode(columns);
+            h = 31 * h + Arrays.hashCode(nulls);
+            h = 31 * h + (where == null ? 0 : where.hashCode());
+            this.hash = h;
+        }
+
+        static boolean[] findNulls(Object values[])
+        {
+            boolean nulls[] = new boolean[values.length];
+            for (int i = 0; i < values.length; i++) nulls[i] = values[i] == null;
+            return nulls;
+        }
+
+        String build()
+        {
+            ArrayList<String> fields = new ArrayList<>();
+            for (int i = 0; i < columns.length; i++)
+                if (!nulls[i]) fields.add(columns[i]);
+
+            if (kind == INSERT)
+            {
+                String questionMarks[] = new String[fields.size()];
+                Arrays.fill(questionMarks, "?");
+                return String.format("insert into %s(%s) values(%s)",
+                    tableName, StringUtils.join(fields, ", "),
+                    StringUtils.join(questionMarks, ", "));
+            }
+            else
+            {
+                return String.format("update %s set %s=? where %s", tableName,
+                    StringUtils.join(fields, "=?, "), where);
+            }
+        }
+
+        @Override
+        public boolean equals(Object o)
+        {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+
+            Template other = (Template) o;
+            return hash == other.hash &&
+                   kind == other.kind &&
+                   tableName.equals(other.tableName) &&
+                   Arrays.equals(columns, other.columns) &&
+                   Arrays.equals(nulls, other.nulls) &&
+                   Objects.equals(where, other.where);
+        }
+
+        @Override
+        public int hashCode()
+        {
+            return hash;
+        }
+    }
 }
@@ -0,0 +1,67 @@
+/*
+ * Copyright (C) 2017 linson Santos Xavier <isoron@gmail.com>
+ *
+ * This file is part of Loop Habit Tracker.
+ *
+ * Loop Habit Tracker is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * Loop Habit Tracker is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.isoron.uhabits.core.database;
+
+import androidx.annotation.*;
+
+/**
+ * Copies the columns of a table to and from the records of a
+ * {@link Repository}.
+ * <p>
+ * By default, repositories find the columns of their records by reflection,
+ * using the {@link Column} annotations. Records that are loaded in large
+ * numbers should name a mapper in their {@link Table} annotation instead,
+ * which reads and writes each field directly. Mappers must be stateless, and
+ * must have a public constructor without arguments.
+ */
+public interface RecordMapper<T>
+{
+    /**
+     * Returns the names of the columns, in the order in which they are read
+     * and written by this mapper. The returned array must not be modified.
+     */
+    @NonNull
+    String[] getColumnNames();
+
+    /**
+     * Creates a new record, with every field set to null.
+     */
+    @NonNull
+    T newRecord();
+
+    /**
+     * Copies the current row of the given cursor into the record. The row
+     * must contain the columns returned by {@link #getColumnNames()}, in the
+     * same order.
+     */
+    void read(@NonNull T record, @NonNull Cursor cursor);
+
+    /**
+     * Copies the fields of the record into the given array, which has one
+     * entry for each column returned by {@link #getColumnNames()}, in the
+     * same order.
+     */
+    void write(@NonNull T record, @NonNull Object values[]);
+
+    @Nullable
+    Long getId(@NonNull T record);
+
+    void setId(@NonNull T record, @Nullable Long id);
+}
@@ -0,0 +1,199 @@
+/*
+ * Copyright (C) 2017 linson Santos Xavier <isoron@gmail.com>
+ *
+ * This file is part of Loop Habit Tracker.
+ *
+ * Loop Habit Tracker is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * Loop Habit Tracker is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.isoron.uhabits.core.database;
+
+import androidx.annotation.*;
+
+import java.lang.reflect.*;
+import java.util.*;
+
+/**
+ * Implementation of {@link RecordMapper} that finds the columns of a record
+ * by reflection, using its {@link Column} annotations. The fields are looked
+ * up once, when the mapper is created.
+ */
+public class ReflectionRecordMapper<T> implements RecordMapper<T>
+{
+    private static final int INTEGER = 0;
+
+    private static final int LONG = 1;
+
+    private static final int DOUBLE = 2;
+
+    private static final int STRING = 3;
+
+    @NonNull
+    private final Constructor<T> constructor;
+
+    @NonNull
+    private final Field fields[];
+
+    @NonNull
+    private final int types[];
+
+    @NonNull
+    private final String columnNames[];
+
+    @NonNull
+    private final Field idField;
+
+    @SuppressWarnings("unchecked")
+    public ReflectionRecordMapper(@NonNull Class<T> klass, @NonNull String idName)
+    {
+        constructor = (Constructor<T>) klass.getDeclaredConstructors()[0];
+        constructor.setAccessible(true);
+
+        List<Field> fieldList = new ArrayList<>();
+        List<String> names = new ArrayList<>();
+        for (Field field : klass.getDeclaredFields())
+        {
+            Column column = field.getAnnotation(Column.class);
+            if (column == null) continue;
+
+            String name = column.name();
+            if (name.isEmpty()) name = field.getName();
+            if (names.contains(name))
+                throw new RuntimeException("duplicated column : " + name);
+
+            fieldList.add(field);
+            names.add(name);
+        }
+
+        fields = fieldList.toArray(new Field[0]);
+        columnNames = names.toArray(new String[0]);
+
+        types = new int[fields.length];
+        Field id = null;
+        for (int i = 0; i < fields.length; i++)
+        {
+            types[i] = getType(fields[i]);
+            if (fields[i].getName().equals(idName)) id = fields[i];
+        }
+
+        if (id == null) throw new RuntimeException("Field not found: " + idName);
+        idField = id;
+    }
+
+    private static int getType(@NonNull Field field)
+    {
+        if (field.getType().isAssignableFrom(Integer.class)) return INTEGER;
+        if (field.getType().isAssignableFrom(Long.class)) return LONG;
+        if (field.getType().isAssignableFrom(Double.class)) return DOUBLE;
+        if (field.getType().isAssignableFrom(String.class)) return STRING;
+        throw new RuntimeException(
+            "Type not supported: " + field.getType().getName() + " " +
+            field.getName());
+    }
+
+    @NonNull
+    @Override
+    public String[] getColumnNames()
+    {
+        return columnNames;
+    }
+
+    @NonNull
+    @Override
+    public T newRecord()
+    {
+        try
+        {
+            return constructor.newInstance();
+        }
+        catch (Exception e)
+        {
+            throw new RuntimeException(e);
+        }
+    }
+
+    @Override
+    public void read(@NonNull T record, @NonNull Cursor cursor)
+    {
+        try
+        {
+            for (int i = 0; i < fields.length; i++)
+            {
+                switch (types[i])
+                {
+                    case INTEGER:
+                        fields[i].set(record, cursor.getInt(i));
+                        break;
+
+                    case LONG:
+                        fields[i].set(record, cursor.getLong(i));
+                        break;
+
+                    case DOUBLE:
+                        fields[i].set(record, cursor.getDouble(i));
+                        break;
+
+                    default:
+                        fields[i].set(record, cursor.getString(i));
+                        break;
+                }
+            }
+        }
+        catch (IllegalAccessException e)
+        {
+            throw new RuntimeException(e);
+        }
+    }
+
+    @Override
+    public void write(@NonNull T record, @NonNull Object values[])
+    {
+        try
+        {
+            for (int i = 0; i < fields.length; i++)
+                values[i] = fields[i].get(record);
+        }
+        catch (IllegalAccessException e)
+        {
+            throw new RuntimeException(e);
+        }
+    }
+
+    @Nullable
+    @Override
+    public Long getId(@NonNull T record)
+    {
+        try
+        {
+            return (Long) idField.get(record);
+        }
+        catch (IllegalAccessException e)
+        {
+            throw new RuntimeException(e);
+        }
+    }
+
+    @Override
+    public void setId(@NonNull T record, @Nullable Long id)
+    {
+        try
+        {
+            idField.set(record, id);
+        }
+        catch (IllegalAccessException e)
+        {
+            throw new RuntimeException(e);
+        }
+    }
+}
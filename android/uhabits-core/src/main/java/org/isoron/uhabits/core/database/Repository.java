@@ -22,24 +22,77 @@ package org.isoron.uhabits.core.database;
 import androidx.annotation.*;
 
 import org.apache.commons.lang3.*;
-import org.apache.commons.lang3.tuple.*;
 
-import java.lang.annotation.*;
-import java.lang.reflect.*;
 import java.util.*;
 
+/**
+ * Stores records of a given class in a table of the database.
+ * <p>
+ * Columns are copied to and from the records by a {@link RecordMapper}. If
+ * the {@link Table} annotation of the class names one, it is used. Otherwise,
+ * the columns are found by reflection. Mappers are created once for each
+ * class, and shared by every repository of that class.
+ */
 public class Repository<T>
 {
-    @NonNull
-    private final Class klass;
+    private static final Map<Class<?>, RecordMapper<?>> mappers = new HashMap<>();
 
     @NonNull
     private final Database db;
 
+    @NonNull
+    private final RecordMapper<T> mapper;
+
+    @NonNull
+    private final String tableName;
+
+    @NonNull
+    private final String idName;
+
+    @NonNull
+    private final String selectQuery;
+
+    @NonNull
+    private final String whereId;
+
+    @NonNull
+    private final String updateQuery;
+
+    @NonNull
+    private final String insertQuery;
+
     public Repository(@NonNull Class<T> klass, @NonNull Database db)
     {
-        this.klass = klass;
+        this(klass, db, getMapper(klass));
+    }
+
+    /**
+     * Creates a repository that uses the given mapper, instead of the one
+     * named by the {@link Table} annotation of the class.
+     */
+    public Repository(@NonNull Class<T> klass,
+                      @NonNull Database db,
+                      @NonNull RecordMapper<T> mapper)
+    {
+        Table table = getTableAnnotation(klass);
+        if (table.name().isEmpty())
+            throw new RuntimeException("Table name is empty");
+        if (table.id().isEmpty())
+            throw new RuntimeException("Table id is empty");
+
         this.db = db;
+        this.mapper = mapper;
+        this.tableName = table.name();
+        this.idName = table.id();
+        this.selectQuery = String.format("select %s from %s ",
+            StringUtils.join(mapper.getColumnNames(), ", "), tableName);
+        this.whereId = idName + "=?";
+        this.updateQuery = String.format("update %s set %s=? where %s",
+            tableName, StringUtils.join(mapper.getColumnNames(), "=?, "),
+            whereId);
+        this.insertQuery = String.format("insert into %s(%s) values(%s)",
+            tableName, StringUtils.join(mapper.getColumnNames(), ", "),
+            StringUtils.repeat("?", ", ", mapper.getColumnNames().length));
     }
 
     /**
@@ -49,8 +102,7 @@ public class Repository<T>
     @Nullable
     public T find(@NonNull Long id)
     {
-        return findFirst(String.format("where %s=?", getIdName()),
-            id.toString());
+        return findFirst("where " + whereId, id);
     }
 
     /**
@@ -61,12 +113,31 @@ public class Repository<T>
      * records are found, returns an empty list.
      */
     @NonNull
-    public List<T> findAll(@NonNull String query, @NonNull String... params)
+    public List<T> findAll(@NonNull String query, @NonNull Object... params)
     {
-        try (Cursor c = db.query(buildSelectQuery() + query, params))
+        List<T> records = new ArrayList<>();
+        try (RecordIterator<T> it = iterate(query, params))
         {
-            return cursorToMultipleRecords(c);
+            while (it.hasNext()) records.add(it.next());
         }
+        return records;
+    }
+
+    /**
+     * Returns an iterator over the records matching the given SQL query.
+     * See findAll for more details about the parameters.
+     * <p>
+     * Each record is read from the database only when it is requested, so
+     * that large tables can be processed without holding every record in
+     * memory. The iterator must be closed after use, unless every record has
+     * been read.
+     */
+    @NonNull
+    public RecordIterator<T> iterate(@NonNull String query,
+                                     @NonNull Object... params)
+    {
+        return new RecordIterator<>(db.query(selectQuery + query, params),
+            mapper);
     }
 
     /**
@@ -74,15 +145,30 @@ public class Repository<T>
      * See findAll for more details about the parameters.
      */
     @Nullable
-    public T findFirst(String query, String... params)
+    public T findFirst(String query, Object... params)
     {
-        try (Cursor c = db.query(buildSelectQuery() + query, params))
+        try (Cursor c = db.query(selectQuery + query, params))
         {
             if (!c.moveToNext()) return null;
             return cursorToSingleRecord(c);
         }
     }
 
+    /**
+     * Returns the number of records matching the given SQL query.
+     * See findAll for more details about the parameters.
+     */
+    public long count(@NonNull String query, @NonNull Object... params)
+    {
+        try (Cursor c = db.query(
+            String.format("select count(*) from %s ", tableName) + query,
+            params))
+        {
+            c.moveToNext();
+            return c.getLong(0);
+        }
+    }
+
     /**
      * Executes the given SQL query on the repository.
      * <p>
@@ -100,7 +186,9 @@ public class Repository<T>
      * <p>
      * If the callback terminates without throwing any exceptions, the
      * transaction is considered successful. If any exceptions are thrown,
-     * the transaction is aborted. Nesting transactions is not allowed.
+     * the transaction is aborted. If a transaction is already open, the
+     * callback becomes part of it, and nothing is committed until the
+     * outermost transaction ends.
      */
     public void executeAsTransaction(Runnable callback)
     {
@@ -134,222 +222,233 @@ public class Repository<T>
      */
     public void save(T record)
     {
-        try
-        {
-            Field fields[] = getFields();
-            String columns[] = getColumnNames();
-
-            Map<String, Object> values = new HashMap<>();
-            for (int i = 0; i < fields.length; i++)
-                values.put(columns[i], fields[i].get(record));
+        String columns[] = mapper.getColumnNames();
+        Object row[] = new Object[columns.length];
+        mapper.write(record, row);
 
-            Long id = (Long) getIdField().get(record);
-            int affectedRows = 0;
+        Long id = mapper.getId(record);
+        int affectedRows = 0;
 
-            if (id != null) affectedRows =
-                db.update(getTableName(), values, getIdName() + "=?",
-                    id.toString());
-
-            if (id == null || affectedRows == 0)
-            {
-                id = db.insert(getTableName(), values);
-                getIdField().set(record, id);
-            }
+        if (id != null) affectedRows =
+            db.update(tableName, columns, row, whereId, id);
 
-        }
-        catch (Exception e)
+        if (id == null || affectedRows == 0)
         {
-            throw new RuntimeException(e);
+            id = db.insert(tableName, columns, row);
+            mapper.setId(record, id);
         }
     }
 
     /**
-     * Removes the given record from the repository.
-     * The id of the given record is also set to null.
+     * Saves all the given records on the database, as a single transaction.
+     * <p>
+     * This is equivalent to calling save for each record, except that the
+     * updates and the inserts are each sent to the database as one batch,
+     * and that null columns are stored as null, instead of being left out.
      */
-    public void remove(T record)
+    public void saveAll(@NonNull Collection<T> records)
     {
-        try
-        {
-            Long id = (Long) getIdField().get(record);
-            if (id == null) return;
-
-            db.delete(getTableName(), getIdName() + "=?", id.toString());
-            getIdField().set(record, null);
-        }
-        catch (Exception e)
-        {
-            throw new RuntimeException(e);
-        }
+        if (records.isEmpty()) return;
+        executeAsTransaction(() -> insertAll(updateRecords(records)));
     }
 
-    @NonNull
-    private List<T> cursorToMultipleRecords(Cursor c)
+    /**
+     * Updates all the given records on the database, as a single batch.
+     * <p>
+     * Records that have a null id, or that are not in the database, are
+     * skipped. Null columns are stored as null.
+     */
+    public void updateAll(@NonNull Collection<T> records)
     {
-        List<T> records = new LinkedList<>();
-        while (c.moveToNext()) records.add(cursorToSingleRecord(c));
-        return records;
+        if (records.isEmpty()) return;
+        updateRecords(records);
     }
 
+    /**
+     * Updates the given records, and returns the ones that were not updated,
+     * either because their ids are null, or because they are not in the
+     * database yet.
+     */
     @NonNull
-    private T cursorToSingleRecord(Cursor cursor)
+    private List<T> updateRecords(@NonNull Collection<T> records)
     {
-        try
-        {
-            Constructor constructor = klass.getDeclaredConstructors()[0];
-            constructor.setAccessible(true);
-            T record = (T) constructor.newInstance();
+        String columns[] = mapper.getColumnNames();
+        List<T> updated = new ArrayList<>();
+        List<Object[]> rows = new ArrayList<>();
+        List<T> missing = new ArrayList<>();
 
-            int index = 0;
-            for (Field field : getFields())
-                copyFieldFromCursor(record, field, cursor, index++);
-            return record;
-        }
-        catch (Exception e)
+        for (T record : records)
         {
-            throw new RuntimeException(e);
+            Long id = mapper.getId(record);
+            if (id == null)
+            {
+                missing.add(record);
+                continue;
+            }
+
+            Object row[] = new Object[columns.length + 1];
+            mapper.write(record, row);
+            row[columns.length] = id;
+            updated.add(record);
+            rows.add(row);
         }
-    }
 
-    private void copyFieldFromCursor(T record, Field field, Cursor c, int index)
-        throws IllegalAccessException
-    {
-        if (field.getType().isAssignableFrom(Integer.class))
-            field.set(record, c.getInt(index));
-        else if (field.getType().isAssignableFrom(Long.class))
-            field.set(record, c.getLong(index));
-        else if (field.getType().isAssignableFrom(Double.class))
-            field.set(record, c.getDouble(index));
-        else if (field.getType().isAssignableFrom(String.class))
-            field.set(record, c.getString(index));
-        else throw new RuntimeException(
-                "Type not supported: " + field.getType().getName() + " " +
-                field.getName());
-    }
+        if (rows.isEmpty()) return missing;
 
-    private String buildSelectQuery()
-    {
-        return String.format("select %s from %s ",
-            StringUtils.join(getColumnNames(), ", "), getTableName());
+        int counts[] = db.executeBatch(updateQuery, rows);
+        for (int i = 0; i < counts.length; i++)
+            if (counts[i] == 0) missing.add(updated.get(i));
+
+        return missing;
     }
 
-    private List<Pair<Field, Column>> getFieldColumnPairs()
+    /**
+     * Inserts the given records. Records that already have ids are inserted
+     * with these ids, and the others receive ids generated by the database.
+     */
+    private void insertAll(@NonNull List<T> records)
     {
-        List<Pair<Field, Column>> fields = new ArrayList<>();
-        for (Field field : klass.getDeclaredFields())
-            for (Annotation annotation : field.getAnnotations())
+        String columns[] = mapper.getColumnNames();
+        List<T> created = new ArrayList<>();
+        List<Object[]> createdRows = new ArrayList<>();
+        List<Object[]> rowsWithId = new ArrayList<>();
+
+        for (T record : records)
+        {
+            Object row[] = new Object[columns.length];
+            mapper.write(record, row);
+            if (mapper.getId(record) != null)
             {
-                if (!(annotation instanceof Column)) continue;
-                Column column = (Column) annotation;
-                fields.add(new ImmutablePair<>(field, column));
+                rowsWithId.add(row);
             }
-        return fields;
-    }
+            else
+            {
+                created.add(record);
+                createdRows.add(row);
+            }
+        }
 
-    private Field[] cacheFields = null;
+        if (!rowsWithId.isEmpty()) db.executeBatch(insertQuery, rowsWithId);
+        if (createdRows.isEmpty()) return;
 
-    @NonNull
-    private Field[] getFields()
+        long ids[] = db.insertBatch(tableName, columns, createdRows);
+        for (int i = 0; i < ids.length; i++)
+            mapper.setId(created.get(i), ids[i]);
+    }
+
+    /**
+     * Removes the given record from the repository.
+     * The id of the given record is also set to null.
+     */
+    public void remove(T record)
     {
-        if (cacheFields == null)
-        {
-            List<Field> fields = new ArrayList<>();
-            List<Pair<Field, Column>> columns = getFieldColumnPairs();
-            for (Pair<Field, Column> pair : columns) fields.add(pair.getLeft());
-            cacheFields = fields.toArray(new Field[]{});
-        }
+        Long id = mapper.getId(record);
+        if (id == null) return;
 
-        return cacheFields;
+        db.delete(tableName, whereId, id);
+        mapper.setId(record, null);
     }
 
-    private String[] cacheColumnNames = null;
+    @NonNull
+    private T cursorToSingleRecord(Cursor cursor)
+    {
+        T record = mapper.newRecord();
+        mapper.read(record, cursor);
+        return record;
+    }
 
     @NonNull
-    private String[] getColumnNames()
+    @SuppressWarnings("unchecked")
+    private static synchronized <T> RecordMapper<T> getMapper(@NonNull Class<T> klass)
     {
-        if (cacheColumnNames == null)
+        RecordMapper<T> mapper = (RecordMapper<T>) mappers.get(klass);
+        if (mapper != null) return mapper;
+
+        Table table = getTableAnnotation(klass);
+        if (table.mapper() == RecordMapper.class)
         {
-            List<String> names = new ArrayList<>();
-            List<Pair<Field, Column>> columns = getFieldColumnPairs();
-            for (Pair<Field, Column> pair : columns)
+            mapper = new ReflectionRecordMapper<>(klass, table.id());
+        }
+        else
+        {
+            try
             {
-                String cname = pair.getRight().name();
-                if (cname.isEmpty()) cname = pair.getLeft().getName();
-                if (names.contains(cname))
-                    throw new RuntimeException("duplicated column : " + cname);
-                names.add(cname);
+                mapper = table.mapper().getConstructor().newInstance();
+            }
+            catch (Exception e)
+            {
+                throw new RuntimeException(e);
             }
-
-            cacheColumnNames = names.toArray(new String[]{});
         }
 
-        return cacheColumnNames;
+        mappers.put(klass, mapper);
+        return mapper;
     }
 
-    private String cacheTableName = null;
-
     @NonNull
-    private String getTableName()
+    private static Table getTableAnnotation(@NonNull Class<?> klass)
     {
-        if (cacheTableName == null)
-        {
-            String name = getTableAnnotation().name();
-            if (name.isEmpty()) throw new RuntimeException("Table name is empty");
-            cacheTableName = name;
-        }
-        return cacheTableName;
+        Table t = klass.getAnnotation(Table.class);
+        if (t == null) throw new RuntimeException("Table annotation not found");
+        return t;
     }
 
-    private String cacheIdName = null;
-
-    @NonNull
-    private String getIdName()
+    /**
+     * Iterator over the records of a query. The underlying cursor is closed
+     * when the iterator is closed, or when the last record has been read.
+     */
+    public static final class RecordIterator<T>
+        implements Iterator<T>, AutoCloseable
     {
-        if (cacheIdName == null)
-        {
-            String id = getTableAnnotation().id();
-            if (id.isEmpty()) throw new RuntimeException("Table id is empty");
-            cacheIdName = id;
-        }
+        @NonNull
+        private final Cursor cursor;
 
-        return cacheIdName;
-    }
+        @NonNull
+        private final RecordMapper<T> mapper;
 
-    private Field cacheIdField = null;
+        private boolean hasNext;
 
-    @NonNull
-    private Field getIdField()
-    {
-        if (cacheIdField == null)
+        private boolean closed;
+
+        private RecordIterator(@NonNull Cursor cursor,
+                               @NonNull RecordMapper<T> mapper)
         {
-            Field fields[] = getFields();
-            String idName = getIdName();
-            for (Field f : fields)
-                if (f.getName().equals(idName))
-                {
-                    cacheIdField = f;
-                    break;
-                }
-
-            if (cacheIdField == null)
-                throw new RuntimeException("Field not found: " + idName);
+            this.cursor = cursor;
+            this.mapper = mapper;
+            advance();
         }
 
-        return cacheIdField;
-    }
+        @Override
+        public boolean hasNext()
+        {
+            return hasNext;
+        }
 
-    @NonNull
-    private Table getTableAnnotation()
-    {
-        Table t = null;
-        for (Annotation annotation : klass.getAnnotations())
+        @NonNull
+        @Override
+        public T next()
         {
-            if (!(annotation instanceof Table)) continue;
-            t = (Table) annotation;
-            break;
+            if (!hasNext) throw new NoSuchElementException();
+
+            T record = mapper.newRecord();
+            mapper.read(record, cursor);
+            advance();
+            return record;
         }
 
-        if (t == null) throw new RuntimeException("Table annotation not found");
-        return t;
+        @Override
+        public void close()
+        {
+            if (closed) return;
+            closed = true;
+            hasNext = false;
+            cursor.close();
+        }
+
+        private void advance()
+        {
+            hasNext = cursor.moveToNext();
+            if (!hasNext) close();
+        }
     }
 }
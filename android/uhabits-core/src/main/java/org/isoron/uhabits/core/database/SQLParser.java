@@ -21,6 +21,7 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Locale;
 
 class Tokenizer {
 
@@ -92,11 +93,18 @@ public class SQLParser {
 
         try {
             final Tokenizer tokenizer = new Tokenizer(buffer);
+            final TriggerScanner trigger = new TriggerScanner();
+            final StringBuilder word = new StringBuilder();
             int state = STATE_NONE;
 
             while (tokenizer.hasNext()) {
                 final char c = (char) tokenizer.next();
 
+                if (state == STATE_NONE && !isWordChar(c) && word.length() > 0) {
+                    trigger.onWord(word.toString());
+                    word.setLength(0);
+                }
+
                 if (state == STATE_COMMENT_BLOCK) {
                     if (tokenizer.skip("*/")) {
                         state = STATE_NONE;
@@ -118,9 +126,13 @@ public class SQLParser {
                     continue;
 
                 } else if (state == STATE_NONE && c == ';') {
-                    final String command = sb.toString().trim();
-                    commands.add(command);
+                    if (trigger.isIncomplete()) {
+                        sb.append(c);
+                        continue;
+                    }
+                    commands.add(sb.toString().trim());
                     sb.setLength(0);
+                    trigger.reset();
                     continue;
 
                 } else if (state == STATE_NONE && c == '\'') {
@@ -139,6 +151,9 @@ public class SQLParser {
                     } else {
                         sb.append(c);
                     }
+                    if (state == STATE_NONE && isWordChar(c)) {
+                        word.append(c);
+                    }
                 }
             }
 
@@ -160,4 +175,62 @@ public class SQLParser {
     private static boolean isWhitespace(final char c) {
         return c == '\r' || c == '\n' || c == '\t' || c == ' ';
     }
+
+    private static boolean isWordChar(final char c) {
+        return Character.isLetterOrDigit(c) || c == '_';
+    }
+
+    /**
+     * The body of a trigger contains its own semicolons, so a trigger only
+     * ends at the semicolon that closes its outermost BEGIN ... END block.
+     * The scanner receives the whole words of the current command, outside
+     * of strings and comments, and keeps track of how deep inside BEGIN and
+     * CASE blocks the command currently is.
+     */
+    private static class TriggerScanner {
+
+        private int     mWords;
+        private boolean mCreate;
+        private boolean mTrigger;
+        private int     mDepth;
+
+        public void onWord(final String word) {
+
+            final String lower = word.toLowerCase(Locale.US);
+            this.mWords++;
+
+            if (this.mWords == 1) {
+                this.mCreate = lower.equals("create");
+
+            } else if (this.mCreate && !this.mTrigger) {
+                if (lower.equals("trigger")) {
+                    this.mTrigger = true;
+                } else if (this.mWords > 2 || !isTemp(lower)) {
+                    this.mCreate = false;
+                }
+
+            } else if (this.mTrigger) {
+                if (lower.equals("begin") || lower.equals("case")) {
+                    this.mDepth++;
+                } else if (lower.equals("end") && this.mDepth > 0) {
+                    this.mDepth--;
+                }
+            }
+        }
+
+        public boolean isIncomplete() {
+            return this.mTrigger && this.mDepth > 0;
+        }
+
+        public void reset() {
+            this.mWords = 0;
+            this.mCreate = false;
+            this.mTrigger = false;
+            this.mDepth = 0;
+        }
+
+        private static boolean isTemp(final String word) {
+            return word.equals("temp") || word.equals("temporary");
+        }
+    }
 }
\ No newline at end of file
@@ -27,4 +27,10 @@ public @interface Table
 {
     String name();
     String id() default "id";
+
+    /**
+     * Mapper that copies the columns of the table to and from the record. If
+     * not given, the columns are found by reflection.
+     */
+    Class<? extends RecordMapper> mapper() default RecordMapper.class;
 }
@@ -62,7 +62,13 @@ public class HabitBullCSVImporter extends AbstractImporter
         throws IOException
     {
         CSVReader reader = new CSVReader(new FileReader(file));
+        habitList.executeAsBatch(() -> importHabits(reader));
+    }
+
+    private void importHabits(@NonNull CSVReader reader)
+    {
         HashMap<String, Habit> map = new HashMap<>();
+        LinkedHashMap<Habit, List<Timestamp>> timestamps = new LinkedHashMap<>();
 
         for (String line[] : reader)
         {
@@ -93,9 +99,18 @@ public class HabitBullCSVImporter extends AbstractImporter
                 h.setFrequency(Frequency.DAILY);
                 habitList.add(h);
                 map.put(name, h);
+                timestamps.put(h, new ArrayList<>());
             }
 
-            h.getRepetitions().setValue(timestamp, YES_MANUAL);
+            timestamps.get(h).add(timestamp);
+        }
+
+        for (Map.Entry<Habit, List<Timestamp>> entry : timestamps.entrySet())
+        {
+            List<Repetition> reps = new ArrayList<>();
+            for (Timestamp t : entry.getValue())
+                reps.add(new Repetition(t, YES_MANUAL));
+            entry.getKey().getRepetitions().setValues(reps);
         }
     }
 }
@@ -102,42 +102,56 @@ public class LoopDBImporter extends AbstractImporter
         repsRepository = new Repository<>(RepetitionRecord.class, db);
 
         List<HabitRecord> records = habitsRepository.findAll("order by position");
-        for (HabitRecord habitRecord : records)
+        habitList.executeAsBatch(() ->
         {
-            List<RepetitionRecord> reps =
-                    repsRepository.findAll("where habit = ?",
-                            habitRecord.id.toString());
+            for (HabitRecord habitRecord : records)
+                importHabit(habitRecord, repsRepository);
+        });
 
-            Habit habit = habitList.getByUUID(habitRecord.uuid);
-            if (habit == null)
-            {
-                habit = modelFactory.buildHabit();
-                habitRecord.id = null;
-                habitRecord.copyTo(habit);
-                new CreateHabitCommand(modelFactory, habitList, habit).execute();
-            }
-            else
-            {
-                Habit modified = modelFactory.buildHabit();
-                habitRecord.id = habit.id;
-                habitRecord.copyTo(modified);
-                if (!modified.getData().equals(habit.getData()))
-                    new EditHabitCommand(modelFactory, habitList, habit, modified).execute();
-            }
+        runner.notifyListeners(null, null);
+        db.close();
+    }
+
+    private void importHabit(@NonNull HabitRecord habitRecord,
+                             @NonNull Repository<RepetitionRecord> repsRepository)
+    {
+        Long habitId = habitRecord.id;
+        Habit habit = habitList.getByUUID(habitRecord.uuid);
+        if (habit == null)
+        {
+            habit = modelFactory.buildHabit();
+            habitRecord.id = null;
+            habitRecord.copyTo(habit);
+            new CreateHabitCommand(modelFactory, habitList, habit).execute();
+        }
+        else
+        {
+            Habit modified = modelFactory.buildHabit();
+            habitRecord.id = habit.id;
+            habitRecord.copyTo(modified);
+            if (!modified.getData().equals(habit.getData()))
+                new EditHabitCommand(modelFactory, habitList, habit, modified).execute();
+        }
 
-            // Reload saved version of the habit
-            habit = habitList.getByUUID(habitRecord.uuid);
+        // Reload saved version of the habit
+        Habit saved = habitList.getByUUID(habitRecord.uuid);
 
-            for (RepetitionRecord r : reps)
+        List<Repetition> modified = new ArrayList<>();
+        try (Repository.RecordIterator<RepetitionRecord> reps =
+                 repsRepository.iterate("where habit = ?", habitId))
+        {
+            while (reps.hasNext())
             {
+                RepetitionRecord r = reps.next();
                 Timestamp t = new Timestamp(r.timestamp);
-                Repetition rep = habit.getRepetitions().getByTimestamp(t);
+                Repetition rep = saved.getRepetitions().getByTimestamp(t);
                 if(rep == null || rep.getValue() != r.value)
-                    new CreateRepetitionCommand(habitList, habit, t, r.value).execute();
+                    modified.add(new Repetition(t, r.value));
             }
         }
 
-        runner.notifyListeners(null, null);
-        db.close();
+        if (modified.isEmpty()) return;
+        saved.getRepetitions().setValues(modified);
+        habitList.reposition(saved);
     }
 }
@@ -73,7 +73,7 @@ public class RewireDBImporter extends AbstractImporter
     {
         Database db = opener.open(file);
         db.beginTransaction();
-        createHabits(db);
+        habitList.executeAsBatch(() -> createHabits(db));
         db.setTransactionSuccessful();
         db.endTransaction();
         db.close();
@@ -148,6 +148,7 @@ public class RewireDBImporter extends AbstractImporter
                                   int rewireHabitId)
     {
         Cursor c = null;
+        List<Repetition> reps = new ArrayList<>();
 
         try
         {
@@ -167,13 +168,15 @@ public class RewireDBImporter extends AbstractImporter
                 GregorianCalendar cal = DateUtils.getStartOfTodayCalendar();
                 cal.set(year, month - 1, day);
 
-                habit.getRepetitions().setValue(new Timestamp(cal), YES_MANUAL);
+                reps.add(new Repetition(new Timestamp(cal), YES_MANUAL));
             } while (c.moveToNext());
         }
         finally
         {
             if (c != null) c.close();
         }
+
+        habit.getRepetitions().setValues(reps);
     }
 
     private void createReminder(Database db, Habit habit, int rewireHabitId)
@@ -73,7 +73,7 @@ public class TickmateDBImporter extends AbstractImporter
     {
         final Database db = opener.open(file);
         db.beginTransaction();
-        createHabits(db);
+        habitList.executeAsBatch(() -> createHabits(db));
         db.setTransactionSuccessful();
         db.endTransaction();
         db.close();
@@ -84,6 +84,7 @@ public class TickmateDBImporter extends AbstractImporter
                                   int tickmateTrackId)
     {
         Cursor c = null;
+        List<Repetition> reps = new ArrayList<>();
 
         try
         {
@@ -102,13 +103,15 @@ public class TickmateDBImporter extends AbstractImporter
                 GregorianCalendar cal = DateUtils.getStartOfTodayCalendar();
                 cal.set(year, month, day);
 
-                habit.getRepetitions().setValue(new Timestamp(cal), YES_MANUAL);
+                reps.add(new Repetition(new Timestamp(cal), YES_MANUAL));
             } while (c.moveToNext());
         }
         finally
         {
             if (c != null) c.close();
         }
+
+        habit.getRepetitions().setValues(reps);
     }
 
     private void createHabits(Database db)
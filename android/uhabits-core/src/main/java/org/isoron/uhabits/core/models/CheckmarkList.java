@@ -35,6 +35,10 @@ import static org.isoron.uhabits.core.utils.StringUtils.defaultToStringStyle;
 
 /**
  * The collection of {@link Checkmark}s belonging to a habit.
+ * <p>
+ * Checkmarks are computed while holding the lock of the list. The public
+ * getters do not take the lock themselves, so that implementations may answer
+ * them from previously computed values without blocking.
  */
 @ThreadSafe
 public abstract class CheckmarkList
@@ -43,15 +47,62 @@ public abstract class CheckmarkList
 
     public final ModelObservable observable;
 
+    /**
+     * Intervals used to compute the current checkmarks, before and after
+     * being snapped together. They are kept so that, when only the newest
+     * checkmarks get invalidated, the older intervals can be reused.
+     */
+    @NonNull
+    private final ArrayList<Interval> rawIntervals;
+
+    @NonNull
+    private final ArrayList<Interval> snappedIntervals;
+
+    /**
+     * First day requested when the current checkmarks were computed. Either
+     * the oldest repetition of the habit, or the beginning of a window.
+     */
+    @Nullable
+    private Timestamp computedFrom;
+
+    /**
+     * Oldest day whose repetitions were taken into account when the current
+     * checkmarks were computed.
+     */
+    @Nullable
+    private Timestamp computedRepsFrom;
+
+    @Nullable
+    private Timestamp computedOldestRep;
+
+    @Nullable
+    private Frequency computedFrequency;
+
     public CheckmarkList(Habit habit)
     {
         this.habit = habit;
         this.observable = new ModelObservable();
+        this.rawIntervals = new ArrayList<>();
+        this.snappedIntervals = new ArrayList<>();
     }
 
     @NonNull
     static List<Checkmark> buildCheckmarksFromIntervals(Repetition[] reps,
                                                         ArrayList<Interval> intervals)
+    {
+        Timestamp today = DateUtils.getTodayWithOffset();
+        return buildCheckmarksFromValues(today,
+            buildValuesFromIntervals(reps, intervals));
+    }
+
+    /**
+     * Same as {@link #buildCheckmarksFromIntervals}, but returns only the
+     * values of the checkmarks. The first entry corresponds to today, the
+     * second entry corresponds to yesterday, and so on.
+     */
+    @NonNull
+    static int[] buildValuesFromIntervals(Repetition[] reps,
+                                          ArrayList<Interval> intervals)
     {
         if (reps.length == 0) throw new IllegalArgumentException();
 
@@ -60,32 +111,27 @@ public abstract class CheckmarkList
         if (intervals.size() > 0) begin = Timestamp.oldest(begin, intervals.get(0).begin);
 
         int nDays = begin.daysUntil(today) + 1;
-        List<Checkmark> checkmarks = new ArrayList<>(nDays);
-        for (int i = 0; i < nDays; i++)
-            checkmarks.add(new Checkmark(today.minus(i), UNKNOWN));
+        int values[] = new int[nDays];
+        Arrays.fill(values, UNKNOWN);
 
         for (Interval interval : intervals)
         {
-            for (int i = 0; i < interval.length(); i++)
+            int offset = interval.begin.daysUntil(today);
+            for (int i = 0; i < interval.length(); i++, offset--)
             {
-                Timestamp date = interval.begin.plus(i);
-                int offset = date.daysUntil(today);
                 if (offset < 0) continue;
-                checkmarks.set(offset, new Checkmark(date, YES_AUTO));
+                values[offset] = YES_AUTO;
             }
         }
 
         for (Repetition rep : reps)
         {
-            Timestamp date = rep.getTimestamp();
-            int offset = date.daysUntil(today);
+            int offset = rep.getTimestamp().daysUntil(today);
             int value = rep.getValue();
-            int prevValue = checkmarks.get(offset).getValue();
-            if (prevValue < value)
-                checkmarks.set(offset, new Checkmark(date, value));
+            if (values[offset] < value) values[offset] = value;
         }
 
-        return checkmarks;
+        return values;
     }
 
     /**
@@ -138,21 +184,25 @@ public abstract class CheckmarkList
     {
         int n = intervals.size();
         for (int i = n - 2; i >= 0; i--)
-        {
-            Interval curr = intervals.get(i);
-            Interval next = intervals.get(i + 1);
-
-            int gapNextToCurrent = next.begin.daysUntil(curr.end);
-            int gapCenterToEnd = curr.center.daysUntil(curr.end);
+            intervals.set(i, snap(intervals.get(i), intervals.get(i + 1)));
+    }
 
-            if (gapNextToCurrent >= 0)
-            {
-                int shift = Math.min(gapCenterToEnd, gapNextToCurrent + 1);
-                intervals.set(i, new Interval(curr.begin.minus(shift),
-                                              curr.center,
-                                              curr.end.minus(shift)));
-            }
-        }
+    /**
+     * Slides the given interval backwards into the past, so that it ends
+     * right before the next (already snapped) interval begins, without moving
+     * its center out of it.
+     */
+    @NonNull
+    private static Interval snap(@NonNull Interval curr, @NonNull Interval next)
+    {
+        int gapNextToCurrent = next.begin.daysUntil(curr.end);
+        int gapCenterToEnd = curr.center.daysUntil(curr.end);
+        if (gapNextToCurrent < 0) return curr;
+
+        int shift = Math.min(gapCenterToEnd, gapNextToCurrent + 1);
+        return new Interval(curr.begin.minus(shift),
+                            curr.center,
+                            curr.end.minus(shift));
     }
 
     /**
@@ -178,7 +228,7 @@ public abstract class CheckmarkList
      * @return values for the checkmarks in the interval
      */
     @NonNull
-    public synchronized final int[] getAllValues()
+    public final int[] getAllValues()
     {
         Repetition oldestRep = habit.getRepetitions().getOldest();
         if (oldestRep == null) return new int[0];
@@ -211,9 +261,8 @@ public abstract class CheckmarkList
      * @return checkmark for today
      */
     @Nullable
-    public synchronized final Checkmark getToday()
+    public final Checkmark getToday()
     {
-        compute();
         Timestamp today = DateUtils.getTodayWithOffset();
         return getByInterval(today, today).get(0);
     }
@@ -223,31 +272,31 @@ public abstract class CheckmarkList
      *
      * @return value of today's checkmark
      */
-    public synchronized int getTodayValue()
+    public int getTodayValue()
     {
         Checkmark today = getToday();
         if (today != null) return today.getValue();
         else return UNKNOWN;
     }
 
-    public synchronized int getThisWeekValue(int firstWeekday)
+    public int getThisWeekValue(int firstWeekday)
     {
         return getThisIntervalValue(DateUtils.TruncateField.WEEK_NUMBER, firstWeekday);
     }
 
-    public synchronized int getThisMonthValue()
+    public int getThisMonthValue()
     {
         return getThisIntervalValue(DateUtils.TruncateField.MONTH, Calendar.SATURDAY);
     }
 
 
-    public synchronized int getThisQuarterValue()
+    public int getThisQuarterValue()
     {
         return getThisIntervalValue(DateUtils.TruncateField.QUARTER, Calendar.SATURDAY);
     }
 
 
-    public synchronized int getThisYearValue()
+    public int getThisYearValue()
     {
         return getThisIntervalValue(DateUtils.TruncateField.YEAR, Calendar.SATURDAY);
     }
@@ -276,20 +325,79 @@ public abstract class CheckmarkList
     {
         if (from.isNewerThan(to)) return new int[0];
 
+        int values[] = new int[from.daysUntil(to) + 1];
+        getValues(from, to, values);
+        return values;
+    }
+
+    /**
+     * Same as {@link #getValues(Timestamp, Timestamp)}, but writes the values
+     * into the given array, instead of allocating a new one.
+     *
+     * @param from   timestamp for the oldest checkmark
+     * @param to     timestamp for the newest checkmark
+     * @param values array where the values are written, with exactly one
+     *               entry for each day of the interval
+     */
+    public void getValues(Timestamp from, Timestamp to, int values[])
+    {
+        if (from.isNewerThan(to)) return;
+
         List<Checkmark> checkmarks = getByInterval(from, to);
-        int values[] = new int[checkmarks.size()];
+        if (values.length != checkmarks.size())
+            throw new IllegalArgumentException();
 
         int i = 0;
         for (Checkmark c : checkmarks)
             values[i++] = c.getValue();
+    }
 
-        return values;
+    /**
+     * Returns the sum of the values of the checkmarks that fall inside the
+     * given interval, ignoring checkmarks with value UNKNOWN. The endpoints of
+     * the interval are included.
+     * <p>
+     * By default, this walks every day of the interval. Implementations that
+     * keep an index over the values should override it.
+     *
+     * @param from timestamp for the oldest checkmark
+     * @param to   timestamp for the newest checkmark
+     * @return sum of the values inside the interval
+     */
+    public long getValueSum(Timestamp from, Timestamp to)
+    {
+        long sum = 0;
+        for (int v : getValues(from, to))
+            if (v != UNKNOWN) sum += v;
+        return sum;
+    }
+
+    /**
+     * Returns the number of checkmarks with value YES_MANUAL that fall inside
+     * the given interval. The endpoints of the interval are included.
+     * <p>
+     * By default, this walks every day of the interval. Implementations that
+     * keep an index over the values should override it.
+     *
+     * @param from timestamp for the oldest checkmark
+     * @param to   timestamp for the newest checkmark
+     * @return number of YES_MANUAL checkmarks inside the interval
+     */
+    public int getYesManualCount(Timestamp from, Timestamp to)
+    {
+        int count = 0;
+        for (int v : getValues(from, to))
+            if (v == YES_MANUAL) count++;
+        return count;
     }
 
     /**
      * Marks as invalid every checkmark that has timestamp either equal or newer
      * than a given timestamp. These checkmarks will be recomputed at the next
      * time they are queried.
+     * <p>
+     * Implementations must keep every checkmark older than the given
+     * timestamp, so that only the newest part of the list gets recomputed.
      *
      * @param timestamp the timestamp
      */
@@ -325,28 +433,139 @@ public abstract class CheckmarkList
     /**
      * Computes and stores one checkmark for each day, from the first habit
      * repetition to today. If this list is already computed, does nothing.
+     * <p>
+     * Checkmarks that are still valid are kept. Only the days that may have
+     * been affected by the invalidated ones, or that have been added since
+     * the last computation, are recomputed.
      */
     protected final synchronized void compute()
+    {
+        compute(null);
+    }
+
+    /**
+     * Same as {@link #compute()}, but only guarantees that the checkmarks from
+     * the given day to today are computed.
+     * <p>
+     * If no checkmarks have been computed yet, only the repetitions that may
+     * affect this window are read, so the cost depends on the length of the
+     * window instead of the length of the whole history. Older checkmarks are
+     * computed later, if requested.
+     *
+     * @param from oldest day that should be computed, or null to compute every
+     *             day since the first repetition of the habit
+     */
+    protected final synchronized void compute(@Nullable Timestamp from)
     {
         final Timestamp today = DateUtils.getTodayWithOffset();
 
+        Repetition oldestRep = habit.getRepetitions().getOldest();
+        if (oldestRep == null)
+        {
+            if (getNewestComputed() != null) computeAll(null, today);
+            return;
+        }
+
+        Timestamp oldestRepTimestamp = oldestRep.getTimestamp();
+        if (from == null) from = oldestRepTimestamp;
+        if (from.isNewerThan(today)) from = today;
+        if (from.isOlderThan(oldestRepTimestamp)) from = oldestRepTimestamp;
+
         Checkmark newest = getNewestComputed();
-        if (newest != null && newest.getTimestamp().equals(today)) return;
+        Checkmark oldest = getOldestComputed();
+        if (newest == null || oldest == null || computedFrom == null ||
+            from.isOlderThan(computedFrom) ||
+            !oldestRepTimestamp.equals(computedOldestRep) ||
+            !habit.getFrequency().equals(computedFrequency))
+        {
+            computeAll(from, today);
+            return;
+        }
+
+        if (newest.getTimestamp().equals(today)) return;
+
+        // Repetitions newer than today were not taken into account when the
+        // list was computed, so they become visible the day after the newest
+        // checkmark. If the clock went backwards, the ones after today must
+        // be ignored again.
+        Timestamp dirty = newest.getTimestamp().plus(1);
+        if (dirty.isNewerThan(today)) dirty = today.plus(1);
+
+        if (habit.isNumerical())
+            computeNumericalSince(dirty, oldest.getTimestamp(), today);
+        else computeYesNoSince(dirty, oldest.getTimestamp(), today);
+    }
+
+    /**
+     * Discards every checkmark and computes the ones from the given day until
+     * today.
+     * <p>
+     * Snapping only moves intervals into the past, and each interval is
+     * snapped against newer ones, so an interval centered on a day c never
+     * covers any day after c + den - 1, and is built from repetitions no older
+     * than c - den + 1. Therefore, the checkmarks from the given day onwards
+     * only depend on the repetitions from 2 * (den - 1) days before it. Days
+     * before the given one are not stored, unless it is the oldest repetition.
+     */
+    private void computeAll(@Nullable Timestamp from, @NonNull Timestamp today)
+    {
         invalidateNewerThan(Timestamp.ZERO);
+        rawIntervals.clear();
+        snappedIntervals.clear();
+        computedFrom = null;
+        computedRepsFrom = null;
+        computedOldestRep = null;
+        computedFrequency = null;
 
         Repetition oldestRep = habit.getRepetitions().getOldest();
-        if (oldestRep == null) return;
-        final Timestamp from = oldestRep.getTimestamp();
+        if (from == null || oldestRep == null || from.isNewerThan(today)) return;
 
-        if (from.isNewerThan(today)) return;
+        Frequency freq = habit.getFrequency();
+        Timestamp repsFrom = from;
+        if (!habit.isNumerical())
+            repsFrom = from.minus(2 * (freq.getDenominator() - 1));
+        if (repsFrom.isOlderThan(oldestRep.getTimestamp()))
+            repsFrom = oldestRep.getTimestamp();
 
         Repetition reps[] = habit
             .getRepetitions()
-            .getByInterval(from, today)
+            .getByInterval(repsFrom, today)
             .toArray(new Repetition[0]);
 
-        if (habit.isNumerical()) computeNumerical(reps);
-        else computeYesNo(reps);
+        computedFrom = from;
+        computedRepsFrom = repsFrom;
+        computedOldestRep = oldestRep.getTimestamp();
+        computedFrequency = freq;
+
+        boolean isWindow = from.isNewerThan(oldestRep.getTimestamp());
+        if (habit.isNumerical()) computeNumerical(from, reps);
+        else computeYesNo(from, reps, isWindow);
+    }
+
+    /**
+     * Makes sure that every checkmark from the given day until today has been
+     * computed, so that the following queries inside that interval do not
+     * have to extend the computed window again.
+     * <p>
+     * By default, this calls {@link #compute(Timestamp)}. Implementations
+     * that answer queries from previously computed values should override it,
+     * so that the lock is not taken when nothing is missing.
+     *
+     * @param from oldest day that should be computed
+     */
+    protected void prepare(@NonNull Timestamp from)
+    {
+        compute(from);
+    }
+
+    /**
+     * Returns true if the computed checkmarks start at the oldest repetition
+     * of the habit, instead of at the beginning of a window. In that case,
+     * every older checkmark is UNKNOWN.
+     */
+    protected final synchronized boolean isComputedFromOldestRep()
+    {
+        return computedFrom != null && computedFrom.equals(computedOldestRep);
     }
 
     /**
@@ -365,33 +584,202 @@ public abstract class CheckmarkList
     @Nullable
     protected abstract Checkmark getOldestComputed();
 
-    private void computeNumerical(Repetition[] reps)
+    private void computeNumerical(@NonNull Timestamp from, Repetition[] reps)
     {
-        if (reps.length == 0) return;
+        Timestamp today = DateUtils.getTodayWithOffset();
+
+        int values[] = new int[from.daysUntil(today) + 1];
+        for (Repetition rep : reps)
+            values[rep.getTimestamp().daysUntil(today)] = rep.getValue();
 
+        addValues(today, values);
+    }
+
+    private void computeYesNo(@NonNull Timestamp from,
+                              Repetition[] reps,
+                              boolean isWindow)
+    {
         Timestamp today = DateUtils.getTodayWithOffset();
-        Timestamp begin = reps[0].getTimestamp();
 
-        int nDays = begin.daysUntil(today) + 1;
-        List<Checkmark> checkmarks = new ArrayList<>(nDays);
-        for (int i = 0; i < nDays; i++)
-            checkmarks.add(new Checkmark(today.minus(i), 0));
+        ArrayList<Interval> intervals;
+        intervals = buildIntervals(habit.getFrequency(), reps);
+        rawIntervals.addAll(intervals);
+        snapIntervalsTogether(intervals);
+        snappedIntervals.addAll(intervals);
 
-        for (Repetition rep : reps)
+        int values[];
+        if (reps.length > 0) values = buildValuesFromIntervals(reps, intervals);
+        else values = new int[0];
+
+        if (isWindow)
+        {
+            // Days before the window may depend on older repetitions
+            int length = from.daysUntil(today) + 1;
+            int previousLength = values.length;
+            values = Arrays.copyOf(values, length);
+            if (previousLength < length)
+                Arrays.fill(values, previousLength, length, UNKNOWN);
+        }
+
+        addValues(today, values);
+    }
+
+    /**
+     * Recomputes the checkmarks of a numerical habit, starting at the given
+     * day. Each checkmark depends only on the repetition of the same day, so
+     * older checkmarks are never affected.
+     */
+    private void computeNumericalSince(@NonNull Timestamp dirty,
+                                       @NonNull Timestamp oldest,
+                                       @NonNull Timestamp today)
+    {
+        if (!dirty.isNewerThan(oldest))
+        {
+            computeAll(computedFrom, today);
+            return;
+        }
+
+        invalidateNewerThan(dirty);
+        if (dirty.isNewerThan(today)) return;
+
+        int values[] = new int[dirty.daysUntil(today) + 1];
+        for (Repetition rep : habit.getRepetitions().getByInterval(dirty, today))
+            values[rep.getTimestamp().daysUntil(today)] = rep.getValue();
+
+        addValues(today, values);
+    }
+
+    /**
+     * Recomputes the checkmarks of a boolean habit, starting at the given day.
+     * <p>
+     * Intervals centered before that day are built from repetitions that have
+     * not changed, so they are reused. The newer intervals are rebuilt and
+     * snapped together again. Since snapping moves intervals into the past,
+     * older intervals may have to slide as well; this stops as soon as one of
+     * them keeps its previous position. Only the checkmarks from the oldest
+     * day touched by any of these intervals are recomputed. The result is
+     * identical to the one produced by {@link #buildIntervals},
+     * {@link #snapIntervalsTogether} and {@link #buildCheckmarksFromIntervals}.
+     */
+    private void computeYesNoSince(@NonNull Timestamp dirty,
+                                   @NonNull Timestamp oldest,
+                                   @NonNull Timestamp today)
+    {
+        Timestamp from = computedFrom;
+        Timestamp repsFrom = computedRepsFrom;
+        if (from == null || repsFrom == null) throw new IllegalStateException();
+
+        Frequency freq = habit.getFrequency();
+        int den = freq.getDenominator();
+
+        int first = rawIntervals.size();
+        while (first > 0 && !rawIntervals.get(first - 1).center.isOlderThan(dirty))
+            first--;
+
+        Timestamp begin = dirty;
+        for (int i = first; i < snappedIntervals.size(); i++)
+            begin = Timestamp.oldest(begin, snappedIntervals.get(i).begin);
+
+        rawIntervals.subList(first, rawIntervals.size()).clear();
+        snappedIntervals.subList(first, snappedIntervals.size()).clear();
+
+        Timestamp recentFrom =
+            dirty.minus(Math.min(den - 1, repsFrom.daysUntil(dirty)));
+        Repetition recentReps[] = habit
+            .getRepetitions()
+            .getByInterval(recentFrom, today)
+            .toArray(new Repetition[0]);
+
+        for (Interval interval : buildIntervals(freq, recentReps))
+        {
+            if (interval.center.isOlderThan(dirty)) continue;
+            rawIntervals.add(interval);
+            snappedIntervals.add(interval);
+        }
+
+        int n = rawIntervals.size();
+        for (int i = n - 2; i >= first; i--)
+            snappedIntervals.set(i, snap(rawIntervals.get(i), snappedIntervals.get(i + 1)));
+
+        for (int i = first - 1; i >= 0; i--)
+        {
+            Interval snapped = rawIntervals.get(i);
+            if (i < n - 1) snapped = snap(snapped, snappedIntervals.get(i + 1));
+
+            Interval previous = snappedIntervals.get(i);
+            if (snapped.equals(previous)) break;
+
+            begin = Timestamp.oldest(begin, previous.begin);
+            begin = Timestamp.oldest(begin, snapped.begin);
+            snappedIntervals.set(i, snapped);
+        }
+
+        for (int i = first; i < n; i++)
+            begin = Timestamp.oldest(begin, snappedIntervals.get(i).begin);
+
+        if (!begin.isNewerThan(oldest))
+        {
+            computeAll(from, today);
+            return;
+        }
+
+        invalidateNewerThan(begin);
+        if (begin.isNewerThan(today)) return;
+
+        int values[] = new int[begin.daysUntil(today) + 1];
+        Arrays.fill(values, UNKNOWN);
+
+        for (int i = n - 1; i >= 0; i--)
+        {
+            if (rawIntervals.get(i).end.isOlderThan(begin)) break;
+            Interval interval = snappedIntervals.get(i);
+            for (int j = 0; j < interval.length(); j++)
+            {
+                int offset = interval.begin.plus(j).daysUntil(today);
+                if (offset < 0 || offset >= values.length) continue;
+                values[offset] = YES_AUTO;
+            }
+        }
+
+        for (Repetition rep : habit.getRepetitions().getByInterval(begin, today))
         {
             int offset = rep.getTimestamp().daysUntil(today);
-            checkmarks.set(offset, new Checkmark(rep.getTimestamp(), rep.getValue()));
+            if (values[offset] < rep.getValue()) values[offset] = rep.getValue();
         }
 
-        add(checkmarks);
+        addValues(today, values);
     }
 
-    private void computeYesNo(Repetition[] reps)
+    /**
+     * Adds the given checkmark values to the list. The first entry
+     * corresponds to the given day, and each subsequent entry corresponds to
+     * one day older than the previous entry.
+     * <p>
+     * By default, each value is wrapped into a {@link Checkmark} and passed to
+     * {@link #add(List)}. Implementations that store the values directly
+     * should override this method.
+     *
+     * @param newest timestamp of the first value
+     * @param values the values to be added
+     */
+    protected void addValues(@NonNull Timestamp newest, @NonNull int values[])
     {
-        ArrayList<Interval> intervals;
-        intervals = buildIntervals(habit.getFrequency(), reps);
-        snapIntervalsTogether(intervals);
-        add(buildCheckmarksFromIntervals(reps, intervals));
+        add(buildCheckmarksFromValues(newest, values));
+    }
+
+    /**
+     * Converts an array of checkmark values, where the first entry
+     * corresponds to the given day and each subsequent entry is one day
+     * older, into a list of checkmarks ordered by decreasing timestamp.
+     */
+    @NonNull
+    private static List<Checkmark> buildCheckmarksFromValues(@NonNull Timestamp newest,
+                                                             @NonNull int values[])
+    {
+        List<Checkmark> checkmarks = new ArrayList<>(values.length);
+        for (int i = 0; i < values.length; i++)
+            checkmarks.add(new Checkmark(newest.minus(i), values[i]));
+        return checkmarks;
     }
 
     public List<Checkmark> getAll() {
@@ -468,33 +856,39 @@ public abstract class CheckmarkList
                                    int firstWeekday,
                                    int maxGroups)
     {
-        List<Checkmark> checks = getAll();
+        Repetition oldestRep = habit.getRepetitions().getOldest();
+        if (oldestRep == null) return new ArrayList<>();
 
-        int count = 0;
-        Timestamp[] truncatedTimestamps = new Timestamp[checks.size()];
-        int[] values = new int[checks.size()];
+        Timestamp oldest = oldestRep.getTimestamp();
+        Timestamp end = DateUtils.getTodayWithOffset();
+        boolean isNumerical = habit.isNumerical();
 
-        for (Checkmark rep : checks)
+        // Computes every checkmark that will be needed at once, instead of
+        // extending the computed window once per group
+        Timestamp windowFrom = oldest;
+        if (maxGroups > 0)
         {
-            Timestamp tt = rep.getTimestamp().truncate(field, firstWeekday);
-            if (count == 0 || !truncatedTimestamps[count - 1].equals(tt))
-            {
-                if (maxGroups > 0 && count >= maxGroups) break;
-                truncatedTimestamps[count++] = tt;
-            }
-
-            if(habit.isNumerical())
-                values[count - 1] += rep.getValue();
-            else if(rep.getValue() == Checkmark.YES_MANUAL)
-                values[count - 1] += 1000;
-
+            windowFrom = end;
+            for (int i = 0; i < maxGroups && windowFrom.isNewerThan(oldest); i++)
+                windowFrom = windowFrom.truncate(field, firstWeekday).minus(1);
         }
+        prepare(windowFrom);
 
         ArrayList<Checkmark> groupedCheckmarks = new ArrayList<>();
-        for (int i = 0; i < count; i++)
+        while (!end.isOlderThan(oldest))
         {
-            Checkmark rep = new Checkmark(truncatedTimestamps[i], values[i]);
-            groupedCheckmarks.add(rep);
+            if (maxGroups > 0 && groupedCheckmarks.size() >= maxGroups) break;
+
+            Timestamp begin = end.truncate(field, firstWeekday);
+            Timestamp from = begin.isOlderThan(oldest) ? oldest : begin;
+
+            int value;
+            if (isNumerical) value = (int) getValueSum(from, end);
+            else value = getYesManualCount(from, end) * 1000;
+            groupedCheckmarks.add(new Checkmark(begin, value));
+
+            if (!begin.isNewerThan(oldest)) break;
+            end = begin.minus(1);
         }
 
         return groupedCheckmarks;
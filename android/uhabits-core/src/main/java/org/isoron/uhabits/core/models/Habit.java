@@ -26,6 +26,7 @@ import org.jetbrains.annotations.NotNull;
 
 import java.util.Locale;
 import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
 
 import javax.annotation.concurrent.ThreadSafe;
 import javax.inject.Inject;
@@ -54,25 +55,38 @@ public class Habit {
     public static final int YES_NO_HABIT = 0;
 
     @Nullable
-    public Long id;
+    public volatile Long id;
 
+    /**
+     * Attributes of the habit. Since they are immutable, setters, which must
+     * hold the lock of the habit, replace them with a modified copy, so that
+     * getters may read them without locking, and never observe a change that
+     * has only been partially applied.
+     */
     @NonNull
-    private HabitData data;
+    private volatile HabitData data;
 
     @NonNull
-    private StreakList streaks;
+    private final StreakList streaks;
 
     @NonNull
-    private ScoreList scores;
+    private final ScoreList scores;
 
     @NonNull
-    private RepetitionList repetitions;
+    private final RepetitionList repetitions;
 
     @NonNull
-    private CheckmarkList checkmarks;
+    private final CheckmarkList checkmarks;
 
     private ModelObservable observable = new ModelObservable();
 
+    /**
+     * Number of times the checkmarks, scores and streaks of this habit have
+     * been invalidated.
+     */
+    @NonNull
+    private final AtomicLong invalidations = new AtomicLong();
+
     /**
      * Constructs a habit with default data.
      * <p>
@@ -89,7 +103,7 @@ public class Habit {
     }
 
     Habit(@NonNull ModelFactory factory, @NonNull HabitData data) {
-        this.data = new HabitData(data);
+        this.data = data;
         checkmarks = factory.buildCheckmarkList(this);
         streaks = factory.buildStreakList(this);
         scores = factory.buildScoreList(this);
@@ -101,7 +115,9 @@ public class Habit {
      * Clears the reminder for a habit.
      */
     public synchronized void clearReminder() {
-        data.reminder = null;
+        HabitData.Builder d = new HabitData.Builder(data);
+        d.reminder = null;
+        data = d.build();
         observable.notifyListeners();
     }
 
@@ -111,7 +127,7 @@ public class Habit {
      * @param model the model whose attributes should be copied from
      */
     public synchronized void copyFrom(@NonNull Habit model) {
-        this.data = new HabitData(model.data);
+        this.data = model.data;
         observable.notifyListeners();
     }
 
@@ -119,40 +135,46 @@ public class Habit {
      * List of checkmarks belonging to this habit.
      */
     @NonNull
-    public synchronized CheckmarkList getCheckmarks() {
+    public CheckmarkList getCheckmarks() {
         return checkmarks;
     }
 
     @NonNull
-    public synchronized PaletteColor getColor() {
+    public PaletteColor getColor() {
         return data.color;
     }
 
     public synchronized void setColor(@NonNull PaletteColor color) {
-        data.color = color;
+        HabitData.Builder d = new HabitData.Builder(data);
+        d.color = color;
+        data = d.build();
     }
 
     @NonNull
-    public synchronized String getDescription() {
+    public String getDescription() {
         return data.description;
     }
 
     public synchronized void setDescription(@NonNull String description) {
-        data.description = description;
+        HabitData.Builder d = new HabitData.Builder(data);
+        d.description = description;
+        data = d.build();
     }
 
     @NonNull
-    public synchronized Frequency getFrequency() {
+    public Frequency getFrequency() {
         return data.frequency;
     }
 
     public synchronized void setFrequency(@NonNull Frequency frequency) {
-        data.frequency = frequency;
+        HabitData.Builder d = new HabitData.Builder(data);
+        d.frequency = frequency;
+        data = d.build();
         invalidateNewerThan(Timestamp.ZERO);
     }
 
     @Nullable
-    public synchronized Long getId() {
+    public Long getId() {
         return id;
     }
 
@@ -161,12 +183,14 @@ public class Habit {
     }
 
     @NonNull
-    public synchronized String getName() {
+    public String getName() {
         return data.name;
     }
 
     public synchronized void setName(@NonNull String name) {
-        data.name = name;
+        HabitData.Builder d = new HabitData.Builder(data);
+        d.name = name;
+        data = d.build();
     }
 
     public ModelObservable getObservable() {
@@ -184,13 +208,16 @@ public class Habit {
      * @throws IllegalStateException if habit has no reminder
      */
     @NonNull
-    public synchronized Reminder getReminder() {
-        if (data.reminder == null) throw new IllegalStateException();
-        return data.reminder;
+    public Reminder getReminder() {
+        Reminder reminder = data.reminder;
+        if (reminder == null) throw new IllegalStateException();
+        return reminder;
     }
 
     public synchronized void setReminder(@Nullable Reminder reminder) {
-        data.reminder = reminder;
+        HabitData.Builder d = new HabitData.Builder(data);
+        d.reminder = reminder;
+        data = d.build();
     }
 
     @NonNull
@@ -208,7 +235,7 @@ public class Habit {
         return streaks;
     }
 
-    public synchronized int getTargetType() {
+    public int getTargetType() {
         return data.targetType;
     }
 
@@ -216,19 +243,23 @@ public class Habit {
         if (targetType != AT_LEAST && targetType != AT_MOST)
             throw new IllegalArgumentException(
                     String.format("invalid targetType: %d", targetType));
-        data.targetType = targetType;
+        HabitData.Builder d = new HabitData.Builder(data);
+        d.targetType = targetType;
+        data = d.build();
     }
 
-    public synchronized double getTargetValue() {
+    public double getTargetValue() {
         return data.targetValue;
     }
 
     public synchronized void setTargetValue(double targetValue) {
         if (targetValue < 0) throw new IllegalArgumentException();
-        data.targetValue = targetValue;
+        HabitData.Builder d = new HabitData.Builder(data);
+        d.targetValue = targetValue;
+        data = d.build();
     }
 
-    public synchronized int getType() {
+    public int getType() {
         return data.type;
     }
 
@@ -236,16 +267,20 @@ public class Habit {
         if (type != YES_NO_HABIT && type != NUMBER_HABIT)
             throw new IllegalArgumentException();
 
-        data.type = type;
+        HabitData.Builder d = new HabitData.Builder(data);
+        d.type = type;
+        data = d.build();
     }
 
     @NonNull
-    public synchronized String getUnit() {
+    public String getUnit() {
         return data.unit;
     }
 
     public synchronized void setUnit(@NonNull String unit) {
-        data.unit = unit;
+        HabitData.Builder d = new HabitData.Builder(data);
+        d.unit = unit;
+        data = d.build();
     }
 
     /**
@@ -257,7 +292,7 @@ public class Habit {
         return String.format(Locale.US, HABIT_URI_FORMAT, getId());
     }
 
-    public synchronized boolean hasId() {
+    public boolean hasId() {
         return getId() != null;
     }
 
@@ -266,56 +301,80 @@ public class Habit {
      *
      * @return true if habit has reminder, false otherwise
      */
-    public synchronized boolean hasReminder() {
+    public boolean hasReminder() {
         return data.reminder != null;
     }
 
     public void invalidateNewerThan(Timestamp timestamp) {
-        getScores().invalidateNewerThan(timestamp);
+        // Scores and streaks are computed from checkmarks, so these must be
+        // invalidated first. Otherwise, a concurrent reader could compute
+        // them again from checkmarks that were about to be discarded.
         getCheckmarks().invalidateNewerThan(timestamp);
+        getScores().invalidateNewerThan(timestamp);
         getStreaks().invalidateNewerThan(timestamp);
+
+        // Incremented last, so that values computed during the invalidation
+        // are not taken as up to date
+        invalidations.incrementAndGet();
     }
 
-    public synchronized boolean isArchived() {
+    /**
+     * Returns the number of times the checkmarks, scores and streaks of this
+     * habit have been invalidated. Values computed from them are up to date
+     * only while this number stays the same.
+     */
+    public long getInvalidationCount() {
+        return invalidations.get();
+    }
+
+    public boolean isArchived() {
         return data.archived;
     }
 
     public synchronized void setArchived(boolean archived) {
-        data.archived = archived;
+        HabitData.Builder d = new HabitData.Builder(data);
+        d.archived = archived;
+        data = d.build();
     }
 
-    public synchronized boolean isCompletedToday() {
+    public boolean isCompletedToday() {
+        HabitData d = data;
         int todayCheckmark = getCheckmarks().getTodayValue();
-        if (isNumerical()) {
-            if (getTargetType() == AT_LEAST)
-                return todayCheckmark / 1000.0 >= data.targetValue;
+        if (d.type == NUMBER_HABIT) {
+            if (d.targetType == AT_LEAST)
+                return todayCheckmark / 1000.0 >= d.targetValue;
             else
-                return todayCheckmark / 1000.0 <= data.targetValue;
+                return todayCheckmark / 1000.0 <= d.targetValue;
         } else return (todayCheckmark != NO && todayCheckmark != UNKNOWN);
     }
 
-    public synchronized boolean isNumerical() {
+    public boolean isNumerical() {
         return data.type == NUMBER_HABIT;
     }
 
+    @NonNull
     public HabitData getData() {
-        return new HabitData(data);
+        return data;
     }
 
     public Integer getPosition() {
         return data.position;
     }
 
-    public void setPosition(int newPosition) {
-        data.position = newPosition;
+    public synchronized void setPosition(int newPosition) {
+        HabitData.Builder d = new HabitData.Builder(data);
+        d.position = newPosition;
+        data = d.build();
     }
 
-    public synchronized boolean isFavourite() {
+    public boolean isFavourite() {
         return data.favourite;
     }
 
     public synchronized void setFavourite(boolean favourite) {
-        data.favourite = favourite;
+        HabitData.Builder d = new HabitData.Builder(data);
+        d.favourite = favourite;
+        data = d.build();
     }
 
     @NonNull
@@ -323,41 +382,51 @@ public class Habit {
         return data.question;
     }
 
-    public void setQuestion(@NonNull String question) {
-        data.question = question;
+    public synchronized void setQuestion(@NonNull String question) {
+        HabitData.Builder d = new HabitData.Builder(data);
+        d.question = question;
+        data = d.build();
     }
 
     @NotNull
-    public synchronized Boolean getEnableGoogleFit() {
+    public Boolean getEnableGoogleFit() {
         return data.enableGoogleFit == 1;
     }
 
     public synchronized void setEnableGoogleFit(@NotNull Boolean enableGoogleFit) {
-        data.enableGoogleFit = enableGoogleFit ? 1 : 0;
+        HabitData.Builder d = new HabitData.Builder(data);
+        d.enableGoogleFit = enableGoogleFit ? 1 : 0;
+        data = d.build();
     }
 
-    public synchronized double getCalorieBurned() {
+    public double getCalorieBurned() {
         return data.calorieBurned;
     }
 
     public synchronized void setCalorieBurned(double calorieBurned) {
-        data.calorieBurned = calorieBurned;
+        HabitData.Builder d = new HabitData.Builder(data);
+        d.calorieBurned = calorieBurned;
+        data = d.build();
     }
 
-    public synchronized double getHydration() {
+    public double getHydration() {
         return data.hydration;
     }
 
     public synchronized void setHydration(double hydration) {
-        data.hydration = hydration;
+        HabitData.Builder d = new HabitData.Builder(data);
+        d.hydration = hydration;
+        data = d.build();
     }
 
-    public synchronized double getActivityDuration() {
+    public double getActivityDuration() {
         return data.activityDuration;
     }
 
     public synchronized void setActivityDuration(double activityDuration) {
-        data.activityDuration = activityDuration;
+        HabitData.Builder d = new HabitData.Builder(data);
+        d.activityDuration = activityDuration;
+        data = d.build();
     }
 
     @NonNull
@@ -365,92 +434,84 @@ public class Habit {
         return data.uuid;
     }
 
-    public void setUUID(@NonNull String uuid) {
-        data.uuid = uuid;
+    public synchronized void setUUID(@NonNull String uuid) {
+        HabitData.Builder d = new HabitData.Builder(data);
+        d.uuid = uuid;
+        data = d.build();
     }
 
+    /**
+     * Attributes of a habit. Instances are immutable, so that they can be
+     * shared between threads, and between habits. Modified copies are
+     * created through a {@link Builder}.
+     */
     public static final class HabitData {
         @NonNull
-        public String name;
+        public final String name;
 
         @NonNull
-        public String description;
+        public final String description;
 
         @NonNull
-        public String question;
+        public final String question;
 
         @NonNull
-        public Frequency frequency;
+        public final Frequency frequency;
 
-        public PaletteColor color;
+        public final PaletteColor color;
 
-        public boolean archived;
+        public final boolean archived;
 
-        public int targetType;
+        public final int targetType;
 
-        public double targetValue;
+        public final double targetValue;
 
-        public int type;
+        public final int type;
 
-        public String uuid;
+        public final String uuid;
 
         @NonNull
-        public String unit;
+        public final String unit;
 
         @Nullable
-        public Reminder reminder;
+        public final Reminder reminder;
+
+        public final int position;
 
-        public int position;
+        public final boolean favourite;
 
-        public boolean favourite;
-        public Integer enableGoogleFit;
+        public final Integer enableGoogleFit;
 
-        public double calorieBurned;
+        public final double calorieBurned;
 
-        public double hydration;
+        public final double hydration;
 
-        public double activityDuration;
+        public final double activityDuration;
 
         public HabitData()
         {
-            this.color = new PaletteColor(8);
-            this.archived = false;
-            this.frequency = new Frequency(3, 7);
-            this.type = YES_NO_HABIT;
-            this.name = "";
-            this.description = "";
-            this.question = "";
-            this.targetType = AT_LEAST;
-            this.targetValue = 100;
-            this.unit = "";
-            this.position = 0;
-            this.favourite = false;
-            this.enableGoogleFit = 0;
-            this.calorieBurned = 0;
-            this.hydration = 0;
-            this.activityDuration = 0;
-            this.uuid = UUID.randomUUID().toString().replace("-", "");
+            this(new Builder());
         }
 
-        public HabitData(@NonNull HabitData model) {
-            this.name = model.name;
-            this.description = model.description;
-            this.question = model.question;
-            this.frequency = model.frequency;
-            this.color = model.color;
-            this.archived = model.archived;
-            this.targetType = model.targetType;
-            this.targetValue = model.targetValue;
-            this.type = model.type;
-            this.unit = model.unit;
-            this.reminder = model.reminder;
-            this.position = model.position;
-            this.favourite = model.favourite;
-            this.enableGoogleFit = model.enableGoogleFit;
-            this.calorieBurned = model.calorieBurned;
-            this.hydration = model.hydration;
-            this.activityDuration = model.activityDuration;
-            this.uuid = model.uuid;
+        private HabitData(@NonNull Builder builder) {
+            this.name = builder.name;
+            this.description = builder.description;
+            this.question = builder.question;
+            this.frequency = builder.frequency;
+            this.color = builder.color;
+            this.archived = builder.archived;
+            this.targetType = builder.targetType;
+            this.targetValue = builder.targetValue;
+            this.type = builder.type;
+            this.unit = builder.unit;
+            this.reminder = builder.reminder;
+            this.position = builder.position;
+            this.favourite = builder.favourite;
+            this.enableGoogleFit = builder.enableGoogleFit;
+            this.calorieBurned = builder.calorieBurned;
+            this.hydration = builder.hydration;
+            this.activityDuration = builder.activityDuration;
+            this.uuid = builder.uuid;
         }
 
         @Override
@@ -530,6 +591,101 @@ public class Habit {
                     .append(uuid)
                     .toHashCode();
         }
+
+        /**
+         * Mutable copy of the attributes of a habit, used to create new
+         * instances of {@link HabitData}.
+         */
+        public static final class Builder {
+            @NonNull
+            public String name;
+
+            @NonNull
+            public String description;
+
+            @NonNull
+            public String question;
+
+            @NonNull
+            public Frequency frequency;
+
+            public PaletteColor color;
+
+            public boolean archived;
+
+            public int targetType;
+
+            public double targetValue;
+
+            public int type;
+
+            public String uuid;
+
+            @NonNull
+            public String unit;
+
+            @Nullable
+            public Reminder reminder;
+
+            public int position;
+
+            public boolean favourite;
+
+            public Integer enableGoogleFit;
+
+            public double calorieBurned;
+
+            public double hydration;
+
+            public double activityDuration;
+
+            public Builder()
+            {
+                this.color = new PaletteColor(8);
+                this.archived = false;
+                this.frequency = new Frequency(3, 7);
+                this.type = YES_NO_HABIT;
+                this.name = "";
+                this.description = "";
+                this.question = "";
+                this.targetType = AT_LEAST;
+                this.targetValue = 100;
+                this.unit = "";
+                this.position = 0;
+                this.favourite = false;
+                this.enableGoogleFit = 0;
+                this.calorieBurned = 0;
+                this.hydration = 0;
+                this.activityDuration = 0;
+                this.uuid = UUID.randomUUID().toString().replace("-", "");
+            }
+
+            public Builder(@NonNull HabitData model) {
+                this.name = model.name;
+                this.description = model.description;
+                this.question = model.question;
+                this.frequency = model.frequency;
+                this.color = model.color;
+                this.archived = model.archived;
+                this.targetType = model.targetType;
+                this.targetValue = model.targetValue;
+                this.type = model.type;
+                this.unit = model.unit;
+                this.reminder = model.reminder;
+                this.position = model.position;
+                this.favourite = model.favourite;
+                this.enableGoogleFit = model.enableGoogleFit;
+                this.calorieBurned = model.calorieBurned;
+                this.hydration = model.hydration;
+                this.activityDuration = model.activityDuration;
+                this.uuid = model.uuid;
+            }
+
+            @NonNull
+            public HabitData build() {
+                return new HabitData(this);
+            }
+        }
     }
 
     @Override
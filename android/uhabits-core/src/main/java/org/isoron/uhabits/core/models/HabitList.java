@@ -42,6 +42,10 @@ public abstract class HabitList implements Iterable<Habit> {
     @NonNull
     protected final HabitMatcher filter;
 
+    private int batchDepth;
+
+    private boolean resortPending;
+
     /**
      * Creates a new HabitList.
      * <p>
@@ -154,6 +158,17 @@ public abstract class HabitList implements Iterable<Habit> {
      */
     public abstract void remove(@NonNull Habit h);
 
+    /**
+     * Loads the repetitions of all habits in the list ahead of time.
+     * <p>
+     * Implementations that load the repetitions of each habit only when they
+     * are first needed may override this method to load all of them at once,
+     * which is cheaper when most habits are about to be used. By default,
+     * does nothing.
+     */
+    public void loadRepetitions() {
+    }
+
     /**
      * Removes all the habits from the list.
      */
@@ -164,6 +179,64 @@ public abstract class HabitList implements Iterable<Habit> {
         observable.notifyListeners();
     }
 
+    /**
+     * Runs the given callback as a single batch of modifications.
+     * <p>
+     * While the callback runs, the listeners are not notified and the list is
+     * not sorted again. When it ends, the list is sorted if necessary and the
+     * listeners are notified once. Depending on the implementation, all the
+     * changes are also persisted in a single transaction. Batches may be
+     * nested. To also postpone the invalidation of scores and checkmarks, the
+     * repetitions of each habit should be modified inside
+     * {@link RepetitionList#executeAsBatch(Runnable)}.
+     *
+     * @param callback the modifications to be made
+     */
+    public void executeAsBatch(@NonNull Runnable callback) {
+        synchronized (this) {
+            batchDepth++;
+        }
+
+        observable.beginBatch();
+        try {
+            callback.run();
+        } finally {
+            boolean shouldResort = false;
+            synchronized (this) {
+                if (--batchDepth == 0) {
+                    shouldResort = resortPending;
+                    resortPending = false;
+                }
+            }
+
+            if (shouldResort) resort();
+            observable.endBatch();
+        }
+    }
+
+    /**
+     * If a batch is being executed, records that the list should be sorted
+     * when it ends and returns true. Otherwise, returns false.
+     */
+    protected synchronized boolean postponeResort() {
+        if (batchDepth == 0) return false;
+        resortPending = true;
+        return true;
+    }
+
+    /**
+     * Notifies the list that the sort key of the given habit may have changed,
+     * for example because some repetitions were modified, so that the habit
+     * can be moved to its correct position.
+     * <p>
+     * By default, this sorts the whole list again.
+     *
+     * @param habit the habit that has changed
+     */
+    public void reposition(@NonNull Habit habit) {
+        resort();
+    }
+
     /**
      * Changes the position of a habit in the list.
      *
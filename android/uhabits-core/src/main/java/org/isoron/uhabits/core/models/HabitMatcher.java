@@ -19,6 +19,8 @@
 
 package org.isoron.uhabits.core.models;
 
+import org.apache.commons.lang3.builder.*;
+
 public class HabitMatcher
 {
     public static final HabitMatcher WITH_ALARM = new HabitMatcherBuilder()
@@ -63,4 +65,30 @@ public class HabitMatcher
         if (!isCompletedAllowed() && habit.isCompletedToday()) return false;
         return true;
     }
+
+    @Override
+    public boolean equals(Object o)
+    {
+        if (this == o) return true;
+
+        if (o == null || getClass() != o.getClass()) return false;
+
+        HabitMatcher matcher = (HabitMatcher) o;
+
+        return new EqualsBuilder()
+            .append(archivedAllowed, matcher.archivedAllowed)
+            .append(reminderRequired, matcher.reminderRequired)
+            .append(completedAllowed, matcher.completedAllowed)
+            .isEquals();
+    }
+
+    @Override
+    public int hashCode()
+    {
+        return new HashCodeBuilder(17, 37)
+            .append(archivedAllowed)
+            .append(reminderRequired)
+            .append(completedAllowed)
+            .toHashCode();
+    }
 }
@@ -32,6 +32,10 @@ public class ModelObservable
 {
     private List<Listener> listeners;
 
+    private int batchDepth;
+
+    private boolean batchModified;
+
     /**
      * Creates a new ModelObservable with no listeners.
      */
@@ -58,9 +62,57 @@ public class ModelObservable
      */
     public synchronized void notifyListeners()
     {
+        if (batchDepth > 0)
+        {
+            batchModified = true;
+            return;
+        }
+
         for (Listener l : listeners) l.onModelChange();
     }
 
+    /**
+     * Notifies every listener that the item at the given position has moved to
+     * a different position, and that nothing else has changed.
+     * <p>
+     * Only models should call this method.
+     */
+    public synchronized void notifyItemMoved(int fromPosition, int toPosition)
+    {
+        if (batchDepth > 0)
+        {
+            batchModified = true;
+            return;
+        }
+
+        for (Listener l : listeners) l.onItemMoved(fromPosition, toPosition);
+    }
+
+    /**
+     * Starts postponing notifications.
+     * <p>
+     * Until the matching call to {@link #endBatch()}, calls to {@link
+     * #notifyListeners()} are only recorded. Calls to this method may be
+     * nested.
+     */
+    public synchronized void beginBatch()
+    {
+        batchDepth++;
+    }
+
+    /**
+     * Stops postponing notifications. If this ends the outermost batch and
+     * the model has changed during it, notifies every listener once.
+     */
+    public synchronized void endBatch()
+    {
+        if (batchDepth == 0) throw new IllegalStateException("no open batch");
+        if (--batchDepth > 0 || !batchModified) return;
+
+        batchModified = false;
+        notifyListeners();
+    }
+
     /**
      * Removes the given listener.
      * <p>
@@ -85,5 +137,15 @@ public class ModelObservable
          * modified.
          */
         void onModelChange();
+
+        /**
+         * Called when an item of the model has moved from one position to
+         * another, and nothing else has changed. By default, this is handled
+         * as any other modification.
+         */
+        default void onItemMoved(int fromPosition, int toPosition)
+        {
+            onModelChange();
+        }
     }
 }
@@ -36,6 +36,11 @@ public abstract class RepetitionList
     @NonNull
     protected final ModelObservable observable;
 
+    private int batchDepth;
+
+    @Nullable
+    private Timestamp batchOldest;
+
     public RepetitionList(@NonNull Habit habit)
     {
         this.habit = habit;
@@ -52,6 +57,19 @@ public abstract class RepetitionList
      */
     public abstract void add(Repetition repetition);
 
+    /**
+     * Adds all the given repetitions to the list.
+     * <p>
+     * By default, each repetition is added separately. Implementations may
+     * override this method to store all of them at once. Any implementation
+     * of this method must call observable.notifyListeners() after the
+     * repetitions have been added.
+     */
+    protected void addAll(@NonNull Collection<Repetition> repetitions)
+    {
+        for (Repetition rep : repetitions) add(rep);
+    }
+
     /**
      * Returns the list of repetitions that happened within the given time
      * interval.
@@ -142,11 +160,9 @@ public abstract class RepetitionList
             if (!habit.isNumerical() && r.getValue() != Checkmark.YES_MANUAL)
                 continue;
 
-            Calendar date = r.getTimestamp().toCalendar();
             int weekday = r.getTimestamp().getWeekday();
-            date.set(Calendar.DAY_OF_MONTH, 1);
-
-            Timestamp timestamp = new Timestamp(date.getTimeInMillis());
+            Timestamp timestamp = r.getTimestamp().truncate(
+                DateUtils.TruncateField.MONTH, Calendar.SUNDAY);
             Integer[] list = map.get(timestamp);
 
             if (list == null)
@@ -178,9 +194,103 @@ public abstract class RepetitionList
 
     public void setValue(Timestamp timestamp, int value)
     {
-        Repetition rep = getByTimestamp(timestamp);
-        if (rep != null) remove(rep);
-        add(new Repetition(timestamp, value));
+        // Readers that hold the lock of the list never see the day without
+        // either the old or the new repetition
+        synchronized (this)
+        {
+            Repetition rep = getByTimestamp(timestamp);
+            if (rep != null) remove(rep);
+            add(new Repetition(timestamp, value));
+        }
+
+        invalidateNewerThan(timestamp);
+    }
+
+    /**
+     * Sets the values of several days at once.
+     * <p>
+     * This is equivalent to calling setValue for each of the given
+     * repetitions, in order, inside a single batch, except that the new
+     * repetitions are added to the list all at once. If several repetitions
+     * have the same timestamp, the last one wins.
+     */
+    public void setValues(@NonNull Collection<Repetition> repetitions)
+    {
+        LinkedHashMap<Timestamp, Repetition> reps = new LinkedHashMap<>();
+        for (Repetition rep : repetitions) reps.put(rep.getTimestamp(), rep);
+        if (reps.isEmpty()) return;
+
+        executeAsBatch(() ->
+        {
+            Timestamp oldest = null;
+            synchronized (this)
+            {
+                for (Timestamp timestamp : reps.keySet())
+                {
+                    Repetition rep = getByTimestamp(timestamp);
+                    if (rep != null) remove(rep);
+
+                    if (oldest == null) oldest = timestamp;
+                    else oldest = Timestamp.oldest(oldest, timestamp);
+                }
+
+                addAll(reps.values());
+            }
+
+            invalidateNewerThan(oldest);
+        });
+    }
+
+    /**
+     * Runs the given callback as a single batch of modifications.
+     * <p>
+     * While the callback runs, the scores, checkmarks and streaks of the habit
+     * are not invalidated, and the listeners are not notified. When it ends,
+     * the habit is invalidated once, starting at the oldest modified day, and
+     * the listeners are notified once. Derived data read by the callback
+     * itself may therefore be out of date. Batches may be nested.
+     */
+    public void executeAsBatch(@NonNull Runnable callback)
+    {
+        synchronized (this)
+        {
+            batchDepth++;
+        }
+
+        observable.beginBatch();
+        try
+        {
+            callback.run();
+        }
+        finally
+        {
+            Timestamp oldest = null;
+            synchronized (this)
+            {
+                if (--batchDepth == 0)
+                {
+                    oldest = batchOldest;
+                    batchOldest = null;
+                }
+            }
+
+            if (oldest != null) habit.invalidateNewerThan(oldest);
+            observable.endBatch();
+        }
+    }
+
+    private void invalidateNewerThan(@NonNull Timestamp timestamp)
+    {
+        synchronized (this)
+        {
+            if (batchDepth > 0)
+            {
+                if (batchOldest == null) batchOldest = timestamp;
+                else batchOldest = Timestamp.oldest(batchOldest, timestamp);
+                return;
+            }
+        }
+
         habit.invalidateNewerThan(timestamp);
     }
 
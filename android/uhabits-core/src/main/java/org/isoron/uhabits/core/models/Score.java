@@ -63,7 +63,7 @@ public final class Score
                                  double previousScore,
                                  double checkmarkValue)
     {
-        double multiplier = pow(0.5, sqrt(frequency) / 13.0);
+        double multiplier = getMultiplier(frequency);
 
         double score = previousScore * multiplier;
         score += checkmarkValue * (1 - multiplier);
@@ -71,6 +71,135 @@ public final class Score
         return score;
     }
 
+    /**
+     * Computes the scores of a boolean habit for a sequence of consecutive
+     * days, given the values of their checkmarks.
+     * <p>
+     * Both arrays are sorted from newest to oldest. The first warmup entries,
+     * counting from the oldest, of the checkmark array only contribute to the
+     * rolling count of repetitions, and produce no score. Therefore, the score
+     * array must have exactly warmup fewer entries than the checkmark array.
+     * Skipped days keep the previous score.
+     *
+     * @param checkmarks    the values of the checkmarks, newest first
+     * @param warmup        number of oldest checkmarks that produce no score
+     * @param numerator     number of repetitions expected in each interval
+     * @param denominator   length of the interval, in days
+     * @param frequency     the frequency of the habit
+     * @param previousScore the score of the day before the first score
+     * @param scores        array where the scores are written, newest first
+     */
+    public static void computeYesNo(int[] checkmarks,
+                                    int warmup,
+                                    int numerator,
+                                    int denominator,
+                                    double frequency,
+                                    double previousScore,
+                                    double[] scores)
+    {
+        if (scores.length != checkmarks.length - warmup)
+            throw new IllegalArgumentException();
+
+        final double multiplier = getMultiplier(frequency);
+        final double complement = 1 - multiplier;
+        final int length = checkmarks.length;
+
+        double rollingSum = 0.0;
+        double score = previousScore;
+
+        for (int offset = length - 1; offset >= 0; offset--)
+        {
+            int value = checkmarks[offset];
+            if (value == Checkmark.YES_MANUAL) rollingSum += 1.0;
+            if (offset + denominator < length &&
+                checkmarks[offset + denominator] == Checkmark.YES_MANUAL)
+                rollingSum -= 1.0;
+
+            if (offset >= scores.length) continue;
+            if (value != Checkmark.SKIP)
+            {
+                double percentageCompleted = min(1, rollingSum / numerator);
+                score = score * multiplier + percentageCompleted * complement;
+            }
+            scores[offset] = score;
+        }
+    }
+
+    /**
+     * Computes the scores of a numerical habit for a sequence of consecutive
+     * days, given the values of their checkmarks.
+     * <p>
+     * The arrays follow the same conventions as in
+     * {@link #computeYesNo(int[], int, int, int, double, double, double[])}.
+     * Checkmark values are stored in thousandths of the unit of the habit.
+     *
+     * @param checkmarks    the values of the checkmarks, newest first
+     * @param warmup        number of oldest checkmarks that produce no score
+     * @param denominator   length of the interval, in days
+     * @param targetValue   target value of the habit for each interval
+     * @param frequency     the frequency of the habit
+     * @param previousScore the score of the day before the first score
+     * @param scores        array where the scores are written, newest first
+     */
+    public static void computeNumerical(int[] checkmarks,
+                                        int warmup,
+                                        int denominator,
+                                        double targetValue,
+                                        double frequency,
+                                        double previousScore,
+                                        double[] scores)
+    {
+        if (scores.length != checkmarks.length - warmup)
+            throw new IllegalArgumentException();
+
+        final double multiplier = getMultiplier(frequency);
+        final double complement = 1 - multiplier;
+        final int length = checkmarks.length;
+
+        double rollingSum = 0.0;
+        double score = previousScore;
+
+        for (int offset = length - 1; offset >= 0; offset--)
+        {
+            rollingSum += checkmarks[offset];
+            if (offset + denominator < length)
+                rollingSum -= checkmarks[offset + denominator];
+
+            if (offset >= scores.length) continue;
+            double percentageCompleted = min(1, rollingSum / 1000 / targetValue);
+            score = score * multiplier + percentageCompleted * complement;
+            scores[offset] = score;
+        }
+    }
+
+    /**
+     * Returns the number of days after which the influence of a score on the
+     * following ones becomes smaller than the given tolerance.
+     * <p>
+     * Each score is a weighted average of the previous score and of the
+     * current checkmark, so a change in the score of a certain day shrinks by
+     * a constant factor every day, except on skipped days. Two sequences of
+     * scores computed from the same checkmarks, but starting from different
+     * scores, differ by less than the tolerance after this many days.
+     *
+     * @param frequency the frequency of the habit
+     * @param tolerance the maximum acceptable difference, between 0 and 1
+     * @return number of days
+     */
+    public static int getHorizon(double frequency, double tolerance)
+    {
+        return (int) ceil(log(tolerance) / log(getMultiplier(frequency)));
+    }
+
+    /**
+     * Returns the factor by which the previous score is multiplied when
+     * computing the next one, for a habit with the given frequency.
+     */
+    private static double getMultiplier(double frequency)
+    {
+        return pow(0.5, sqrt(frequency) / 13.0);
+    }
+
     public int compareNewer(Score other)
     {
         return getTimestamp().compare(other.getTimestamp());
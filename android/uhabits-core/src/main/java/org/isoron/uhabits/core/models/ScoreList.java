@@ -27,14 +27,27 @@ import java.io.*;
 import java.text.*;
 import java.util.*;
 
-import static org.isoron.uhabits.core.models.Checkmark.*;
-
 public abstract class ScoreList implements Iterable<Score>
 {
     protected final Habit habit;
 
     protected ModelObservable observable;
 
+    /**
+     * Maximum difference between a score computed from a seed and the score
+     * that would have been computed from the first repetition of the habit.
+     */
+    private static final double SEED_TOLERANCE = 1e-9;
+
+    /**
+     * Timestamp of the oldest score computed from a seed, instead of from the
+     * first repetition of the habit, or null if no seed was used. While that
+     * score is still the oldest computed one, older scores cannot be computed
+     * by extending the list backwards.
+     */
+    @Nullable
+    private Timestamp seededAt;
+
     /**
      * Creates a new ScoreList for the given habit.
      * <p>
@@ -79,16 +92,18 @@ public abstract class ScoreList implements Iterable<Score>
      * <p>
      * If the timestamp given happens before the first repetition of the habit
      * then returns zero.
+     * <p>
+     * By default, the score is computed and read while holding the lock of
+     * the list. Implementations that keep a copy of the computed scores may
+     * override this method to read from it without locking.
      *
      * @param timestamp the timestamp of a day
      * @return score value for that day
      */
-    public final synchronized double getValue(Timestamp timestamp)
+    public synchronized double getValue(Timestamp timestamp)
     {
         compute(timestamp, timestamp);
-        Score s = getComputedByTimestamp(timestamp);
-        if (s == null) throw new IllegalStateException();
-        return s.getValue();
+        return getComputedValue(timestamp);
     }
 
     /**
@@ -122,21 +137,85 @@ public abstract class ScoreList implements Iterable<Score>
      */
     public final double[] getValues(Timestamp from, Timestamp to)
     {
+        if (from.isNewerThan(to)) return new double[0];
+
+        double[] values = new double[from.daysUntil(to) + 1];
+        getValues(from, to, values);
+        return values;
+    }
+
+    /**
+     * Same as {@link #getValues(Timestamp, Timestamp)}, but writes the values
+     * into the given array, instead of allocating a new one.
+     *
+     * @param from   timestamp for the oldest score
+     * @param to     timestamp for the newest score
+     * @param values array where the values are written, with exactly one
+     *               entry for each day of the interval
+     */
+    public void getValues(Timestamp from, Timestamp to, double[] values)
+    {
+        if (from.isNewerThan(to)) return;
+
         List<Score> scores = getByInterval(from, to);
-        double[] values = new double[scores.size()];
+        if (values.length != scores.size())
+            throw new IllegalArgumentException();
 
         for (int i = 0; i < values.length; i++)
             values[i] = scores.get(i).getValue();
-
-        return values;
     }
 
+    /**
+     * Groups the computed scores into intervals of time, such as weeks or
+     * months, and returns the average score of each interval.
+     * <p>
+     * The scores are read newest first, in a single pass. Since every interval
+     * covers a contiguous range of days, a new interval starts exactly when a
+     * day falls before the beginning of the current one, and the averages are
+     * accumulated without grouping or sorting.
+     *
+     * @param field        the length of each interval
+     * @param firstWeekday the first day of the week, for weekly intervals
+     * @return the average score of each interval, newest first
+     */
     public List<Score> groupBy(DateUtils.TruncateField field, int firstWeekday)
     {
         computeAll();
-        HashMap<Timestamp, ArrayList<Double>> groups = getGroupedValues(field, firstWeekday);
-        List<Score> scores = groupsToAvgScores(groups);
-        Collections.sort(scores, (s1, s2) -> s2.compareNewer(s1));
+        Score newest = getNewestComputed();
+        Score oldest = getOldestComputed();
+        if (newest == null || oldest == null) return new ArrayList<>();
+
+        long to = newest.getTimestamp().getUnixTime();
+        double[] values = getValues(oldest.getTimestamp(), newest.getTimestamp());
+
+        long[] groupTimestamps = new long[values.length];
+        double[] groupAverages = new double[values.length];
+        int count = 0;
+
+        double sum = 0.0;
+        int size = 0;
+
+        for (int i = 0; i < values.length; i++)
+        {
+            long day = to - i * DateUtils.DAY_LENGTH;
+            if (count == 0 || day < groupTimestamps[count - 1])
+            {
+                if (count > 0) groupAverages[count - 1] = sum / size;
+                groupTimestamps[count++] = DateUtils.truncate(field, day, firstWeekday);
+                sum = 0.0;
+                size = 0;
+            }
+
+            sum += values[i];
+            size++;
+        }
+
+        if (count > 0) groupAverages[count - 1] = sum / size;
+
+        List<Score> scores = new ArrayList<>(count);
+        for (int i = 0; i < count; i++)
+            scores.add(new Score(new Timestamp(groupTimestamps[i]), groupAverages[i]));
+
         return scores;
     }
 
@@ -144,6 +223,9 @@ public abstract class ScoreList implements Iterable<Score>
      * Marks all scores that have timestamp equal to or newer than the given
      * timestamp as invalid. Any following getValue calls will trigger the
      * scores to be recomputed.
+     * <p>
+     * Implementations must keep every score older than the given timestamp,
+     * so that the computation can resume from the newest valid score.
      *
      * @param timestamp the oldest timestamp that should be invalidated
      */
@@ -186,6 +268,15 @@ public abstract class ScoreList implements Iterable<Score>
      * harm in calling this function more times, or with larger intervals, than
      * strictly needed. The endpoints of the interval are included.
      * <p>
+     * If no scores have been computed yet, and the interval begins long after
+     * the first repetition of the habit, only the scores inside the interval
+     * are stored. They are computed from a seed, placed some time before the
+     * interval, which is far enough back for the result to differ from the
+     * exact one by less than {@link #SEED_TOLERANCE}. This keeps the cost
+     * proportional to the length of the interval, and not to the length of
+     * the history of the habit. If older scores are later requested, the list
+     * is computed again from an older seed.
+     * <p>
      * This method assumes the list of computed scores has no holes. That is, if
      * there is a score computed at time t1 and another at time t2, then every
      * score between t1 and t2 is also computed.
@@ -199,22 +290,72 @@ public abstract class ScoreList implements Iterable<Score>
         Score newest = getNewestComputed();
         Score oldest = getOldestComputed();
 
+        if (newest != null && oldest != null && from.isOlderThan(oldest.getTimestamp()) &&
+            oldest.getTimestamp().equals(seededAt))
+        {
+            Timestamp newestTimestamp = newest.getTimestamp();
+            invalidateNewerThan(Timestamp.ZERO);
+            compute(from, Timestamp.newest(to, newestTimestamp));
+            return;
+        }
+
         if (newest == null)
         {
+            seededAt = null;
+            if (from.isNewerThan(to)) return;
+
             Repetition oldestRep = habit.getRepetitions().getOldest();
-            if (oldestRep != null) from =
-                Timestamp.oldest(from, oldestRep.getTimestamp());
-            forceRecompute(from, to, 0);
+            Timestamp seedFrom = null;
+            if (oldestRep != null)
+            {
+                seedFrom = getSeedStart(from, oldestRep.getTimestamp());
+                if (seedFrom == null)
+                    from = Timestamp.oldest(from, oldestRep.getTimestamp());
+            }
+
+            if (seedFrom == null)
+            {
+                addValues(to, forceRecompute(from, to, 0));
+                return;
+            }
+
+            double scores[] = forceRecompute(seedFrom, to, 0);
+            addValues(to, Arrays.copyOf(scores, from.daysUntil(to) + 1));
+            seededAt = from;
         }
         else
         {
             if (oldest == null) throw new IllegalStateException();
-            forceRecompute(from, oldest.getTimestamp().minus(1), 0);
-            forceRecompute(newest.getTimestamp().plus(1), to,
-                newest.getValue());
+
+            Timestamp beforeOldest = oldest.getTimestamp().minus(1);
+            if (!from.isNewerThan(beforeOldest))
+                addValues(beforeOldest, forceRecompute(from, beforeOldest, 0));
+
+            Timestamp afterNewest = newest.getTimestamp().plus(1);
+            if (!afterNewest.isNewerThan(to))
+                addValues(to, forceRecompute(afterNewest, to, newest.getValue()));
         }
     }
 
+    /**
+     * Stores the given score, which must have been previously computed for
+     * this habit, as the starting point for the following computations.
+     * <p>
+     * Newer scores are computed from it. Since the scores that precede it are
+     * unknown, requesting them discards it and computes the list again, as if
+     * it had been computed from a seed.
+     *
+     * @param timestamp the timestamp of the score
+     * @param value     the value of the score
+     * @throws IllegalStateException if any score has already been computed
+     */
+    protected synchronized void setSeed(@NonNull Timestamp timestamp, double value)
+    {
+        if (getNewestComputed() != null) throw new IllegalStateException();
+        addValues(timestamp, new double[]{ value });
+        seededAt = timestamp;
+    }
+
     /**
      * Computes and saves the scores that are missing since the first repetition
      * of the habit.
@@ -238,6 +379,44 @@ public abstract class ScoreList implements Iterable<Score>
     @Nullable
     protected abstract Score getComputedByTimestamp(Timestamp timestamp);
 
+    /**
+     * Returns the value of the score that has the given timestamp, which must
+     * have already been computed.
+     * <p>
+     * By default, this calls {@link #getComputedByTimestamp(Timestamp)}.
+     * Implementations that store the values directly should override it.
+     *
+     * @param timestamp the timestamp of the score
+     * @return the value of the score with given timestamp
+     * @throws IllegalStateException if the score has not been computed
+     */
+    protected double getComputedValue(Timestamp timestamp)
+    {
+        Score s = getComputedByTimestamp(timestamp);
+        if (s == null) throw new IllegalStateException();
+        return s.getValue();
+    }
+
+    /**
+     * Adds the given score values to the list. The first entry corresponds to
+     * the given day, and each subsequent entry corresponds to one day older
+     * than the previous entry.
+     * <p>
+     * By default, each value is wrapped into a {@link Score} and passed to
+     * {@link #add(List)}. Implementations that store the values directly
+     * should override this method.
+     *
+     * @param newest timestamp of the first value
+     * @param values the values to be added
+     */
+    protected void addValues(@NonNull Timestamp newest, @NonNull double[] values)
+    {
+        List<Score> scores = new ArrayList<>(values.length);
+        for (int i = 0; i < values.length; i++)
+            scores.add(new Score(newest.minus(i), values[i]));
+        add(scores);
+    }
+
     /**
      * Returns the most recent score that has already been computed. If no score
      * has been computed yet, returns null.
@@ -257,105 +436,98 @@ public abstract class ScoreList implements Iterable<Score>
      * <p>
      * This function does not check if the scores have already been computed. If
      * they have, then it stores duplicate scores, which is a bad thing.
+     * <p>
+     * If the interval starts right after scores that have already been
+     * computed, the rolling window of checkmarks is first filled with the
+     * checkmarks that precede the interval, so that the resulting scores are
+     * identical to the ones that would have been obtained by recomputing
+     * everything from the beginning.
      *
      * @param from          timestamp of the beginning of the interval
      * @param to            timestamp of the end of the interval
      * @param previousValue value of the score on the day immediately before the
      *                      interval begins
      */
-    private void forceRecompute(@NonNull Timestamp from,
-                                @NonNull Timestamp to,
-                                double previousValue)
+    @NonNull
+    private double[] forceRecompute(@NonNull Timestamp from,
+                                    @NonNull Timestamp to,
+                                    double previousValue)
     {
-        if (from.isNewerThan(to)) return;
+        if (from.isNewerThan(to)) return new double[0];
 
-        double rollingSum = 0.0;
         int numerator = habit.getFrequency().getNumerator();
         int denominator = habit.getFrequency().getDenominator();
         final double freq = habit.getFrequency().toDouble();
-        final int[] checkmarkValues = habit.getCheckmarks().getValues(from, to);
+        final boolean isNumerical = habit.isNumerical();
 
         // For non-daily boolean habits, we double the numerator and the denominator to smooth
         // out irregular repetition schedules (for example, weekly habits performed on different
         // days of the week)
-        if (!habit.isNumerical() && freq < 1.0)
+        if (!isNumerical && freq < 1.0)
         {
             numerator *= 2;
             denominator *= 2;
         }
 
-        List<Score> scores = new LinkedList<>();
-
-        for (int i = 0; i < checkmarkValues.length; i++)
-        {
-            int offset = checkmarkValues.length - i - 1;
-            if (habit.isNumerical())
-            {
-                rollingSum += checkmarkValues[offset];
-                if (offset + denominator < checkmarkValues.length) {
-                    rollingSum -= checkmarkValues[offset + denominator];
-                }
-                double percentageCompleted = Math.min(1, rollingSum / 1000 / habit.getTargetValue());
-                previousValue = Score.compute(freq, previousValue, percentageCompleted);
-            }
-            else
-            {
-                if (checkmarkValues[offset] == YES_MANUAL)
-                    rollingSum += 1.0;
-                if (offset + denominator < checkmarkValues.length)
-                    if (checkmarkValues[offset + denominator] == YES_MANUAL)
-                        rollingSum -= 1.0;
-                if (checkmarkValues[offset] != SKIP)
-                {
-                    double percentageCompleted = Math.min(1, rollingSum / numerator);
-                    previousValue = Score.compute(freq, previousValue, percentageCompleted);
-                }
-            }
-            scores.add(new Score(from.plus(i), previousValue));
-        }
-
-        add(scores);
-    }
+        // Checkmarks before the first repetition and before the oldest
+        // computed score have no effect on the rolling count
+        Timestamp warmupFrom = null;
+        Score oldest = getOldestComputed();
+        Repetition oldestRep = habit.getRepetitions().getOldest();
+        if (oldest != null) warmupFrom = oldest.getTimestamp();
+        if (oldestRep != null) warmupFrom = warmupFrom == null ?
+            oldestRep.getTimestamp() :
+            Timestamp.oldest(warmupFrom, oldestRep.getTimestamp());
 
-    @NonNull
-    private HashMap<Timestamp, ArrayList<Double>> getGroupedValues(DateUtils.TruncateField field,
-                                                                   int firstWeekday)
-    {
-        HashMap<Timestamp, ArrayList<Double>> groups = new HashMap<>();
+        int warmup = 0;
+        if (warmupFrom != null && warmupFrom.isOlderThan(from))
+            warmup = Math.min(denominator, warmupFrom.daysUntil(from));
 
-        for (Score s : this)
-        {
-            Timestamp groupTimestamp = new Timestamp(
-                DateUtils.truncate(
-                        field,
-                        s.getTimestamp().getUnixTime(),
-                        firstWeekday));
+        final int[] checkmarkValues =
+            habit.getCheckmarks().getValues(from.minus(warmup), to);
 
-            if (!groups.containsKey(groupTimestamp))
-                groups.put(groupTimestamp, new ArrayList<>());
+        double[] scores = new double[checkmarkValues.length - warmup];
 
-            groups.get(groupTimestamp).add(s.getValue());
-        }
+        if (isNumerical)
+            Score.computeNumerical(checkmarkValues, warmup, denominator,
+                habit.getTargetValue(), freq, previousValue, scores);
+        else
+            Score.computeYesNo(checkmarkValues, warmup, numerator, denominator,
+                freq, previousValue, scores);
 
-        return groups;
+        return scores;
     }
 
-    @NonNull
-    private List<Score> groupsToAvgScores(HashMap<Timestamp, ArrayList<Double>> groups)
+    /**
+     * Returns the day from which the scores should be computed, in order to
+     * obtain the scores from the given day onwards with an error smaller than
+     * {@link #SEED_TOLERANCE}, or null if they should be computed from the
+     * first repetition of the habit.
+     * <p>
+     * Skipped days do not reduce the influence of older scores, so the seed
+     * is moved back one day for each skipped day found along the way.
+     */
+    @Nullable
+    private Timestamp getSeedStart(@NonNull Timestamp from,
+                                   @NonNull Timestamp oldestRep)
     {
-        List<Score> scores = new LinkedList<>();
+        double freq = habit.getFrequency().toDouble();
+        Timestamp seedFrom = from.minus(Score.getHorizon(freq, SEED_TOLERANCE));
+        if (habit.isNumerical())
+            return seedFrom.isNewerThan(oldestRep) ? seedFrom : null;
 
-        for (Timestamp timestamp : groups.keySet())
+        Timestamp scanned = from;
+        while (seedFrom.isNewerThan(oldestRep))
         {
-            double meanValue = 0.0;
-            ArrayList<Double> groupValues = groups.get(timestamp);
-
-            for (Double v : groupValues) meanValue += v;
-            meanValue /= groupValues.size();
+            int skips = 0;
+            for (int value : habit.getCheckmarks().getValues(seedFrom, scanned.minus(1)))
+                if (value == Checkmark.SKIP) skips++;
 
-            scores.add(new Score(timestamp, meanValue));
+            if (skips == 0) return seedFrom;
+            scanned = seedFrom;
+            seedFrom = seedFrom.minus(skips);
         }
 
-        return scores;
+        return null;
     }
 }
@@ -95,6 +95,14 @@ public final class Timestamp
         return first.unixTime < second.unixTime ? first : second;
     }
 
+    /**
+     * Given two timestamps, returns whichever timestamp is the newest one.
+     */
+    public static Timestamp newest(Timestamp first, Timestamp second)
+    {
+        return first.unixTime > second.unixTime ? first : second;
+    }
+
     public Timestamp minus(int days)
     {
         return plus(-days);
@@ -151,7 +159,8 @@ public final class Timestamp
      */
     public int getWeekday()
     {
-        return toCalendar().get(DAY_OF_WEEK) % 7;
+        // 1970-01-01 was a Thursday
+        return (int) ((unixTime / DAY_LENGTH + 5) % 7);
     }
 
     Timestamp truncate(DateUtils.TruncateField field, int firstWeekday)
@@ -0,0 +1,542 @@
+/*
+ * Copyright (C) 2016 linson Santos Xavier <isoron@gmail.com>
+ *
+ * This file is part of Loop Habit Tracker.
+ *
+ * Loop Habit Tracker is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * Loop Habit Tracker is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.isoron.uhabits.core.models.memory;
+
+import androidx.annotation.*;
+
+import org.isoron.uhabits.core.models.*;
+import org.isoron.uhabits.core.utils.*;
+
+import java.util.*;
+
+import static org.isoron.uhabits.core.models.Checkmark.*;
+
+/**
+ * In-memory implementation of {@link CheckmarkList} that stores only the
+ * values of the checkmarks, in a primitive array indexed by day.
+ * <p>
+ * The values are stored in decreasing order of timestamp, at the end of the
+ * array. The oldest computed checkmark always occupies the last position, and
+ * newer checkmarks are written towards the beginning of the array, which is
+ * grown as needed. This allows any interval of values to be copied with a
+ * single call to {@link System#arraycopy}. {@link Checkmark} objects are only
+ * built when requested.
+ * <p>
+ * To answer range queries, such as the sum of the values in a given month,
+ * without walking every day, the list also keeps prefix sums for blocks of
+ * {@link #BLOCK_SIZE} days, counted from the oldest checkmark. Since newer
+ * checkmarks are the ones that get recomputed, most blocks remain valid
+ * after an invalidation, and only the newest blocks are summed again.
+ * <p>
+ * Queries are not answered from these arrays directly. After each
+ * computation, a snapshot of the values and of the prefix sums is published
+ * in a volatile field, and readers answer their queries from it without
+ * locking. The lock is only taken, by readers, when the requested checkmarks
+ * are not in the published snapshot, and by the methods that modify the
+ * list. Invalidating any checkmark discards the published snapshot.
+ * <p>
+ * Snapshots do not copy the values. They share the array of the list, and
+ * only publish the range of it that they cover. The list never modifies that
+ * range in place afterwards. Newer checkmarks are written before it, in the
+ * free part of the array, and any other change is made on a new array.
+ */
+public class ArrayCheckmarkList extends CheckmarkList
+{
+    private static final int INITIAL_CAPACITY = 64;
+
+    private static final int BLOCK_SIZE = 32;
+
+    /**
+     * Values of the computed checkmarks. Only the entries from {@link #head}
+     * to the end of the array are valid.
+     */
+    @NonNull
+    private int values[];
+
+    private int head;
+
+    /**
+     * Entries from this position to the end of the array are shared with a
+     * snapshot, and must not be modified.
+     */
+    private int sharedHead;
+
+    /**
+     * Timestamp of the oldest computed checkmark, stored in the last position
+     * of the array, or null if no checkmarks have been computed.
+     */
+    @Nullable
+    private Timestamp oldest;
+
+    /**
+     * Entry k holds the sum of the values of the oldest k * BLOCK_SIZE
+     * checkmarks, ignoring UNKNOWN values. Only the first validBlocks + 1
+     * entries are valid.
+     */
+    @NonNull
+    private long blockSums[];
+
+    /**
+     * Entry k holds the number of YES_MANUAL values among the oldest
+     * k * BLOCK_SIZE checkmarks. Only the first validBlocks + 1 entries are
+     * valid.
+     */
+    @NonNull
+    private int blockCounts[];
+
+    private int validBlocks;
+
+    /**
+     * Copy of the checkmarks computed so far, or null if they have changed
+     * since the copy was made.
+     */
+    @Nullable
+    private volatile Snapshot snapshot;
+
+    public ArrayCheckmarkList(Habit habit)
+    {
+        super(habit);
+        values = new int[INITIAL_CAPACITY];
+        head = values.length;
+        sharedHead = values.length;
+        blockSums = new long[INITIAL_CAPACITY / BLOCK_SIZE + 1];
+        blockCounts = new int[INITIAL_CAPACITY / BLOCK_SIZE + 1];
+    }
+
+    @Override
+    public synchronized void add(List<Checkmark> checkmarks)
+    {
+        if (checkmarks.isEmpty()) return;
+
+        Timestamp from = checkmarks.get(0).getTimestamp();
+        Timestamp to = from;
+        for (Checkmark c : checkmarks)
+        {
+            from = Timestamp.oldest(from, c.getTimestamp());
+            if (c.getTimestamp().isNewerThan(to)) to = c.getTimestamp();
+        }
+
+        ensureRange(from, to);
+        ensureWritable(indexOf(from));
+        for (Checkmark c : checkmarks)
+            values[indexOf(c.getTimestamp())] = c.getValue();
+        invalidateBlocks(from);
+        snapshot = null;
+    }
+
+    @Override
+    protected synchronized void addValues(@NonNull Timestamp newest,
+                                          @NonNull int newValues[])
+    {
+        if (newValues.length == 0) return;
+
+        Timestamp from = newest.minus(newValues.length - 1);
+        ensureRange(from, newest);
+        ensureWritable(indexOf(from));
+        System.arraycopy(newValues, 0, values, indexOf(newest),
+            newValues.length);
+        invalidateBlocks(from);
+        snapshot = null;
+    }
+
+    @NonNull
+    @Override
+    public List<Checkmark> getByInterval(Timestamp from, Timestamp to)
+    {
+        final int slice[] = getValues(from, to);
+        return new AbstractList<Checkmark>()
+        {
+            @Override
+            public Checkmark get(int index)
+            {
+                return new Checkmark(to.minus(index), slice[index]);
+            }
+
+            @Override
+            public int size()
+            {
+                return slice.length;
+            }
+        };
+    }
+
+    @Override
+    public void getValues(Timestamp from, Timestamp to, int dest[])
+    {
+        if (from.isNewerThan(to)) return;
+
+        int length = from.daysUntil(to) + 1;
+        if (dest.length != length) throw new IllegalArgumentException();
+
+        Snapshot s = getSnapshot(from, to);
+        Arrays.fill(dest, UNKNOWN);
+        if (s.oldest == null) return;
+
+        Timestamp newest = s.getNewest();
+        if (from.isNewerThan(newest) || to.isOlderThan(s.oldest)) return;
+
+        Timestamp copyFrom = from.isOlderThan(s.oldest) ? s.oldest : from;
+        Timestamp copyTo = to.isNewerThan(newest) ? newest : to;
+
+        System.arraycopy(s.values, s.indexOf(copyTo), dest,
+            copyTo.daysUntil(to), copyFrom.daysUntil(copyTo) + 1);
+    }
+
+    @Override
+    public long getValueSum(Timestamp from, Timestamp to)
+    {
+        if (from.isNewerThan(to)) return 0;
+
+        Snapshot s = getSnapshot(from, to);
+        if (s.oldest == null) return 0;
+
+        int begin = Math.max(0, s.oldest.daysUntil(from));
+        int end = Math.min(s.size(), s.oldest.daysUntil(to) + 1);
+        if (begin >= end) return 0;
+
+        return s.getPrefixSum(end) - s.getPrefixSum(begin);
+    }
+
+    @Override
+    public int getYesManualCount(Timestamp from, Timestamp to)
+    {
+        if (from.isNewerThan(to)) return 0;
+
+        Snapshot s = getSnapshot(from, to);
+        if (s.oldest == null) return 0;
+
+        int begin = Math.max(0, s.oldest.daysUntil(from));
+        int end = Math.min(s.size(), s.oldest.daysUntil(to) + 1);
+        if (begin >= end) return 0;
+
+        return s.getPrefixCount(end) - s.getPrefixCount(begin);
+    }
+
+    @Override
+    protected void prepare(@NonNull Timestamp from)
+    {
+        getSnapshot(from, DateUtils.getTodayWithOffset());
+    }
+
+    @Override
+    public synchronized void invalidateNewerThan(Timestamp timestamp)
+    {
+        if (oldest != null)
+        {
+            int size = values.length - head;
+            int keep = Math.max(0, Math.min(size, oldest.daysUntil(timestamp)));
+            head = values.length - keep;
+            validBlocks = Math.min(validBlocks, keep / BLOCK_SIZE);
+            if (keep == 0) oldest = null;
+        }
+
+        // Recomputing the newest checkmarks of a boolean habit may move
+        // older intervals, so no part of the copy is kept.
+        snapshot = null;
+        observable.notifyListeners();
+    }
+
+    @Override
+    @Nullable
+    protected synchronized Checkmark getOldestComputed()
+    {
+        if (oldest == null) return null;
+        return new Checkmark(oldest, values[values.length - 1]);
+    }
+
+    @Override
+    @Nullable
+    protected synchronized Checkmark getNewestComputed()
+    {
+        if (oldest == null) return null;
+        return new Checkmark(getNewestTimestamp(), values[head]);
+    }
+
+    /**
+     * Returns a snapshot that contains every checkmark from the given day
+     * until today, or at least until the given day, if it is older. The
+     * published snapshot is returned without locking, if it is suitable.
+     * Otherwise, the checkmarks are computed, and a new snapshot is published.
+     */
+    @NonNull
+    private Snapshot getSnapshot(@NonNull Timestamp from, @NonNull Timestamp to)
+    {
+        Timestamp today = DateUtils.getTodayWithOffset();
+        Snapshot s = snapshot;
+        if (s != null && s.covers(from, to, today)) return s;
+
+        synchronized (this)
+        {
+            compute(from);
+            s = snapshot;
+            if (s != null && s.covers(from, to, today)) return s;
+
+            s = new Snapshot(today, oldest == null || isComputedFromOldestRep());
+            snapshot = s;
+            return s;
+        }
+    }
+
+    @NonNull
+    private Timestamp getNewestTimestamp()
+    {
+        if (oldest == null) throw new IllegalStateException();
+        return oldest.plus(values.length - head - 1);
+    }
+
+    private int indexOf(@NonNull Timestamp timestamp)
+    {
+        if (oldest == null) throw new IllegalStateException();
+        return values.length - 1 - oldest.daysUntil(timestamp);
+    }
+
+    /**
+     * Makes sure that the entries from the given position to the end of the
+     * array can be modified without affecting any snapshot, by moving the
+     * values to a new array if needed.
+     */
+    private void ensureWritable(int index)
+    {
+        if (index < sharedHead) return;
+        values = values.clone();
+        sharedHead = values.length;
+    }
+
+    /**
+     * Makes sure that the prefix sums of the first given number of blocks are
+     * valid. Every one of these blocks must be entirely computed.
+     */
+    private void updateBlocks(int blocks)
+    {
+        if (blocks <= validBlocks) return;
+
+        if (blocks >= blockSums.length)
+        {
+            int capacity = Math.max(blocks + 1, blockSums.length * 2);
+            blockSums = Arrays.copyOf(blockSums, capacity);
+            blockCounts = Arrays.copyOf(blockCounts, capacity);
+        }
+
+        for (int k = validBlocks; k < blocks; k++)
+        {
+            long sum = blockSums[k];
+            int count = blockCounts[k];
+
+            int first = values.length - 1 - k * BLOCK_SIZE;
+            for (int i = first; i > first - BLOCK_SIZE; i--)
+            {
+                if (values[i] != UNKNOWN) sum += values[i];
+                if (values[i] == YES_MANUAL) count++;
+            }
+
+            blockSums[k + 1] = sum;
+            blockCounts[k + 1] = count;
+        }
+
+        validBlocks = blocks;
+    }
+
+    /**
+     * Marks as invalid the prefix sums of every block that contains the given
+     * day, or any newer day.
+     */
+    private void invalidateBlocks(@NonNull Timestamp from)
+    {
+        if (oldest == null) throw new IllegalStateException();
+        validBlocks = Math.min(validBlocks, oldest.daysUntil(from) / BLOCK_SIZE);
+    }
+
+    /**
+     * Makes sure that every day between the given timestamps, inclusive, has
+     * a position in the array. Days that were not previously stored are filled
+     * with UNKNOWN.
+     */
+    private void ensureRange(@NonNull Timestamp from, @NonNull Timestamp to)
+    {
+        int size = values.length - head;
+
+        Timestamp newOldest = from;
+        Timestamp newNewest = to;
+        if (oldest != null)
+        {
+            newOldest = Timestamp.oldest(oldest, from);
+            Timestamp newest = getNewestTimestamp();
+            if (newest.isNewerThan(newNewest)) newNewest = newest;
+        }
+
+        int newSize = newOldest.daysUntil(newNewest) + 1;
+        int newHead = values.length - newSize;
+
+        // Moving the stored values, or filling the positions before them,
+        // must not modify the range shared with a snapshot
+        boolean moved = oldest != null && newOldest.isOlderThan(oldest);
+        int written = moved ? values.length : head;
+        boolean shared = newHead < written && written > sharedHead;
+
+        int target[] = values;
+        if (newSize > values.length)
+            target = new int[Math.max(newSize + newSize / 2, INITIAL_CAPACITY)];
+        else if (shared)
+            target = new int[values.length];
+
+        newHead = target.length - newSize;
+        int end = target.length;
+        if (oldest != null)
+        {
+            end -= newOldest.daysUntil(oldest);
+            if (target != values || moved)
+                System.arraycopy(values, head, target, end - size, size);
+            Arrays.fill(target, end, target.length, UNKNOWN);
+            end -= size;
+        }
+        Arrays.fill(target, newHead, end, UNKNOWN);
+
+        // Prefix sums are counted from the oldest checkmark
+        if (oldest == null || newOldest.isOlderThan(oldest)) validBlocks = 0;
+
+        if (target != values) sharedHead = target.length;
+        values = target;
+        head = newHead;
+        oldest = newOldest;
+    }
+
+    /**
+     * Immutable view of the computed checkmarks. The values are stored as in
+     * the list itself, with the oldest checkmark in the last position, and
+     * only the entries from {@link #head} to the end of the array are valid.
+     * The prefix sums of every complete block are copied.
+     */
+    private final class Snapshot
+    {
+        @NonNull
+        final int values[];
+
+        final int head;
+
+        @Nullable
+        final Timestamp oldest;
+
+        @NonNull
+        final long blockSums[];
+
+        @NonNull
+        final int blockCounts[];
+
+        /**
+         * Day on which the checkmarks were computed. They are only valid on
+         * that day, since repetitions made after it were ignored.
+         */
+        @NonNull
+        final Timestamp today;
+
+        /**
+         * True if the copy starts at the oldest repetition of the habit, so
+         * that every older checkmark is UNKNOWN.
+         */
+        final boolean complete;
+
+        /**
+         * Shares the current checkmarks. Must be called while holding the
+         * lock of the list.
+         */
+        Snapshot(@NonNull Timestamp today, boolean complete)
+        {
+            int head = ArrayCheckmarkList.this.head;
+            int size = ArrayCheckmarkList.this.values.length - head;
+            int blocks = size / BLOCK_SIZE;
+            updateBlocks(blocks);
+
+            this.values = ArrayCheckmarkList.this.values;
+            this.head = head;
+            sharedHead = Math.min(sharedHead, head);
+            this.oldest = ArrayCheckmarkList.this.oldest;
+            this.blockSums = Arrays.copyOf(ArrayCheckmarkList.this.blockSums,
+                blocks + 1);
+            this.blockCounts = Arrays.copyOf(
+                ArrayCheckmarkList.this.blockCounts, blocks + 1);
+            this.today = today;
+            this.complete = complete;
+        }
+
+        /**
+         * Returns true if this copy contains every checkmark that a query for
+         * the given interval would need to compute on the given day.
+         */
+        boolean covers(@NonNull Timestamp from,
+                       @NonNull Timestamp to,
+                       @NonNull Timestamp today)
+        {
+            if (!this.today.equals(today)) return false;
+            if (oldest == null) return complete;
+
+            Timestamp newest = getNewest();
+            if (to.isNewerThan(newest) && !newest.equals(today)) return false;
+            return complete || !from.isOlderThan(oldest);
+        }
+
+        @NonNull
+        Timestamp getNewest()
+        {
+            if (oldest == null) throw new IllegalStateException();
+            return oldest.plus(size() - 1);
+        }
+
+        int size()
+        {
+            return values.length - head;
+        }
+
+        int indexOf(@NonNull Timestamp timestamp)
+        {
+            if (oldest == null) throw new IllegalStateException();
+            return values.length - 1 - oldest.daysUntil(timestamp);
+        }
+
+        /**
+         * Returns the sum of the values of the given number of oldest
+         * checkmarks, ignoring UNKNOWN values.
+         */
+        long getPrefixSum(int count)
+        {
+            int block = count / BLOCK_SIZE;
+            long sum = blockSums[block];
+            for (int i = values.length - 1 - block * BLOCK_SIZE;
+                 i > values.length - 1 - count; i--)
+                if (values[i] != UNKNOWN) sum += values[i];
+
+            return sum;
+        }
+
+        /**
+         * Returns the number of YES_MANUAL values among the given number of
+         * oldest checkmarks.
+         */
+        int getPrefixCount(int count)
+        {
+            int block = count / BLOCK_SIZE;
+            int result = blockCounts[block];
+            for (int i = values.length - 1 - block * BLOCK_SIZE;
+                 i > values.length - 1 - count; i--)
+                if (values[i] == YES_MANUAL) result++;
+
+            return result;
+        }
+    }
+}
@@ -0,0 +1,384 @@
+/*
+ * Copyright (C) 2016 linson Santos Xavier <isoron@gmail.com>
+ *
+ * This file is part of Loop Habit Tracker.
+ *
+ * Loop Habit Tracker is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * Loop Habit Tracker is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.isoron.uhabits.core.models.memory;
+
+import androidx.annotation.*;
+
+import org.isoron.uhabits.core.models.*;
+
+import java.util.*;
+
+/**
+ * In-memory implementation of {@link ScoreList} that stores only the values
+ * of the scores, in a primitive array indexed by day.
+ * <p>
+ * As in {@link ArrayCheckmarkList}, the values are stored in decreasing order
+ * of timestamp, at the end of the array, with the oldest computed score in
+ * the last position. Looking up the score of any day takes constant time, and
+ * {@link Score} objects are only built when requested.
+ * <p>
+ * Queries are answered from an immutable snapshot of the values, which is
+ * published after each computation, without locking. Since scores are always
+ * computed from the previous ones, invalidating the newest scores only
+ * shortens the published snapshot, and the older scores remain readable.
+ * As in {@link ArrayCheckmarkList}, snapshots share the array of the list,
+ * which never modifies the shared range in place.
+ */
+public class ArrayScoreList extends ScoreList
+{
+    private static final int INITIAL_CAPACITY = 64;
+
+    /**
+     * Values of the computed scores. Only the entries from {@link #head} to
+     * the end of the array are valid.
+     */
+    @NonNull
+    private double[] values;
+
+    private int head;
+
+    /**
+     * Entries from this position to the end of the array are shared with a
+     * snapshot, and must not be modified.
+     */
+    private int sharedHead;
+
+    /**
+     * Timestamp of the oldest computed score, stored in the last position of
+     * the array, or null if no scores have been computed.
+     */
+    @Nullable
+    private Timestamp oldest;
+
+    /**
+     * Copy of the scores computed so far, or null if it has not been made
+     * since the list last changed.
+     */
+    @Nullable
+    private volatile Snapshot snapshot;
+
+    public ArrayScoreList(Habit habit)
+    {
+        super(habit);
+        values = new double[INITIAL_CAPACITY];
+        head = values.length;
+        sharedHead = values.length;
+    }
+
+    @Override
+    public synchronized void add(List<Score> scores)
+    {
+        if (scores.isEmpty()) return;
+
+        Timestamp from = scores.get(0).getTimestamp();
+        Timestamp to = from;
+        for (Score s : scores)
+        {
+            from = Timestamp.oldest(from, s.getTimestamp());
+            if (s.getTimestamp().isNewerThan(to)) to = s.getTimestamp();
+        }
+
+        ensureRange(from, to);
+        ensureWritable(indexOf(from));
+        for (Score s : scores)
+            values[indexOf(s.getTimestamp())] = s.getValue();
+        snapshot = null;
+
+        getObservable().notifyListeners();
+    }
+
+    @Override
+    protected synchronized void addValues(@NonNull Timestamp newest,
+                                          @NonNull double[] newValues)
+    {
+        if (newValues.length == 0) return;
+
+        Timestamp from = newest.minus(newValues.length - 1);
+        ensureRange(from, newest);
+        ensureWritable(indexOf(from));
+        System.arraycopy(newValues, 0, values, indexOf(newest),
+            newValues.length);
+        snapshot = null;
+
+        getObservable().notifyListeners();
+    }
+
+    @NonNull
+    @Override
+    public List<Score> getByInterval(@NonNull Timestamp from,
+                                     @NonNull Timestamp to)
+    {
+        Snapshot s = getSnapshot(from, to);
+        if (s.oldest == null) return new ArrayList<>();
+
+        Timestamp newest = s.getNewest();
+        if (from.isNewerThan(newest) || to.isOlderThan(s.oldest))
+            return new ArrayList<>();
+
+        final Timestamp sliceTo = to.isNewerThan(newest) ? newest : to;
+        Timestamp sliceFrom = from.isOlderThan(s.oldest) ? s.oldest : from;
+        final double[] slice = new double[sliceFrom.daysUntil(sliceTo) + 1];
+        System.arraycopy(s.values, s.indexOf(sliceTo), slice, 0, slice.length);
+
+        return new AbstractList<Score>()
+        {
+            @Override
+            public Score get(int index)
+            {
+                return new Score(sliceTo.minus(index), slice[index]);
+            }
+
+            @Override
+            public int size()
+            {
+                return slice.length;
+            }
+        };
+    }
+
+    @Override
+    public void getValues(Timestamp from, Timestamp to, double[] dest)
+    {
+        if (from.isNewerThan(to)) return;
+        if (dest.length != from.daysUntil(to) + 1)
+            throw new IllegalArgumentException();
+
+        Snapshot s = getSnapshot(from, to);
+        System.arraycopy(s.values, s.indexOf(to), dest, 0, dest.length);
+    }
+
+    @Override
+    public double getValue(Timestamp timestamp)
+    {
+        Snapshot s = getSnapshot(timestamp, timestamp);
+        return s.values[s.indexOf(timestamp)];
+    }
+
+    @Nullable
+    @Override
+    protected synchronized Score getComputedByTimestamp(Timestamp timestamp)
+    {
+        if (!isComputed(timestamp)) return null;
+        return new Score(timestamp, values[indexOf(timestamp)]);
+    }
+
+    @Override
+    protected synchronized double getComputedValue(Timestamp timestamp)
+    {
+        if (!isComputed(timestamp)) throw new IllegalStateException();
+        return values[indexOf(timestamp)];
+    }
+
+    @Override
+    public synchronized void invalidateNewerThan(Timestamp timestamp)
+    {
+        if (oldest != null)
+        {
+            int size = values.length - head;
+            int keep = Math.max(0, Math.min(size, oldest.daysUntil(timestamp)));
+            head = values.length - keep;
+            if (keep == 0) oldest = null;
+        }
+
+        Snapshot s = snapshot;
+        if (s != null) snapshot = s.truncate(timestamp);
+
+        getObservable().notifyListeners();
+    }
+
+    @Override
+    @NonNull
+    public synchronized List<Score> toList()
+    {
+        computeAll();
+        if (oldest == null) return new ArrayList<>();
+        return new ArrayList<>(getByInterval(oldest, getNewestTimestamp()));
+    }
+
+    @Nullable
+    @Override
+    protected synchronized Score getNewestComputed()
+    {
+        if (oldest == null) return null;
+        return new Score(getNewestTimestamp(), values[head]);
+    }
+
+    @Nullable
+    @Override
+    protected synchronized Score getOldestComputed()
+    {
+        if (oldest == null) return null;
+        return new Score(oldest, values[values.length - 1]);
+    }
+
+    /**
+     * Returns a snapshot that contains every score inside the given interval.
+     * The published snapshot is returned without locking, if it contains
+     * them. Otherwise, the scores are computed, and a new snapshot is
+     * published.
+     */
+    @NonNull
+    private Snapshot getSnapshot(@NonNull Timestamp from, @NonNull Timestamp to)
+    {
+        Snapshot s = snapshot;
+        if (s != null && s.covers(from, to)) return s;
+
+        synchronized (this)
+        {
+            compute(from, to);
+            s = snapshot;
+            if (s != null && s.covers(from, to)) return s;
+
+            s = new Snapshot(values, head, oldest);
+            sharedHead = Math.min(sharedHead, head);
+            snapshot = s;
+            return s;
+        }
+    }
+
+    private boolean isComputed(@NonNull Timestamp timestamp)
+    {
+        if (oldest == null) return false;
+        return !timestamp.isOlderThan(oldest) &&
+               !timestamp.isNewerThan(getNewestTimestamp());
+    }
+
+    @NonNull
+    private Timestamp getNewestTimestamp()
+    {
+        if (oldest == null) throw new IllegalStateException();
+        return oldest.plus(values.length - head - 1);
+    }
+
+    private int indexOf(@NonNull Timestamp timestamp)
+    {
+        if (oldest == null) throw new IllegalStateException();
+        return values.length - 1 - oldest.daysUntil(timestamp);
+    }
+
+    /**
+     * Makes sure that the entries from the given position to the end of the
+     * array can be modified without affecting any snapshot, by moving the
+     * values to a new array if needed.
+     */
+    private void ensureWritable(int index)
+    {
+        if (index < sharedHead) return;
+        values = values.clone();
+        sharedHead = values.length;
+    }
+
+    /**
+     * Makes sure that every day between the given timestamps, inclusive, has
+     * a position in the array.
+     */
+    private void ensureRange(@NonNull Timestamp from, @NonNull Timestamp to)
+    {
+        int size = values.length - head;
+
+        Timestamp newOldest = from;
+        Timestamp newNewest = to;
+        if (oldest != null)
+        {
+            newOldest = Timestamp.oldest(oldest, from);
+            Timestamp newest = getNewestTimestamp();
+            if (newest.isNewerThan(newNewest)) newNewest = newest;
+        }
+
+        int newSize = newOldest.daysUntil(newNewest) + 1;
+
+        // Moving the stored values must not modify the range shared with a
+        // snapshot
+        boolean moved = oldest != null && newOldest.isOlderThan(oldest);
+
+        double[] target = values;
+        if (newSize > values.length)
+            target = new double[Math.max(newSize + newSize / 2, INITIAL_CAPACITY)];
+        else if (moved && sharedHead < values.length)
+            target = new double[values.length];
+
+        if (oldest != null && (target != values || moved))
+        {
+            int end = target.length - newOldest.daysUntil(oldest);
+            System.arraycopy(values, head, target, end - size, size);
+        }
+
+        if (target != values) sharedHead = target.length;
+        values = target;
+        head = target.length - newSize;
+        oldest = newOldest;
+    }
+
+    /**
+     * Immutable view of the computed scores, which shares the array of the
+     * list. Only the entries from {@link #head} to the end of the array are
+     * valid, so that the view can be shortened without copying the values.
+     */
+    private static final class Snapshot
+    {
+        @NonNull
+        final double[] values;
+
+        final int head;
+
+        @Nullable
+        final Timestamp oldest;
+
+        Snapshot(@NonNull double[] values, int head, @Nullable Timestamp oldest)
+        {
+            this.values = values;
+            this.head = head;
+            this.oldest = oldest;
+        }
+
+        boolean covers(@NonNull Timestamp from, @NonNull Timestamp to)
+        {
+            if (oldest == null) return false;
+            return !from.isOlderThan(oldest) && !to.isNewerThan(getNewest());
+        }
+
+        @NonNull
+        Timestamp getNewest()
+        {
+            if (oldest == null) throw new IllegalStateException();
+            return oldest.plus(values.length - head - 1);
+        }
+
+        int indexOf(@NonNull Timestamp timestamp)
+        {
+            if (oldest == null) throw new IllegalStateException();
+            return values.length - 1 - oldest.daysUntil(timestamp);
+        }
+
+        /**
+         * Returns a view without the scores that have the given timestamp, or
+         * any newer one, or null if no score is left.
+         */
+        @Nullable
+        Snapshot truncate(@NonNull Timestamp timestamp)
+        {
+            if (oldest == null) return null;
+            int size = values.length - head;
+            int keep = Math.max(0, Math.min(size, oldest.daysUntil(timestamp)));
+            if (keep == 0) return null;
+            return new Snapshot(values, values.length - keep, oldest);
+        }
+    }
+}
@@ -51,7 +51,7 @@ public class MemoryCheckmarkList extends CheckmarkList
     public synchronized List<Checkmark> getByInterval(Timestamp from,
                                                       Timestamp to)
     {
-        compute();
+        compute(from);
 
         Timestamp newestComputed = new Timestamp(0);
         Timestamp oldestComputed = new Timestamp(0).plus(1000000);
@@ -77,9 +77,16 @@ public class MemoryCheckmarkList extends CheckmarkList
     }
 
     @Override
-    public void invalidateNewerThan(Timestamp timestamp)
+    public synchronized void invalidateNewerThan(Timestamp timestamp)
     {
-        list.clear();
+        Checkmark newest = getNewestComputed();
+        if (newest != null)
+        {
+            int count = timestamp.daysUntil(newest.getTimestamp()) + 1;
+            count = Math.max(0, Math.min(list.size(), count));
+            list.subList(0, count).clear();
+        }
+
         observable.notifyListeners();
     }
 
@@ -22,18 +22,61 @@ package org.isoron.uhabits.core.models.memory;
 import androidx.annotation.*;
 
 import org.isoron.uhabits.core.models.*;
+import org.isoron.uhabits.core.utils.*;
 
+import java.lang.ref.*;
 import java.util.*;
 
 import static org.isoron.uhabits.core.models.HabitList.Order.*;
 
 /**
  * In-memory implementation of {@link HabitList}.
+ * <p>
+ * The habits are kept sorted at all times. When a single habit changes, it is
+ * moved directly to its new position, which is found by binary search, instead
+ * of sorting the entire list again. The scores and checkmarks used by the
+ * automatic orders are cached for each habit, and recomputed when the habit
+ * is invalidated, or when the day changes. Habits are also indexed by id and
+ * by UUID, so that they can be found without scanning the list.
+ * <p>
+ * Filtered lists are shared between callers that use the same matcher, and
+ * therefore cannot be sorted by their callers. They are sorted like the
+ * parent list was when they were created. When the order of the parent list
+ * changes, filtering it again returns a new list, with the new order.
+ * Filtered lists are updated incrementally: when a single habit is added, removed or
+ * modified, only that habit is matched again. The parent list only keeps weak
+ * references to its filtered lists, so that they can be garbage collected
+ * when no longer in use.
  */
 public class MemoryHabitList extends HabitList
 {
     @NonNull
-    private LinkedList<Habit> list = new LinkedList<>();
+    private ArrayList<Habit> list = new ArrayList<>();
+
+    @NonNull
+    private HashMap<Habit, SortKey> sortKeys = new HashMap<>();
+
+    /**
+     * Day on which the cached sort keys were computed.
+     */
+    @Nullable
+    private Timestamp sortKeysDay = null;
+
+    @NonNull
+    private HashMap<Long, Habit> habitsById = new HashMap<>();
+
+    @NonNull
+    private HashMap<String, Habit> habitsByUUID = new HashMap<>();
+
+    /**
+     * Id and UUID under which each habit was indexed. Both may have changed
+     * since then, so they are needed to remove the habit from the indexes.
+     */
+    @NonNull
+    private HashMap<Habit, Long> indexedIds = new HashMap<>();
+
+    @NonNull
+    private HashMap<Habit, String> indexedUUIDs = new HashMap<>();
 
     @NonNull
     private Order primaryOrder = Order.BY_POSITION;
@@ -46,21 +89,25 @@ public class MemoryHabitList extends HabitList
     @Nullable
     private MemoryHabitList parent = null;
 
+    @NonNull
+    private final ArrayList<WeakReference<MemoryHabitList>> views = new ArrayList<>();
+
+    @NonNull
+    private final HashMap<HabitMatcher, WeakReference<MemoryHabitList>> viewsByMatcher = new HashMap<>();
+
     public MemoryHabitList()
     {
         super();
     }
 
     protected MemoryHabitList(@NonNull HabitMatcher matcher,
-                              Comparator<Habit> comparator,
                               @NonNull MemoryHabitList parent)
     {
         super(matcher);
         this.parent = parent;
-        this.comparator = comparator;
         this.primaryOrder = parent.primaryOrder;
         this.secondaryOrder = parent.secondaryOrder;
-        parent.getObservable().addListener(this::loadFromParent);
+        this.comparator = getComposedComparatorByOrder(primaryOrder, secondaryOrder);
         loadFromParent();
     }
 
@@ -69,34 +116,33 @@ public class MemoryHabitList extends HabitList
         throws IllegalArgumentException
     {
         throwIfHasParent();
-        if (list.contains(habit))
+        if (contains(habit))
             throw new IllegalArgumentException("habit already added");
 
         Long id = habit.getId();
         if (id != null && getById(id) != null)
             throw new RuntimeException("duplicate id");
 
-        if (id == null) habit.setId((long) list.size());
-        list.addLast(habit);
-        resort();
+        if (id == null)
+        {
+            long newId = list.size();
+            while (habitsById.containsKey(newId)) newId++;
+            habit.setId(newId);
+        }
+
+        insert(habit);
     }
 
     @Override
     public synchronized Habit getById(long id)
     {
-        for (Habit h : list)
-        {
-            if (h.getId() == null) throw new IllegalStateException();
-            if (h.getId() == id) return h;
-        }
-        return null;
+        return habitsById.get(id);
     }
 
     @Override
     public synchronized Habit getByUUID(String uuid)
     {
-        for (Habit h : list) if (h.getUUID().equals(uuid)) return h;
-        return null;
+        return habitsByUUID.get(uuid);
     }
 
     @NonNull
@@ -110,7 +156,19 @@ public class MemoryHabitList extends HabitList
     @Override
     public synchronized HabitList getFiltered(HabitMatcher matcher)
     {
-        return new MemoryHabitList(matcher, comparator, this);
+        WeakReference<MemoryHabitList> ref = viewsByMatcher.get(matcher);
+        MemoryHabitList view = (ref == null ? null : ref.get());
+
+        if (view == null || view.getPrimaryOrder() != primaryOrder ||
+            view.getSecondaryOrder() != secondaryOrder)
+        {
+            view = new MemoryHabitList(matcher, this);
+            ref = new WeakReference<>(view);
+            views.add(ref);
+            viewsByMatcher.put(matcher, ref);
+        }
+
+        return view;
     }
 
     @Override
@@ -128,14 +186,16 @@ public class MemoryHabitList extends HabitList
     @Override
     public synchronized void setPrimaryOrder(@NonNull Order order)
     {
+        throwIfReordered(order, secondaryOrder);
         this.primaryOrder = order;
         this.comparator = getComposedComparatorByOrder(this.primaryOrder, this.secondaryOrder);
         resort();
     }
 
     @Override
-    public void setSecondaryOrder(@NonNull Order order)
+    public synchronized void setSecondaryOrder(@NonNull Order order)
     {
+        throwIfReordered(primaryOrder, order);
         this.secondaryOrder = order;
         this.comparator = getComposedComparatorByOrder(this.primaryOrder, this.secondaryOrder);
         resort();
@@ -168,7 +228,7 @@ public class MemoryHabitList extends HabitList
                 colorComparatorAsc.compare(h2, h1);
 
         Comparator<Habit> scoreComparatorDesc = (h1, h2) ->
-                Double.compare(h1.getScores().getTodayValue(), h2.getScores().getTodayValue());
+                Double.compare(getSortKey(h1).score, getSortKey(h2).score);
 
         Comparator<Habit> scoreComparatorAsc = (h1, h2) ->
                 scoreComparatorDesc.compare(h2, h1);
@@ -178,18 +238,18 @@ public class MemoryHabitList extends HabitList
 
         Comparator<Habit> statusComparatorDesc = (h1, h2) ->
         {
-            if (h1.isCompletedToday() != h2.isCompletedToday()) {
-                return h1.isCompletedToday() ? -1 : 1;
+            SortKey k1 = getSortKey(h1);
+            SortKey k2 = getSortKey(h2);
+
+            if (k1.completedToday != k2.completedToday) {
+                return k1.completedToday ? -1 : 1;
             }
 
             if (h1.isNumerical() != h2.isNumerical()) {
                 return h1.isNumerical() ? -1 : 1;
             }
 
-            Integer v1 = Objects.requireNonNull(h1.getCheckmarks().getToday()).getValue();
-            Integer v2 = Objects.requireNonNull(h2.getCheckmarks().getToday()).getValue();
-
-            return v2.compareTo(v1);
+            return Integer.compare(k2.todayValue, k1.todayValue);
         };
 
         Comparator<Habit> statusComparatorAsc = (h1, h2) -> statusComparatorDesc.compare(h2, h1);
@@ -223,8 +283,7 @@ public class MemoryHabitList extends HabitList
     public synchronized void remove(@NonNull Habit habit)
     {
         throwIfHasParent();
-        list.remove(habit);
-        getObservable().notifyListeners();
+        delete(habit);
     }
 
     @Override
@@ -249,6 +308,7 @@ public class MemoryHabitList extends HabitList
             h.setPosition(position++);
 
         getObservable().notifyListeners();
+        for (MemoryHabitList view : getViews()) view.resort();
     }
 
     @Override
@@ -260,7 +320,61 @@ public class MemoryHabitList extends HabitList
     @Override
     public synchronized void update(List<Habit> habits)
     {
-        resort();
+        getObservable().beginBatch();
+        try
+        {
+            for (Habit h : habits)
+            {
+                if (!contains(h)) continue;
+                unindex(h);
+                index(h);
+                reposition(h);
+            }
+        }
+        finally
+        {
+            getObservable().endBatch();
+        }
+    }
+
+    /**
+     * Moves the given habit to its correct position, after discarding its
+     * cached sort key. Habits that compare as equal keep their relative
+     * order, as they would if the whole list were sorted again. If the habit
+     * moves, listeners receive a move event. If the list does not contain the
+     * habit, nothing happens.
+     */
+    @Override
+    public synchronized void reposition(@NonNull Habit habit)
+    {
+        sortKeys.remove(habit);
+        int from = list.indexOf(habit);
+        if (from < 0) return;
+        if (postponeResort()) return;
+        if (resortIfDayChanged()) return;
+
+        list.remove(from);
+        int to = from;
+        if (from > 0 && comparator.compare(list.get(from - 1), habit) > 0)
+            to = findPosition(habit, 0, from, false);
+        else if (from < list.size() && comparator.compare(list.get(from), habit) < 0)
+            to = findPosition(habit, from, list.size(), true);
+        list.add(to, habit);
+
+        if (from != to) getObservable().notifyItemMoved(from, to);
+        else getObservable().notifyListeners();
+
+        for (MemoryHabitList view : getViews()) view.onParentHabitChanged(habit);
+    }
+
+    private void throwIfReordered(@NonNull Order primary,
+                                  @Nullable Order secondary)
+    {
+        if (parent == null) return;
+        if (primary == primaryOrder && secondary == secondaryOrder) return;
+        throw new IllegalStateException(
+            "Filtered lists are shared, and cannot be sorted directly. " +
+            "You should sort the parent list, and filter it again, instead.");
     }
 
     private void throwIfHasParent()
@@ -270,18 +384,207 @@ public class MemoryHabitList extends HabitList
             "You should modify the parent list instead.");
     }
 
+    private synchronized void onParentHabitAdded(@NonNull Habit habit)
+    {
+        if (filter.matches(habit)) insert(habit);
+    }
+
+    private synchronized void onParentHabitRemoved(@NonNull Habit habit)
+    {
+        delete(habit);
+    }
+
+    private synchronized void onParentHabitChanged(@NonNull Habit habit)
+    {
+        boolean matches = filter.matches(habit);
+        boolean contains = contains(habit);
+
+        if (matches && !contains) insert(habit);
+        else if (!matches && contains) delete(habit);
+        else if (contains)
+        {
+            unindex(habit);
+            index(habit);
+            reposition(habit);
+        }
+    }
+
+    private void insert(@NonNull Habit habit)
+    {
+        if (postponeResort()) list.add(habit);
+        else
+        {
+            resortIfDayChanged();
+            list.add(findPosition(habit, 0, list.size(), false), habit);
+        }
+        index(habit);
+        getObservable().notifyListeners();
+
+        for (MemoryHabitList view : getViews()) view.onParentHabitAdded(habit);
+    }
+
+    private void delete(@NonNull Habit habit)
+    {
+        if (!list.remove(habit)) return;
+        unindex(habit);
+        sortKeys.remove(habit);
+        getObservable().notifyListeners();
+
+        for (MemoryHabitList view : getViews()) view.onParentHabitRemoved(habit);
+    }
+
+    /**
+     * Returns the filtered lists that are still in use, and discards the
+     * ones that have been garbage collected.
+     */
+    @NonNull
+    private List<MemoryHabitList> getViews()
+    {
+        List<MemoryHabitList> result = new ArrayList<>(views.size());
+        Iterator<WeakReference<MemoryHabitList>> it = views.iterator();
+        while (it.hasNext())
+        {
+            MemoryHabitList view = it.next().get();
+            if (view == null) it.remove();
+            else result.add(view);
+        }
+
+        Iterator<WeakReference<MemoryHabitList>> cached =
+            viewsByMatcher.values().iterator();
+        while (cached.hasNext())
+            if (cached.next().get() == null) cached.remove();
+
+        return result;
+    }
+
     private synchronized void loadFromParent()
     {
         if (parent == null) throw new IllegalStateException();
 
         list.clear();
-        for (Habit h : parent) if (filter.matches(h)) list.add(h);
+        habitsById.clear();
+        habitsByUUID.clear();
+        indexedIds.clear();
+        indexedUUIDs.clear();
+        for (Habit h : parent)
+        {
+            if (!filter.matches(h)) continue;
+            list.add(h);
+            index(h);
+        }
         resort();
     }
 
     public synchronized void resort()
     {
+        if (postponeResort()) return;
+        sortKeys.clear();
+        sortKeysDay = DateUtils.getTodayWithOffset();
         if (comparator != null) Collections.sort(list, comparator);
         getObservable().notifyListeners();
+
+        for (MemoryHabitList view : getViews()) view.loadFromParent();
+    }
+
+    private boolean contains(@NonNull Habit habit)
+    {
+        return indexedIds.containsKey(habit);
+    }
+
+    private void index(@NonNull Habit habit)
+    {
+        habitsById.put(habit.getId(), habit);
+        habitsByUUID.put(habit.getUUID(), habit);
+        indexedIds.put(habit, habit.getId());
+        indexedUUIDs.put(habit, habit.getUUID());
+    }
+
+    /**
+     * Removes the given habit from the indexes, using the id and the UUID it
+     * was indexed under, which may differ from its current ones.
+     */
+    private void unindex(@NonNull Habit habit)
+    {
+        if (indexedIds.containsKey(habit))
+        {
+            Long id = indexedIds.remove(habit);
+            if (habitsById.get(id) == habit) habitsById.remove(id);
+        }
+
+        if (indexedUUIDs.containsKey(habit))
+        {
+            String uuid = indexedUUIDs.remove(habit);
+            if (habitsByUUID.get(uuid) == habit) habitsByUUID.remove(uuid);
+        }
+    }
+
+    /**
+     * Returns the position, between low and high, at which the given habit
+     * should be inserted. If beforeEqual is true, the habit is placed before
+     * any habits that compare as equal to it. Otherwise, it is placed after
+     * them.
+     */
+    private int findPosition(@NonNull Habit habit,
+                             int low,
+                             int high,
+                             boolean beforeEqual)
+    {
+        while (low < high)
+        {
+            int mid = (low + high) >>> 1;
+            int cmp = comparator.compare(list.get(mid), habit);
+            if (cmp > 0 || (cmp == 0 && beforeEqual)) high = mid;
+            else low = mid + 1;
+        }
+
+        return low;
+    }
+
+    /**
+     * Sorts the list again if the day has changed since the sort keys were
+     * computed, since the scores and checkmarks of today have changed too.
+     * Returns true if the list was sorted.
+     */
+    private boolean resortIfDayChanged()
+    {
+        Timestamp today = DateUtils.getTodayWithOffset();
+        if (today.equals(sortKeysDay)) return false;
+        resort();
+        return true;
+    }
+
+    @NonNull
+    private SortKey getSortKey(@NonNull Habit habit)
+    {
+        SortKey key = sortKeys.get(habit);
+        if (key == null || key.invalidationCount != habit.getInvalidationCount())
+        {
+            key = new SortKey(habit);
+            sortKeys.put(habit, key);
+        }
+        return key;
+    }
+
+    /**
+     * Values computed from the repetitions of a habit that are needed by the
+     * automatic orders.
+     */
+    private static final class SortKey
+    {
+        final long invalidationCount;
+
+        final double score;
+
+        final boolean completedToday;
+
+        final int todayValue;
+
+        SortKey(@NonNull Habit habit)
+        {
+            invalidationCount = habit.getInvalidationCount();
+            score = habit.getScores().getTodayValue();
+            completedToday = habit.isCompletedToday();
+            todayValue = Objects.requireNonNull(habit.getCheckmarks().getToday()).getValue();
+        }
     }
 }
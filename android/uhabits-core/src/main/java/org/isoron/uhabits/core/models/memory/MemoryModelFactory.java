@@ -28,7 +28,7 @@ public class MemoryModelFactory implements ModelFactory
     @Override
     public CheckmarkList buildCheckmarkList(Habit habit)
     {
-        return new MemoryCheckmarkList(habit);
+        return new ArrayCheckmarkList(habit);
     }
 
     @Override
@@ -46,7 +46,7 @@ public class MemoryModelFactory implements ModelFactory
     @Override
     public ScoreList buildScoreList(Habit habit)
     {
-        return new MemoryScoreList(habit);
+        return new ArrayScoreList(habit);
     }
 
     @Override
@@ -27,11 +27,23 @@ import java.util.*;
 
 /**
  * In-memory implementation of {@link RepetitionList}.
+ * <p>
+ * Repetitions are kept sorted by timestamp, from oldest to newest, so that
+ * lookups use binary search and interval queries do not need to sort. Since
+ * repetitions are usually added in chronological order, insertions tend to
+ * happen at the end of the list. The number of repetitions with value
+ * {@link Checkmark#YES_MANUAL} is kept up to date as repetitions are added and
+ * removed.
+ * <p>
+ * Every method holds the lock of the list, since checkmarks may be computed
+ * by other threads while repetitions are being modified.
  */
 public class MemoryRepetitionList extends RepetitionList
 {
     ArrayList<Repetition> list;
 
+    private long totalCount;
+
     public MemoryRepetitionList(Habit habit)
     {
         super(habit);
@@ -39,99 +51,120 @@ public class MemoryRepetitionList extends RepetitionList
     }
 
     @Override
-    public void add(Repetition repetition)
+    public synchronized void add(Repetition repetition)
     {
-        list.add(repetition);
+        // Repetitions with the same timestamp are kept in insertion order
+        list.add(indexOfFirstNewerThan(repetition.getTimestamp()), repetition);
+        if (repetition.getValue() == Checkmark.YES_MANUAL) totalCount++;
         observable.notifyListeners();
     }
 
     @Override
-    public List<Repetition> getByInterval(Timestamp fromTimestamp, Timestamp toTimestamp)
+    public synchronized List<Repetition> getByInterval(Timestamp fromTimestamp, Timestamp toTimestamp)
     {
-        ArrayList<Repetition> filtered = new ArrayList<>();
-
-        for (Repetition r : list)
-        {
-            Timestamp t = r.getTimestamp();
-            if (t.isOlderThan(fromTimestamp) || t.isNewerThan(toTimestamp)) continue;
-            filtered.add(r);
-        }
-
-        Collections.sort(filtered,
-            (r1, r2) -> r1.getTimestamp().compare(r2.getTimestamp()));
-
-        return filtered;
+        int from = indexOfFirstNotOlderThan(fromTimestamp);
+        int to = indexOfFirstNewerThan(toTimestamp);
+        if (from >= to) return new ArrayList<>();
+        return new ArrayList<>(list.subList(from, to));
     }
 
     @Nullable
     @Override
-    public Repetition getByTimestamp(Timestamp timestamp)
+    public synchronized Repetition getByTimestamp(Timestamp timestamp)
     {
-        for (Repetition r : list)
-            if (r.getTimestamp().equals(timestamp)) return r;
+        int index = indexOfFirstNotOlderThan(timestamp);
+        if (index >= list.size()) return null;
 
-        return null;
+        Repetition rep = list.get(index);
+        if (!rep.getTimestamp().equals(timestamp)) return null;
+        return rep;
     }
 
     @Nullable
     @Override
-    public Repetition getOldest()
+    public synchronized Repetition getOldest()
     {
-        Timestamp oldestTimestamp = Timestamp.ZERO.plus(1000000);
-        Repetition oldestRep = null;
-
-        for (Repetition rep : list)
-        {
-            if (rep.getTimestamp().isOlderThan(oldestTimestamp))
-            {
-                oldestRep = rep;
-                oldestTimestamp = rep.getTimestamp();
-            }
-        }
-
-        return oldestRep;
+        if (list.isEmpty()) return null;
+        return list.get(0);
     }
 
     @Nullable
     @Override
-    public Repetition getNewest()
+    public synchronized Repetition getNewest()
     {
-        Timestamp newestTimestamp = Timestamp.ZERO;
-        Repetition newestRep = null;
-
-        for (Repetition rep : list)
-        {
-            if (rep.getTimestamp().isNewerThan(newestTimestamp))
-            {
-                newestRep = rep;
-                newestTimestamp = rep.getTimestamp();
-            }
-        }
-
-        return newestRep;
+        if (list.isEmpty()) return null;
+        return list.get(list.size() - 1);
     }
 
     @Override
-    public void remove(@NonNull Repetition repetition)
+    public synchronized void remove(@NonNull Repetition repetition)
     {
-        list.remove(repetition);
+        Timestamp timestamp = repetition.getTimestamp();
+        int index = indexOfFirstNotOlderThan(timestamp);
+
+        for (; index < list.size(); index++)
+        {
+            Repetition rep = list.get(index);
+            if (!rep.getTimestamp().equals(timestamp)) break;
+            if (!rep.equals(repetition)) continue;
+
+            list.remove(index);
+            if (rep.getValue() == Checkmark.YES_MANUAL) totalCount--;
+            break;
+        }
+
         observable.notifyListeners();
     }
 
     @Override
-    public long getTotalCount()
+    public synchronized long getTotalCount()
     {
-        int count = 0;
-        for (Repetition rep : list)
-            if (rep.getValue() == Checkmark.YES_MANUAL)
-                count++;
-        return count;
+        return totalCount;
     }
 
     @Override
-    public void removeAll()
+    public synchronized void removeAll()
     {
         list.clear();
+        totalCount = 0;
         getObservable().notifyListeners();
     }
+
+    /**
+     * Returns the position of the oldest repetition that is not older than
+     * the given timestamp, or the size of the list if there is none.
+     */
+    private int indexOfFirstNotOlderThan(@NonNull Timestamp timestamp)
+    {
+        int low = 0;
+        int high = list.size();
+
+        while (low < high)
+        {
+            int mid = (low + high) >>> 1;
+            if (list.get(mid).getTimestamp().isOlderThan(timestamp)) low = mid + 1;
+            else high = mid;
+        }
+
+        return low;
+    }
+
+    /**
+     * Returns the position of the oldest repetition that is newer than the
+     * given timestamp, or the size of the list if there is none.
+     */
+    private int indexOfFirstNewerThan(@NonNull Timestamp timestamp)
+    {
+        int low = 0;
+        int high = list.size();
+
+        while (low < high)
+        {
+            int mid = (low + high) >>> 1;
+            if (list.get(mid).getTimestamp().isNewerThan(timestamp)) high = mid;
+            else low = mid + 1;
+        }
+
+        return low;
+    }
 }
@@ -67,16 +67,25 @@ public class MemoryScoreList extends ScoreList
     @Override
     public Score getComputedByTimestamp(Timestamp timestamp)
     {
-        for (Score s : list)
-            if (s.getTimestamp().equals(timestamp)) return s;
+        Score newest = getNewestComputed();
+        if (newest == null) return null;
 
-        return null;
+        int index = timestamp.daysUntil(newest.getTimestamp());
+        if (index < 0 || index >= list.size()) return null;
+        return list.get(index);
     }
 
     @Override
-    public void invalidateNewerThan(Timestamp timestamp)
+    public synchronized void invalidateNewerThan(Timestamp timestamp)
     {
-        list.clear();
+        Score newest = getNewestComputed();
+        if (newest != null)
+        {
+            int count = timestamp.daysUntil(newest.getTimestamp()) + 1;
+            count = Math.max(0, Math.min(list.size(), count));
+            list.subList(0, count).clear();
+        }
+
         getObservable().notifyListeners();
     }
 
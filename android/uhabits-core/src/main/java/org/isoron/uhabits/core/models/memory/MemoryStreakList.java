@@ -27,7 +27,7 @@ import java.util.*;
 
 public class MemoryStreakList extends StreakList
 {
-    ArrayList<Streak> list;
+    protected final ArrayList<Streak> list;
 
     public MemoryStreakList(Habit habit)
     {
@@ -0,0 +1,354 @@
+/*
+ * Copyright (C) 2017 linson Santos Xavier <isoron@gmail.com>
+ *
+ * This file is part of Loop Habit Tracker.
+ *
+ * Loop Habit Tracker is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * Loop Habit Tracker is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ *
+ */
+
+package org.isoron.uhabits.core.models.sqlite;
+
+import androidx.annotation.*;
+
+import org.isoron.uhabits.core.database.*;
+import org.isoron.uhabits.core.models.*;
+import org.isoron.uhabits.core.models.sqlite.records.*;
+import org.isoron.uhabits.core.utils.*;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.logging.*;
+
+/**
+ * Persistent cache of the data derived from the repetitions of each habit,
+ * such as its scores and its streaks, which allows the application to start
+ * without recomputing the entire history of every habit.
+ * <p>
+ * Each habit has at most one record per series. A record holds the data as
+ * it was on a certain day, together with a hash of the repetitions up to that
+ * day and of the settings of the habit that affect the computation. When a
+ * habit changes, the records that refer to the changed day, or to a newer
+ * day, are discarded. Records that became stale in any other way, such as an
+ * import, are detected when their hash no longer matches. To keep this check
+ * cheap, the hash covers a few sums of the repetitions up to that day, which
+ * are computed by the database without loading the repetitions themselves.
+ * <p>
+ * New records are kept in memory, and written in a single transaction when
+ * {@link #flush()} is called.
+ */
+public class DerivedDataCache
+{
+    /**
+     * Version of the format of the records. Records saved with a different
+     * version are ignored, and removed on the next flush.
+     */
+    public static final int VERSION = 3;
+
+    public static final String SCORES = "scores";
+
+    public static final String STREAKS = "streaks";
+
+    private static final Logger LOGGER =
+        Logger.getLogger(DerivedDataCache.class.getName());
+
+    @NonNull
+    private final Database db;
+
+    @NonNull
+    private final Repository<DerivedDataRecord> repository;
+
+    @Nullable
+    private final RepetitionWriteQueue writeQueue;
+
+    /**
+     * Records currently stored in the database, indexed by habit and series,
+     * or null if they have not been loaded yet.
+     */
+    @Nullable
+    private HashMap<String, DerivedDataRecord> stored;
+
+    @NonNull
+    private final HashMap<String, Entry> pending;
+
+    @NonNull
+    private final ArrayList<Long> removed;
+
+    @Nullable
+    private ExecutorService executor;
+
+    public DerivedDataCache(@NonNull Database db)
+    {
+        this(db, null);
+    }
+
+    /**
+     * Creates a cache whose records are validated against the repetitions in
+     * the database, after the given queue has been flushed.
+     */
+    public DerivedDataCache(@NonNull Database db,
+                            @Nullable RepetitionWriteQueue writeQueue)
+    {
+        this.db = db;
+        this.writeQueue = writeQueue;
+        repository = new Repository<>(DerivedDataRecord.class, db);
+        pending = new HashMap<>();
+        removed = new ArrayList<>();
+    }
+
+    /**
+     * Returns the stored record for the given habit and series, or null if
+     * there is no such record, or if it is no longer valid.
+     */
+    @Nullable
+    public synchronized DerivedDataRecord get(@NonNull Habit habit,
+                                              @NonNull String series)
+    {
+        Long id = habit.getId();
+        if (id == null) return null;
+
+        HashMap<String, DerivedDataRecord> stored = loadRecords();
+        String key = getKey(id, series);
+        DerivedDataRecord record = stored.get(key);
+        if (record == null) return null;
+
+        Timestamp timestamp = new Timestamp(record.timestamp);
+        if (timestamp.isNewerThan(DateUtils.getTodayWithOffset()) ||
+            record.hash != computeHash(habit, timestamp))
+        {
+            stored.remove(key);
+            removed.add(record.id);
+            return null;
+        }
+
+        return record;
+    }
+
+    /**
+     * Stores the given data, which corresponds to the given habit and series,
+     * as it was on the given day. The data is written on the next flush,
+     * unless it is invalidated before that.
+     */
+    public synchronized void put(@NonNull Habit habit,
+                                 @NonNull String series,
+                                 @NonNull Timestamp timestamp,
+                                 @NonNull String data)
+    {
+        Long id = habit.getId();
+        if (id == null) return;
+
+        pending.put(getKey(id, series),
+            new Entry(habit, series, timestamp, data));
+    }
+
+    /**
+     * Discards the data of the given habit and series that was valid on the
+     * given day or on any newer day, since it may have been affected by a
+     * change on that day.
+     */
+    public synchronized void invalidateNewerThan(@NonNull Habit habit,
+                                                 @NonNull String series,
+                                                 @NonNull Timestamp timestamp)
+    {
+        Long id = habit.getId();
+        if (id == null) return;
+
+        String key = getKey(id, series);
+        Entry entry = pending.get(key);
+        if (entry != null && !entry.timestamp.isOlderThan(timestamp))
+            pending.remove(key);
+
+        HashMap<String, DerivedDataRecord> stored = loadRecords();
+        DerivedDataRecord record = stored.get(key);
+        if (record != null && record.timestamp >= timestamp.getUnixTime())
+        {
+            stored.remove(key);
+            removed.add(record.id);
+        }
+    }
+
+    /**
+     * Flushes the cache on a background thread. This is meant to be called
+     * from the main thread, where the database should not be written to.
+     */
+    public synchronized void flushInBackground()
+    {
+        if (executor == null)
+        {
+            executor = Executors.newSingleThreadExecutor(r ->
+            {
+                Thread thread = new Thread(r, "DerivedDataCache");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+
+        executor.execute(() ->
+        {
+            try
+            {
+                flush();
+            }
+            catch (RuntimeException e)
+            {
+                LOGGER.log(Level.WARNING, "Could not flush derived data", e);
+            }
+        });
+    }
+
+    /**
+     * Writes every pending change to the database, in a single transaction.
+     * <p>
+     * The queued repetitions are written first, since the hashes of the new
+     * records are computed from the database. Habits invalidate the cache
+     * while their own transactions are open, so, to avoid deadlocks, the
+     * transaction is opened before taking the lock of the cache.
+     */
+    public void flush()
+    {
+        if (writeQueue != null) writeQueue.flush();
+
+        synchronized (this)
+        {
+            if (pending.isEmpty() && removed.isEmpty()) return;
+        }
+
+        repository.executeAsTransaction(this::write);
+    }
+
+    /**
+     * Writes every pending change, inside the transaction opened by flush.
+     */
+    private synchronized void write()
+    {
+        HashMap<String, DerivedDataRecord> stored = loadRecords();
+        repository.execSQL("delete from DerivedData where version <> ? " +
+                           "or habit not in (select id from Habits)",
+            VERSION);
+
+        for (Long id : removed)
+            repository.execSQL("delete from DerivedData where id = ?", id);
+
+        for (Map.Entry<String, Entry> e : pending.entrySet())
+        {
+            Entry entry = e.getValue();
+            DerivedDataRecord record = stored.get(e.getKey());
+            if (record == null)
+            {
+                record = new DerivedDataRecord();
+                record.habit_id = entry.habit.getId();
+                record.series = entry.series;
+            }
+
+            record.version = VERSION;
+            record.hash = computeHash(entry.habit, entry.timestamp);
+            record.timestamp = entry.timestamp.getUnixTime();
+            record.data = entry.data;
+            repository.save(record);
+            stored.put(e.getKey(), record);
+        }
+
+        pending.clear();
+        removed.clear();
+    }
+
+    /**
+     * Computes a hash of the settings of the habit that affect the derived
+     * data, and of the repetitions up to the given day, as currently stored
+     * in the database. The repetitions are summarized by their number, the
+     * newest of them, the sum of their values, and the sum of their values
+     * weighted by their day, so that changing the value of a repetition, or
+     * moving it to another day, changes the hash.
+     */
+    private long computeHash(@NonNull Habit habit, @NonNull Timestamp until)
+    {
+        Frequency freq = habit.getFrequency();
+        long hash = mix(VERSION, freq.getNumerator());
+        hash = mix(hash, freq.getDenominator());
+        hash = mix(hash, habit.getType());
+        hash = mix(hash, Double.doubleToLongBits(habit.getTargetValue()));
+
+        try (Cursor c = db.query("select count(*), " +
+                                 "coalesce(max(timestamp), 0), " +
+                                 "coalesce(sum(value), 0), " +
+                                 "coalesce(sum(value * (timestamp / " +
+                                 Timestamp.DAY_LENGTH + ")), 0) " +
+                                 "from Repetitions where habit = ? and timestamp <= ?",
+            habit.getId(), until.getUnixTime()))
+        {
+            c.moveToNext();
+            for (int i = 0; i < 4; i++) hash = mix(hash, c.getLong(i));
+        }
+
+        return hash;
+    }
+
+    private static long mix(long hash, long value)
+    {
+        hash = (hash ^ value) * 0x9E3779B97F4A7C15L;
+        return hash ^ (hash >>> 29);
+    }
+
+    @NonNull
+    private static String getKey(long habitId, @NonNull String series)
+    {
+        return habitId + ":" + series;
+    }
+
+    @NonNull
+    private HashMap<String, DerivedDataRecord> loadRecords()
+    {
+        if (stored != null) return stored;
+
+        stored = new HashMap<>();
+        try (Repository.RecordIterator<DerivedDataRecord> records =
+                 repository.iterate("where version = ?", VERSION))
+        {
+            while (records.hasNext())
+            {
+                DerivedDataRecord record = records.next();
+                stored.put(getKey(record.habit_id, record.series), record);
+            }
+        }
+
+        return stored;
+    }
+
+    private static class Entry
+    {
+        @NonNull
+        final Habit habit;
+
+        @NonNull
+        final String series;
+
+        @NonNull
+        final Timestamp timestamp;
+
+        @NonNull
+        final String data;
+
+        Entry(@NonNull Habit habit,
+              @NonNull String series,
+              @NonNull Timestamp timestamp,
+              @NonNull String data)
+        {
+            this.habit = habit;
+            this.series = series;
+            this.timestamp = timestamp;
+            this.data = data;
+        }
+    }
+}
@@ -0,0 +1,445 @@
+/*
+ * Copyright (C) 2017 linson Santos Xavier <isoron@gmail.com>
+ *
+ * This file is part of Loop Habit Tracker.
+ *
+ * Loop Habit Tracker is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * Loop Habit Tracker is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ *
+ */
+
+package org.isoron.uhabits.core.models.sqlite;
+
+import androidx.annotation.*;
+
+import org.isoron.uhabits.core.database.*;
+import org.isoron.uhabits.core.models.*;
+
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.logging.*;
+
+/**
+ * Queue of repetition writes that have not been stored in the database yet.
+ * <p>
+ * Writes are applied to the in-memory repetitions immediately, and queued
+ * here. Several writes to the same habit and day are merged into one, and
+ * the queue is written to the database in a single transaction, either a
+ * short time after the first queued write, or when {@link #flush()} is
+ * requested, such as when the application is paused. If a flush fails, the
+ * writes stay queued, and the flush is retried after the same delay.
+ * <p>
+ * To survive the process being killed before the queue is flushed, every
+ * write is also appended to a journal file as soon as it is queued. The
+ * journal is not synced to the disk, since the operating system keeps the
+ * data of killed processes. When the queue is created, any journal left by a
+ * previous process is replayed into the database. Without a journal file,
+ * queued writes are lost if the process is killed.
+ */
+public class RepetitionWriteQueue
+{
+    /**
+     * Time, in milliseconds, between the first queued write and the flush.
+     */
+    public static final long FLUSH_DELAY = 1000;
+
+    private static final Logger LOGGER =
+        Logger.getLogger(RepetitionWriteQueue.class.getName());
+
+    private static final int REMOVED = Integer.MIN_VALUE;
+
+    @NonNull
+    private final Database db;
+
+    @Nullable
+    private final File journalFile;
+
+    @Nullable
+    private final File flushingFile;
+
+    private final long flushDelay;
+
+    @NonNull
+    private final LinkedHashMap<String, Entry> pending;
+
+    /**
+     * Number of times the journal has been moved aside by a flush.
+     */
+    private int rotations;
+
+    @Nullable
+    private Writer journal;
+
+    @Nullable
+    private ScheduledExecutorService executor;
+
+    @Nullable
+    private ScheduledFuture<?> scheduledFlush;
+
+    public RepetitionWriteQueue(@NonNull Database db,
+                                @Nullable File journalFile)
+    {
+        this(db, journalFile, FLUSH_DELAY);
+    }
+
+    public RepetitionWriteQueue(@NonNull Database db,
+                                @Nullable File journalFile,
+                                long flushDelay)
+    {
+        this.db = db;
+        this.journalFile = journalFile;
+        this.flushDelay = flushDelay;
+        this.pending = new LinkedHashMap<>();
+
+        if (journalFile == null) flushingFile = null;
+        else flushingFile = new File(journalFile.getPath() + ".flushing");
+
+        replay();
+    }
+
+    /**
+     * Returns the journal file for the given database, or null if the
+     * database is not stored in a file.
+     */
+    @Nullable
+    public static File getJournalFile(@NonNull Database db)
+    {
+        File dbFile = db.getFile();
+        if (dbFile == null) return null;
+        return new File(dbFile.getPath() + "-pending");
+    }
+
+    /**
+     * Queues a write that sets the value of the given habit on the given day.
+     * When this method returns, the write is recorded in the journal.
+     */
+    public synchronized void put(long habitId,
+                                 @NonNull Timestamp timestamp,
+                                 int value)
+    {
+        enqueue(new Entry(habitId, timestamp.getUnixTime(), value));
+    }
+
+    /**
+     * Queues a write that removes the repetition of the given habit on the
+     * given day, if there is one.
+     */
+    public synchronized void remove(long habitId, @NonNull Timestamp timestamp)
+    {
+        enqueue(new Entry(habitId, timestamp.getUnixTime(), REMOVED));
+    }
+
+    /**
+     * Flushes the queue on a background thread, as soon as possible. This is
+     * meant to be called from the main thread, where the database should not
+     * be written to.
+     */
+    public synchronized void flushInBackground()
+    {
+        if (scheduledFlush != null) scheduledFlush.cancel(false);
+        scheduledFlush = getExecutor().schedule(this::runScheduledFlush, 0,
+            TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Writes every queued write to the database, in a single transaction.
+     * If the transaction fails, the writes remain queued, and another flush
+     * is scheduled.
+     * <p>
+     * The queue may be flushed by callers that already have a transaction
+     * open, in which case the writes become part of that transaction. To
+     * avoid deadlocks, the transaction is therefore always opened before
+     * taking any lock of the queue. Since only one transaction is open at a
+     * time, the writes of concurrent flushes are stored in the same order as
+     * they were taken from the queue.
+     */
+    public void flush()
+    {
+        synchronized (this)
+        {
+            if (scheduledFlush != null) scheduledFlush.cancel(false);
+            scheduledFlush = null;
+            if (pending.isEmpty()) return;
+        }
+
+        List<Entry> entries = Collections.emptyList();
+        int rotation = 0;
+        try
+        {
+            db.beginTransaction();
+            try
+            {
+                synchronized (this)
+                {
+                    entries = new ArrayList<>(pending.values());
+                    pending.clear();
+                    rotateJournal();
+                    rotation = ++rotations;
+                }
+                write(entries);
+                db.setTransactionSuccessful();
+            }
+            finally
+            {
+                db.endTransaction();
+            }
+        }
+        catch (RuntimeException e)
+        {
+            synchronized (this)
+            {
+                for (Entry entry : entries)
+                    if (!pending.containsKey(entry.getKey()))
+                        pending.put(entry.getKey(), entry);
+                scheduleFlush();
+            }
+            throw e;
+        }
+
+        synchronized (this)
+        {
+            // If another flush started in the meantime, the journal it moved
+            // aside was appended to the same file, and is still needed
+            if (flushingFile != null && rotation == rotations)
+                flushingFile.delete();
+        }
+    }
+
+    private void enqueue(@NonNull Entry entry)
+    {
+        appendToJournal(entry);
+        pending.remove(entry.getKey());
+        pending.put(entry.getKey(), entry);
+        scheduleFlush();
+    }
+
+    private void scheduleFlush()
+    {
+        if (scheduledFlush != null) return;
+        scheduledFlush = getExecutor().schedule(this::runScheduledFlush,
+            flushDelay, TimeUnit.MILLISECONDS);
+    }
+
+    @NonNull
+    private ScheduledExecutorService getExecutor()
+    {
+        if (executor == null)
+        {
+            executor = Executors.newSingleThreadScheduledExecutor(r ->
+            {
+                Thread thread = new Thread(r, "RepetitionWriteQueue");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        return executor;
+    }
+
+    /**
+     * Flushes the queue on the background thread. Failures are only logged,
+     * since the writes remain queued and the flush has been rescheduled.
+     */
+    private void runScheduledFlush()
+    {
+        try
+        {
+            flush();
+        }
+        catch (RuntimeException e)
+        {
+            LOGGER.log(Level.WARNING, "Could not flush repetition writes", e);
+        }
+    }
+
+    private void write(@NonNull List<Entry> entries)
+    {
+        List<Object[]> puts = new ArrayList<>();
+        List<Object[]> removes = new ArrayList<>();
+        for (Entry e : entries)
+        {
+            if (e.value == REMOVED)
+                removes.add(new Object[]{ e.habitId, e.timestamp });
+            else
+                puts.add(new Object[]{ e.habitId, e.timestamp, e.value,
+                                       e.habitId });
+        }
+
+        db.beginTransaction();
+        try
+        {
+            if (!removes.isEmpty()) db.executeBatch(
+                "delete from Repetitions where habit = ? and timestamp = ?",
+                removes);
+            // Writes to habits that have been removed in the meantime, such
+            // as when replaying an old journal, are dropped
+            if (!puts.isEmpty()) db.executeBatch(
+                "insert or replace into Repetitions(habit, timestamp, value) " +
+                "select ?, ?, ? where exists (select 1 from Habits where id = ?)",
+                puts);
+            db.setTransactionSuccessful();
+        }
+        finally
+        {
+            db.endTransaction();
+        }
+    }
+
+    private void appendToJournal(@NonNull Entry entry)
+    {
+        if (journalFile == null) return;
+
+        try
+        {
+            if (journal == null)
+                journal = new BufferedWriter(
+                    new FileWriter(journalFile, true));
+
+            journal.write(entry.toString());
+            journal.write('\n');
+            journal.flush();
+        }
+        catch (IOException e)
+        {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Moves the journal aside, so that writes queued during the flush go to
+     * a new journal. If a previous flush failed, its journal is still needed,
+     * and the current journal is appended to it.
+     */
+    private void rotateJournal()
+    {
+        if (journalFile == null || flushingFile == null) return;
+
+        try
+        {
+            if (journal != null) journal.close();
+            journal = null;
+            if (!journalFile.exists()) return;
+
+            if (!flushingFile.exists())
+            {
+                if (journalFile.renameTo(flushingFile)) return;
+                throw new IOException("could not rename " + journalFile);
+            }
+
+            try (InputStream in = new FileInputStream(journalFile);
+                 OutputStream out = new FileOutputStream(flushingFile, true))
+            {
+                byte buffer[] = new byte[8192];
+                int n;
+                while ((n = in.read(buffer)) > 0) out.write(buffer, 0, n);
+            }
+            journalFile.delete();
+        }
+        catch (IOException e)
+        {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Writes the journals left by a previous process to the database, and
+     * removes them. Lines that were only partially written, because the
+     * process was killed while writing them, are ignored.
+     */
+    private void replay()
+    {
+        if (journalFile == null || flushingFile == null) return;
+
+        LinkedHashMap<String, Entry> entries = new LinkedHashMap<>();
+        readJournal(flushingFile, entries);
+        readJournal(journalFile, entries);
+        if (!entries.isEmpty()) write(new ArrayList<>(entries.values()));
+
+        flushingFile.delete();
+        journalFile.delete();
+    }
+
+    private static void readJournal(@NonNull File file,
+                                    @NonNull LinkedHashMap<String, Entry> entries)
+    {
+        if (!file.exists()) return;
+
+        StringBuilder contents = new StringBuilder();
+        try (Reader reader = new BufferedReader(new FileReader(file)))
+        {
+            char buffer[] = new char[8192];
+            int n;
+            while ((n = reader.read(buffer)) > 0) contents.append(buffer, 0, n);
+        }
+        catch (IOException e)
+        {
+            throw new RuntimeException(e);
+        }
+
+        // Only lines that end with a line break are complete
+        String lines[] = contents.toString().split("\n", -1);
+        for (int i = 0; i < lines.length - 1; i++)
+        {
+            Entry entry = Entry.parse(lines[i]);
+            if (entry == null) continue;
+            entries.remove(entry.getKey());
+            entries.put(entry.getKey(), entry);
+        }
+    }
+
+    private static class Entry
+    {
+        final long habitId;
+
+        final long timestamp;
+
+        final int value;
+
+        Entry(long habitId, long timestamp, int value)
+        {
+            this.habitId = habitId;
+            this.timestamp = timestamp;
+            this.value = value;
+        }
+
+        @NonNull
+        String getKey()
+        {
+            return habitId + ":" + timestamp;
+        }
+
+        @Nullable
+        static Entry parse(@NonNull String line)
+        {
+            String fields[] = line.split(" ");
+            if (fields.length != 3) return null;
+
+            try
+            {
+                return new Entry(Long.parseLong(fields[0]),
+                    Long.parseLong(fields[1]), Integer.parseInt(fields[2]));
+            }
+            catch (NumberFormatException e)
+            {
+                return null;
+            }
+        }
+
+        @Override
+        public String toString()
+        {
+            return habitId + " " + timestamp + " " + value;
+        }
+    }
+}
@@ -35,16 +35,23 @@ public class SQLModelFactory implements ModelFactory
 {
     public final Database db;
 
+    public final DerivedDataCache derivedDataCache;
+
+    public final RepetitionWriteQueue repetitionWriteQueue;
+
     @Inject
     public SQLModelFactory(Database db)
     {
         this.db = db;
+        this.repetitionWriteQueue = new RepetitionWriteQueue(db,
+            RepetitionWriteQueue.getJournalFile(db));
+        this.derivedDataCache = new DerivedDataCache(db, repetitionWriteQueue);
     }
 
     @Override
     public CheckmarkList buildCheckmarkList(Habit habit)
     {
-        return new MemoryCheckmarkList(habit);
+        return new ArrayCheckmarkList(habit);
     }
 
     @Override
@@ -62,13 +69,13 @@ public class SQLModelFactory implements ModelFactory
     @Override
     public ScoreList buildScoreList(Habit habit)
     {
-        return new MemoryScoreList(habit);
+        return new SQLiteScoreList(habit, derivedDataCache);
     }
 
     @Override
     public StreakList buildStreakList(Habit habit)
     {
-        return new MemoryStreakList(habit);
+        return new SQLiteStreakList(habit, derivedDataCache);
     }
 
     @Override
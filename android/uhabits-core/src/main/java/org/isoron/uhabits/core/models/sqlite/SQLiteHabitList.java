@@ -48,8 +48,20 @@ public class SQLiteHabitList extends HabitList
     @NonNull
     private final MemoryHabitList list;
 
+    /**
+     * Largest number of repetitions that loadRepetitions reads at once. On
+     * larger databases, the repetitions of each habit are still loaded only
+     * when first needed, so that they are not all kept in memory.
+     */
+    public static final int MAX_BULK_REPETITIONS = 100000;
+
+    @NonNull
+    private final Repository<RepetitionRecord> repetitionRepository;
+
     private boolean loaded = false;
 
+    private boolean repetitionsLoaded = false;
+
     @Inject
     public SQLiteHabitList(@NonNull ModelFactory modelFactory)
     {
@@ -57,6 +69,8 @@ public class SQLiteHabitList extends HabitList
         this.modelFactory = modelFactory;
         this.list = new MemoryHabitList();
         this.repository = modelFactory.buildHabitListRepository();
+        this.repetitionRepository =
+            modelFactory.buildRepetitionListRepository();
     }
 
     private void loadRecords()
@@ -65,18 +79,22 @@ public class SQLiteHabitList extends HabitList
         loaded = true;
 
         list.removeAll();
-        List<HabitRecord> records = repository.findAll("order by position");
 
         int expectedPosition = 0;
         boolean shouldRebuildOrder = false;
-        for (HabitRecord rec : records)
+        try (Repository.RecordIterator<HabitRecord> records =
+                 repository.iterate("order by position"))
         {
-            if (rec.position != expectedPosition) shouldRebuildOrder = true;
-            expectedPosition++;
+            while (records.hasNext())
+            {
+                HabitRecord rec = records.next();
+                if (rec.position != expectedPosition) shouldRebuildOrder = true;
+                expectedPosition++;
 
-            Habit h = modelFactory.buildHabit();
-            rec.copyTo(h);
-            list.add(h);
+                Habit h = modelFactory.buildHabit();
+                rec.copyTo(h);
+                list.add(h);
+            }
         }
 
         if(shouldRebuildOrder) rebuildOrder();
@@ -156,6 +174,72 @@ public class SQLiteHabitList extends HabitList
         getObservable().notifyListeners();
     }
 
+    /**
+     * Reads the repetitions of every habit with a single query, in the order
+     * of the (habit, timestamp) index, instead of one query per habit. Habits
+     * whose repetitions are already loaded are skipped. The query runs
+     * without holding the lock of the list.
+     */
+    @Override
+    public void loadRepetitions()
+    {
+        HashMap<Long, MemoryRepetitionList> loadedLists = new HashMap<>();
+        List<Habit> pending = new ArrayList<>();
+
+        synchronized (this)
+        {
+            loadRecords();
+            if (repetitionsLoaded) return;
+            repetitionsLoaded = true;
+
+            for (Habit h : list)
+            {
+                if (!(h.getRepetitions() instanceof SQLiteRepetitionList))
+                    continue;
+                SQLiteRepetitionList reps =
+                    (SQLiteRepetitionList) h.getRepetitions();
+                if (reps.isLoaded() || h.getId() == null) continue;
+                pending.add(h);
+                loadedLists.put(h.getId(), new MemoryRepetitionList(h));
+            }
+        }
+
+        if (pending.isEmpty()) return;
+        flushRepetitionWrites();
+        if (repetitionRepository.count("") > MAX_BULK_REPETITIONS) return;
+
+        try (Repository.RecordIterator<RepetitionRecord> it =
+                 repetitionRepository.iterate("order by habit, timestamp"))
+        {
+            Long habitId = null;
+            MemoryRepetitionList current = null;
+            while (it.hasNext())
+            {
+                RepetitionRecord rec = it.next();
+                if (!rec.habit_id.equals(habitId))
+                {
+                    habitId = rec.habit_id;
+                    current = loadedLists.get(habitId);
+                }
+                if (current != null) current.add(rec.toRepetition());
+            }
+        }
+
+        for (Habit h : pending)
+            ((SQLiteRepetitionList) h.getRepetitions())
+                .setLoaded(loadedLists.get(h.getId()));
+    }
+
+    /**
+     * Stores the queued repetition writes, before the repetitions table is
+     * read or modified directly.
+     */
+    private void flushRepetitionWrites()
+    {
+        if (modelFactory instanceof SQLModelFactory)
+            ((SQLModelFactory) modelFactory).repetitionWriteQueue.flush();
+    }
+
     @Override
     public synchronized int indexOf(@NonNull Habit h)
     {
@@ -173,19 +257,20 @@ public class SQLiteHabitList extends HabitList
     private synchronized void rebuildOrder()
     {
         List<HabitRecord> records = repository.findAll("order by position");
-        repository.executeAsTransaction(() ->
+        List<HabitRecord> modified = new ArrayList<>();
+
+        int pos = 0;
+        for (HabitRecord r : records)
         {
-            int pos = 0;
-            for (HabitRecord r : records)
+            if (r.position != pos)
             {
-                if (r.position != pos)
-                {
-                    r.position = pos;
-                    repository.save(r);
-                }
-                pos++;
+                r.position = pos;
+                modified.add(r);
             }
-        });
+            pos++;
+        }
+
+        repository.updateAll(modified);
     }
 
     @Override
@@ -212,6 +297,7 @@ public class SQLiteHabitList extends HabitList
     public synchronized void removeAll()
     {
         list.removeAll();
+        flushRepetitionWrites();
         repository.execSQL("delete from habits");
         repository.execSQL("delete from repetitions");
         getObservable().notifyListeners();
@@ -271,20 +357,45 @@ public class SQLiteHabitList extends HabitList
         loadRecords();
         list.update(habits);
 
+        List<HabitRecord> records = new ArrayList<>(habits.size());
         for (Habit h : habits)
         {
-            HabitRecord record = repository.find(h.getId());
-            if (record == null) continue;
+            if (h.getId() == null) continue;
+            HabitRecord record = new HabitRecord();
             record.copyFrom(h);
-            repository.save(record);
+            records.add(record);
         }
 
+        // Habits that are not in the database are skipped by updateAll
+        repository.updateAll(records);
+
         getObservable().notifyListeners();
     }
 
+    @Override
+    public void executeAsBatch(@NonNull Runnable callback)
+    {
+        super.executeAsBatch(() -> repository.executeAsTransaction(callback));
+    }
+
+    @Override
+    public synchronized void reposition(@NonNull Habit habit)
+    {
+        loadRecords();
+        if (postponeResort()) return;
+
+        int from = list.indexOf(habit);
+        list.reposition(habit);
+        int to = list.indexOf(habit);
+
+        if (from != to) getObservable().notifyItemMoved(from, to);
+        else getObservable().notifyListeners();
+    }
+
     @Override
     public void resort()
     {
+        if (postponeResort()) return;
         list.resort();
         getObservable().notifyListeners();
     }
@@ -292,5 +403,6 @@ public class SQLiteHabitList extends HabitList
     public synchronized void reload()
     {
         loaded = false;
+        repetitionsLoaded = false;
     }
 }
@@ -34,35 +34,70 @@ import java.util.*;
 
 /**
  * Implementation of a {@link RepetitionList} that is backed by SQLite.
+ * <p>
+ * When the list is built by a {@link SQLModelFactory}, single repetitions are
+ * written through its {@link RepetitionWriteQueue}, and stored in the
+ * database when the queue is flushed. Any other query on the repetitions
+ * table flushes the queue first.
  */
 public class SQLiteRepetitionList extends RepetitionList
 {
     private final Repository<RepetitionRecord> repository;
 
-    private final MemoryRepetitionList list;
+    @Nullable
+    private final RepetitionWriteQueue writeQueue;
+
+    @NonNull
+    private volatile MemoryRepetitionList list;
 
-    private boolean loaded = false;
+    private volatile boolean loaded = false;
 
     public SQLiteRepetitionList(@NonNull Habit habit,
                                 @NonNull ModelFactory modelFactory)
     {
         super(habit);
         repository = modelFactory.buildRepetitionListRepository();
+        if (modelFactory instanceof SQLModelFactory)
+            writeQueue = ((SQLModelFactory) modelFactory).repetitionWriteQueue;
+        else
+            writeQueue = null;
         list = new MemoryRepetitionList(habit);
     }
 
     private void loadRecords()
     {
         if (loaded) return;
-        loaded = true;
+        flushWrites();
 
+        // The repetitions are read straight from the cursor into a new list,
+        // which only replaces the current one once it is complete, so that
+        // concurrent readers never use it while it is still being filled
         check(habit.getId());
-        List<RepetitionRecord> records =
-            repository.findAll("where habit = ? order by timestamp",
-                habit.getId().toString());
+        MemoryRepetitionList loadedList = new MemoryRepetitionList(habit);
+        try (Repository.RecordIterator<RepetitionRecord> it =
+                 repository.iterate("where habit = ? order by timestamp",
+                     habit.getId()))
+        {
+            while (it.hasNext()) loadedList.add(it.next().toRepetition());
+        }
+
+        setLoaded(loadedList);
+    }
+
+    boolean isLoaded()
+    {
+        return loaded;
+    }
 
-        for (RepetitionRecord rec : records)
-            list.add(rec.toRepetition());
+    /**
+     * Uses the given repetitions, already read from the database, unless the
+     * list has been loaded in the meantime.
+     */
+    synchronized void setLoaded(@NonNull MemoryRepetitionList loadedList)
+    {
+        if (loaded) return;
+        list = loadedList;
+        loaded = true;
     }
 
     @Override
@@ -71,10 +106,40 @@ public class SQLiteRepetitionList extends RepetitionList
         loadRecords();
         list.add(rep);
         check(habit.getId());
-        RepetitionRecord record = new RepetitionRecord();
-        record.habit_id = habit.getId();
-        record.copyFrom(rep);
-        repository.save(record);
+
+        if (writeQueue != null)
+        {
+            writeQueue.put(habit.getId(), rep.getTimestamp(), rep.getValue());
+        }
+        else
+        {
+            RepetitionRecord record = new RepetitionRecord();
+            record.habit_id = habit.getId();
+            record.copyFrom(rep);
+            repository.save(record);
+        }
+
+        observable.notifyListeners();
+    }
+
+    @Override
+    protected void addAll(@NonNull Collection<Repetition> repetitions)
+    {
+        loadRecords();
+        check(habit.getId());
+        flushWrites();
+
+        List<RepetitionRecord> records = new ArrayList<>(repetitions.size());
+        for (Repetition rep : repetitions)
+        {
+            list.add(rep);
+            RepetitionRecord record = new RepetitionRecord();
+            record.habit_id = habit.getId();
+            record.copyFrom(rep);
+            records.add(record);
+        }
+
+        repository.saveAll(records);
         observable.notifyListeners();
     }
 
@@ -113,9 +178,14 @@ public class SQLiteRepetitionList extends RepetitionList
         loadRecords();
         list.remove(repetition);
         check(habit.getId());
-        repository.execSQL(
-            "delete from repetitions where habit = ? and timestamp = ?",
-            habit.getId(), repetition.getTimestamp().getUnixTime());
+
+        if (writeQueue != null)
+            writeQueue.remove(habit.getId(), repetition.getTimestamp());
+        else
+            repository.execSQL(
+                "delete from repetitions where habit = ? and timestamp = ?",
+                habit.getId(), repetition.getTimestamp().getUnixTime());
+
         observable.notifyListeners();
     }
 
@@ -124,10 +194,17 @@ public class SQLiteRepetitionList extends RepetitionList
         loadRecords();
         list.removeAll();
         check(habit.getId());
+        flushWrites();
         repository.execSQL("delete from repetitions where habit = ?",
             habit.getId());
     }
 
+    @Override
+    public void executeAsBatch(@NonNull Runnable callback)
+    {
+        super.executeAsBatch(() -> repository.executeAsTransaction(callback));
+    }
+
     @Override
     public long getTotalCount()
     {
@@ -135,6 +212,11 @@ public class SQLiteRepetitionList extends RepetitionList
         return list.getTotalCount();
     }
 
+    private void flushWrites()
+    {
+        if (writeQueue != null) writeQueue.flush();
+    }
+
     public void reload()
     {
         loaded = false;
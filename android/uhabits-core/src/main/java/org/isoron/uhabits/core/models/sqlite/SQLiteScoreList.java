@@ -0,0 +1,105 @@
+/*
+ * Copyright (C) 2017 linson Santos Xavier <isoron@gmail.com>
+ *
+ * This file is part of Loop Habit Tracker.
+ *
+ * Loop Habit Tracker is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * Loop Habit Tracker is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ *
+ */
+
+package org.isoron.uhabits.core.models.sqlite;
+
+import androidx.annotation.*;
+
+import org.isoron.uhabits.core.models.*;
+import org.isoron.uhabits.core.models.memory.*;
+import org.isoron.uhabits.core.models.sqlite.records.*;
+import org.isoron.uhabits.core.utils.*;
+
+/**
+ * Implementation of a {@link ScoreList} that keeps the score of the most
+ * recent day in a {@link DerivedDataCache}.
+ * <p>
+ * When the list is first used, the stored score, if still valid, becomes the
+ * seed from which the following scores are computed.
+ */
+public class SQLiteScoreList extends ArrayScoreList
+{
+    @NonNull
+    private final DerivedDataCache cache;
+
+    private boolean loaded = false;
+
+    /**
+     * Day of the score that was last loaded from, or saved to, the cache.
+     */
+    @Nullable
+    private Timestamp savedAt;
+
+    public SQLiteScoreList(@NonNull Habit habit, @NonNull DerivedDataCache cache)
+    {
+        super(habit);
+        this.cache = cache;
+    }
+
+    private void loadSeed()
+    {
+        if (loaded) return;
+        loaded = true;
+
+        if (getNewestComputed() != null) return;
+        DerivedDataRecord record = cache.get(habit, DerivedDataCache.SCORES);
+        if (record == null) return;
+
+        savedAt = new Timestamp(record.timestamp);
+        setSeed(savedAt, Double.parseDouble(record.data));
+    }
+
+    @Override
+    protected synchronized void compute(@NonNull Timestamp from,
+                                        @NonNull Timestamp to)
+    {
+        loadSeed();
+        super.compute(from, to);
+    }
+
+    @Override
+    protected synchronized void addValues(@NonNull Timestamp newest,
+                                          @NonNull double[] values)
+    {
+        super.addValues(newest, values);
+
+        Timestamp today = DateUtils.getTodayWithOffset();
+        if (today.equals(savedAt)) return;
+
+        Score score = getComputedByTimestamp(today);
+        if (score == null) return;
+
+        savedAt = today;
+        cache.put(habit, DerivedDataCache.SCORES, today,
+            Double.toString(score.getValue()));
+    }
+
+    @Override
+    public synchronized void invalidateNewerThan(Timestamp timestamp)
+    {
+        super.invalidateNewerThan(timestamp);
+
+        // Before the list is loaded, stored scores are validated by their hash
+        if (!loaded) return;
+        if (savedAt != null && !savedAt.isOlderThan(timestamp)) savedAt = null;
+        cache.invalidateNewerThan(habit, DerivedDataCache.SCORES, timestamp);
+    }
+}
@@ -0,0 +1,155 @@
+/*
+ * Copyright (C) 2017 linson Santos Xavier <isoron@gmail.com>
+ *
+ * This file is part of Loop Habit Tracker.
+ *
+ * Loop Habit Tracker is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * Loop Habit Tracker is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ *
+ */
+
+package org.isoron.uhabits.core.models.sqlite;
+
+import androidx.annotation.*;
+
+import org.isoron.uhabits.core.models.*;
+import org.isoron.uhabits.core.models.memory.*;
+import org.isoron.uhabits.core.models.sqlite.records.*;
+import org.isoron.uhabits.core.utils.*;
+
+import java.util.*;
+
+/**
+ * Implementation of a {@link StreakList} that keeps the computed streaks in a
+ * {@link DerivedDataCache}.
+ * <p>
+ * When the list is first used, the stored streaks, if still valid, are loaded
+ * and only the newest one is computed again.
+ */
+public class SQLiteStreakList extends MemoryStreakList
+{
+    @NonNull
+    private final DerivedDataCache cache;
+
+    private boolean loaded = false;
+
+    /**
+     * Day on which the streaks were last loaded from, or saved to, the cache.
+     */
+    @Nullable
+    private Timestamp savedAt;
+
+    public SQLiteStreakList(@NonNull Habit habit, @NonNull DerivedDataCache cache)
+    {
+        super(habit);
+        this.cache = cache;
+    }
+
+    private void loadStreaks()
+    {
+        if (loaded) return;
+        loaded = true;
+
+        if (!list.isEmpty()) return;
+        DerivedDataRecord record = cache.get(habit, DerivedDataCache.STREAKS);
+        if (record == null) return;
+
+        savedAt = new Timestamp(record.timestamp);
+        list.addAll(decode(record.data));
+        Collections.sort(list, (s1, s2) -> s2.compareNewer(s1));
+    }
+
+    @Override
+    public synchronized List<Streak> getAll()
+    {
+        loadStreaks();
+        List<Streak> streaks = super.getAll();
+
+        Timestamp today = DateUtils.getTodayWithOffset();
+        if (!streaks.isEmpty() && !today.equals(savedAt))
+        {
+            savedAt = today;
+            cache.put(habit, DerivedDataCache.STREAKS, today, encode(streaks));
+        }
+
+        return streaks;
+    }
+
+    @Nullable
+    @Override
+    public synchronized Streak getNewestComputed()
+    {
+        loadStreaks();
+        return super.getNewestComputed();
+    }
+
+    @Override
+    public synchronized void invalidateNewerThan(Timestamp timestamp)
+    {
+        super.invalidateNewerThan(timestamp);
+        if (!loaded) return;
+
+        // The stored streaks may still be valid, if they are older than the
+        // change, so they are loaded again instead of recomputed
+        loaded = false;
+        savedAt = null;
+        cache.invalidateNewerThan(habit, DerivedDataCache.STREAKS, timestamp);
+    }
+
+    /**
+     * Encodes the given streaks as a list of pairs of day numbers, such as
+     * "16400:16410,16420:16421".
+     */
+    @NonNull
+    static String encode(@NonNull List<Streak> streaks)
+    {
+        StringBuilder builder = new StringBuilder();
+        for (Streak streak : streaks)
+        {
+            if (builder.length() > 0) builder.append(',');
+            builder.append(toDay(streak.getStart()));
+            builder.append(':');
+            builder.append(toDay(streak.getEnd()));
+        }
+        return builder.toString();
+    }
+
+    @NonNull
+    static List<Streak> decode(@NonNull String data)
+    {
+        List<Streak> streaks = new ArrayList<>();
+        if (data.isEmpty()) return streaks;
+
+        for (String pair : data.split(","))
+        {
+            int separator = pair.indexOf(':');
+            long start = Long.parseLong(pair.substring(0, separator));
+            long end = Long.parseLong(pair.substring(separator + 1));
+            streaks.add(new Streak(fromDay(start), fromDay(end)));
+        }
+
+        return streaks;
+    }
+
+    private static long toDay(@NonNull Timestamp timestamp)
+    {
+        return timestamp.getUnixTime() / Timestamp.DAY_LENGTH;
+    }
+
+    @NonNull
+    private static Timestamp fromDay(long day)
+    {
+        return new Timestamp(day * Timestamp.DAY_LENGTH);
+    }
+}
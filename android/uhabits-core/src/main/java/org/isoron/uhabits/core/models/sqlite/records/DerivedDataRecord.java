@@ -0,0 +1,57 @@
+/*
+ * Copyright (C) 2017 linson Santos Xavier <isoron@gmail.com>
+ *
+ * This file is part of Loop Habit Tracker.
+ *
+ * Loop Habit Tracker is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * Loop Habit Tracker is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ *
+ */
+
+package org.isoron.uhabits.core.models.sqlite.records;
+
+import org.isoron.uhabits.core.database.*;
+
+/**
+ * The SQLite database record holding a series of data derived from the
+ * repetitions of a habit, such as its scores or its streaks.
+ * <p>
+ * The data is valid only while the repetitions up to the given timestamp, and
+ * the settings of the habit that affect the series, remain the same as when
+ * the record was saved. These are summarized by the hash.
+ */
+@Table(name = "DerivedData")
+public class DerivedDataRecord
+{
+    @Column(name = "habit")
+    public Long habit_id;
+
+    @Column
+    public String series;
+
+    @Column
+    public Integer version;
+
+    @Column
+    public Long hash;
+
+    @Column
+    public Long timestamp;
+
+    @Column
+    public String data;
+
+    @Column
+    public Long id;
+}
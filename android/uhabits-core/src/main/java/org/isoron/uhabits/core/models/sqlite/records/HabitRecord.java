@@ -32,7 +32,7 @@ import org.isoron.uhabits.core.models.WeekdayList;
 /**
  * The SQLite database record corresponding to a {@link Habit}.
  */
-@Table(name = "habits")
+@Table(name = "habits", mapper = HabitRecordMapper.class)
 public class HabitRecord {
     @Column
     public String description;
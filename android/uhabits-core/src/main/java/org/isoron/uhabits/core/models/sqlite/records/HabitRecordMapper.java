@@ -0,0 +1,143 @@
+/*
+ * Copyright (C) 2017 linson Santos Xavier <isoron@gmail.com>
+ *
+ * This file is part of Loop Habit Tracker.
+ *
+ * Loop Habit Tracker is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * Loop Habit Tracker is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ *
+ */
+
+package org.isoron.uhabits.core.models.sqlite.records;
+
+import androidx.annotation.*;
+
+import org.isoron.uhabits.core.database.*;
+
+/**
+ * Copies the columns of the habits table to and from
+ * {@link HabitRecord}s, without reflection. The columns are listed in the
+ * same order as the fields of the record.
+ */
+public class HabitRecordMapper implements RecordMapper<HabitRecord>
+{
+    private static final String COLUMNS[] = {
+        "description",
+        "question",
+        "name",
+        "freq_num",
+        "freq_den",
+        "color",
+        "position",
+        "favourite",
+        "reminder_hour",
+        "reminder_min",
+        "reminder_days",
+        "highlight",
+        "archived",
+        "type",
+        "target_value",
+        "target_type",
+        "unit",
+        "id",
+        "uuid",
+        "enable_google_fit",
+        "calorie_burned",
+        "hydration",
+        "activity_duration"
+    };
+
+    @NonNull
+    @Override
+    public String[] getColumnNames()
+    {
+        return COLUMNS;
+    }
+
+    @NonNull
+    @Override
+    public HabitRecord newRecord()
+    {
+        return new HabitRecord();
+    }
+
+    @Override
+    public void read(@NonNull HabitRecord record, @NonNull Cursor cursor)
+    {
+        record.description = cursor.getString(0);
+        record.question = cursor.getString(1);
+        record.name = cursor.getString(2);
+        record.freqNum = cursor.getInt(3);
+        record.freqDen = cursor.getInt(4);
+        record.color = cursor.getInt(5);
+        record.position = cursor.getInt(6);
+        record.favourite = cursor.getInt(7);
+        record.reminderHour = cursor.getInt(8);
+        record.reminderMin = cursor.getInt(9);
+        record.reminderDays = cursor.getInt(10);
+        record.highlight = cursor.getInt(11);
+        record.archived = cursor.getInt(12);
+        record.type = cursor.getInt(13);
+        record.targetValue = cursor.getDouble(14);
+        record.targetType = cursor.getInt(15);
+        record.unit = cursor.getString(16);
+        record.id = cursor.getLong(17);
+        record.uuid = cursor.getString(18);
+        record.enableGoogleFit = cursor.getInt(19);
+        record.calorieBurned = cursor.getDouble(20);
+        record.hydration = cursor.getDouble(21);
+        record.activityDuration = cursor.getDouble(22);
+    }
+
+    @Override
+    public void write(@NonNull HabitRecord record, @NonNull Object values[])
+    {
+        values[0] = record.description;
+        values[1] = record.question;
+        values[2] = record.name;
+        values[3] = record.freqNum;
+        values[4] = record.freqDen;
+        values[5] = record.color;
+        values[6] = record.position;
+        values[7] = record.favourite;
+        values[8] = record.reminderHour;
+        values[9] = record.reminderMin;
+        values[10] = record.reminderDays;
+        values[11] = record.highlight;
+        values[12] = record.archived;
+        values[13] = record.type;
+        values[14] = record.targetValue;
+        values[15] = record.targetType;
+        values[16] = record.unit;
+        values[17] = record.id;
+        values[18] = record.uuid;
+        values[19] = record.enableGoogleFit;
+        values[20] = record.calorieBurned;
+        values[21] = record.hydration;
+        values[22] = record.activityDuration;
+    }
+
+    @Nullable
+    @Override
+    public Long getId(@NonNull HabitRecord record)
+    {
+        return record.id;
+    }
+
+    @Override
+    public void setId(@NonNull HabitRecord record, @Nullable Long id)
+    {
+        record.id = id;
+    }
+}
@@ -27,7 +27,7 @@ import org.isoron.uhabits.core.models.*;
 /**
  * The SQLite database record corresponding to a {@link Repetition}.
  */
-@Table(name = "Repetitions")
+@Table(name = "Repetitions", mapper = RepetitionRecordMapper.class)
 public class RepetitionRecord
 {
     public HabitRecord habit;
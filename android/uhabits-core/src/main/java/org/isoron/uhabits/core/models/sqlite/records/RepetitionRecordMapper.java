@@ -0,0 +1,86 @@
+/*
+ * Copyright (C) 2017 linson Santos Xavier <isoron@gmail.com>
+ *
+ * This file is part of Loop Habit Tracker.
+ *
+ * Loop Habit Tracker is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * Loop Habit Tracker is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ *
+ */
+
+package org.isoron.uhabits.core.models.sqlite.records;
+
+import androidx.annotation.*;
+
+import org.isoron.uhabits.core.database.*;
+
+/**
+ * Copies the columns of the repetitions table to and from
+ * {@link RepetitionRecord}s, without reflection. The columns are listed in the
+ * same order as the fields of the record.
+ */
+public class RepetitionRecordMapper implements RecordMapper<RepetitionRecord>
+{
+    private static final String COLUMNS[] = {
+        "habit",
+        "timestamp",
+        "value",
+        "id"
+    };
+
+    @NonNull
+    @Override
+    public String[] getColumnNames()
+    {
+        return COLUMNS;
+    }
+
+    @NonNull
+    @Override
+    public RepetitionRecord newRecord()
+    {
+        return new RepetitionRecord();
+    }
+
+    @Override
+    public void read(@NonNull RepetitionRecord record, @NonNull Cursor cursor)
+    {
+        record.habit_id = cursor.getLong(0);
+        record.timestamp = cursor.getLong(1);
+        record.value = cursor.getInt(2);
+        record.id = cursor.getLong(3);
+    }
+
+    @Override
+    public void write(@NonNull RepetitionRecord record, @NonNull Object values[])
+    {
+        values[0] = record.habit_id;
+        values[1] = record.timestamp;
+        values[2] = record.value;
+        values[3] = record.id;
+    }
+
+    @Nullable
+    @Override
+    public Long getId(@NonNull RepetitionRecord record)
+    {
+        return record.id;
+    }
+
+    @Override
+    public void setId(@NonNull RepetitionRecord record, @Nullable Long id)
+    {
+        record.id = id;
+    }
+}
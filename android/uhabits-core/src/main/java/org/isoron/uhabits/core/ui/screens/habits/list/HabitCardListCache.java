@@ -28,6 +28,7 @@ import org.isoron.uhabits.core.tasks.*;
 import org.isoron.uhabits.core.utils.*;
 
 import java.util.*;
+import java.util.concurrent.*;
 
 import javax.inject.*;
 
@@ -41,10 +42,21 @@ import javax.inject.*;
  * <p>
  * Note that this class is singleton-scoped, therefore it is shared among all
  * activities.
+ * <p>
+ * Since habits are independent from each other, the data for different habits
+ * is computed in parallel, by a small pool of worker threads. Results are
+ * still delivered to the listener in the order the habits are displayed.
+ * <p>
+ * If a {@link HabitCardListSnapshot} is provided, the data is saved to it at
+ * the end of every complete refresh. When the cache is empty, the habits are
+ * first displayed with the data from the snapshot, and then updated once the
+ * refresh finishes.
  */
 @AppScope
 public class HabitCardListCache implements CommandRunner.Listener
 {
+    private static final int MAX_WORKERS = 4;
+
     private int checkmarkCount;
 
     @Nullable
@@ -62,12 +74,28 @@ public class HabitCardListCache implements CommandRunner.Listener
     @NonNull
     private HabitList filteredHabits;
 
+    @Nullable
+    private HabitMatcher matcher;
+
     @NonNull
     private final TaskRunner taskRunner;
 
     @NonNull
     private final CommandRunner commandRunner;
 
+    @NonNull
+    private final ExecutorService workers;
+
+    /**
+     * Scratch buffer of each worker thread, into which the checkmarks are
+     * read before being compared with the cached ones.
+     */
+    @NonNull
+    private final ThreadLocal<int[]> buffers = new ThreadLocal<>();
+
+    @Nullable
+    private HabitCardListSnapshot snapshot;
+
     @Inject
     public HabitCardListCache(@NonNull HabitList allHabits,
                               @NonNull CommandRunner commandRunner,
@@ -86,6 +114,19 @@ public class HabitCardListCache implements CommandRunner.Listener
         {
         };
         data = new CacheData();
+
+        int workerCount = Math.max(1, Math.min(MAX_WORKERS,
+            Runtime.getRuntime().availableProcessors()));
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(workerCount,
+            workerCount, 30, TimeUnit.SECONDS, new LinkedBlockingQueue<>(),
+            runnable ->
+            {
+                Thread thread = new Thread(runnable, "HabitCardListCache");
+                thread.setDaemon(true);
+                return thread;
+            });
+        pool.allowCoreThreadTimeOut(true);
+        workers = pool;
     }
 
     public synchronized void cancelTasks()
@@ -152,6 +193,9 @@ public class HabitCardListCache implements CommandRunner.Listener
 
     public synchronized void refreshAllHabits()
     {
+        if (snapshot != null && data.habits.isEmpty())
+            taskRunner.execute(new LoadSnapshotTask(snapshot));
+
         if (currentFetchTask != null) currentFetchTask.cancel();
         currentFetchTask = new RefreshTask();
         taskRunner.execute(currentFetchTask);
@@ -192,6 +236,7 @@ public class HabitCardListCache implements CommandRunner.Listener
     public synchronized void setFilter(@NonNull HabitMatcher matcher)
     {
         if (matcher == null) throw new NullPointerException();
+        this.matcher = matcher;
         filteredHabits = allHabits.getFiltered(matcher);
     }
 
@@ -201,21 +246,35 @@ public class HabitCardListCache implements CommandRunner.Listener
         this.listener = listener;
     }
 
+    public synchronized void setSnapshot(@Nullable HabitCardListSnapshot snapshot)
+    {
+        this.snapshot = snapshot;
+    }
+
     public synchronized void setPrimaryOrder(@NonNull HabitList.Order order)
     {
         if (order == null) throw new NullPointerException();
         allHabits.setPrimaryOrder(order);
-        filteredHabits.setPrimaryOrder(order);
+        refilter();
         refreshAllHabits();
     }
 
     public synchronized void setSecondaryOrder(@NonNull HabitList.Order order)
     {
         allHabits.setSecondaryOrder(order);
-        filteredHabits.setSecondaryOrder(order);
+        refilter();
         refreshAllHabits();
     }
 
+    /**
+     * Filters the habits again, since filtered lists are shared, and keep the
+     * order the habits had when they were filtered.
+     */
+    private void refilter()
+    {
+        if (matcher != null) filteredHabits = allHabits.getFiltered(matcher);
+    }
+
 
     /**
      * Interface definition for a callback to be invoked when the data on the
@@ -295,6 +354,19 @@ public class HabitCardListCache implements CommandRunner.Listener
             }
         }
 
+        @NonNull
+        public synchronized Map<Long, HabitCardListSnapshot.Entry> getEntries()
+        {
+            Map<Long, HabitCardListSnapshot.Entry> entries = new LinkedHashMap<>();
+            for (Habit h : habits)
+            {
+                Long id = h.getId();
+                entries.put(id, new HabitCardListSnapshot.Entry(scores.get(id),
+                    checkmarks.get(id)));
+            }
+            return entries;
+        }
+
         public synchronized void fetchHabits()
         {
             for (Habit h : filteredHabits)
@@ -306,6 +378,97 @@ public class HabitCardListCache implements CommandRunner.Listener
         }
     }
 
+    /**
+     * Data for a single habit, computed by one of the worker threads.
+     */
+    private class HabitResult
+    {
+        final double score;
+
+        /**
+         * The checkmarks of the habit. This is the cached array itself when
+         * the checkmarks have not changed.
+         */
+        @Nullable
+        final int[] checkmarks;
+
+        HabitResult(@NonNull Habit habit,
+                    @NonNull Timestamp dateFrom,
+                    @NonNull Timestamp dateTo,
+                    int count,
+                    @Nullable int[] cached)
+        {
+            score = habit.getScores().getTodayValue();
+
+            // Values are read into the worker's scratch buffer, and only
+            // copied when they differ from the cached ones, so that unchanged
+            // habits do not allocate anything.
+            int[] buffer = buffers.get();
+            if (buffer == null || buffer.length != count)
+            {
+                buffer = new int[count];
+                buffers.set(buffer);
+            }
+
+            habit.getCheckmarks().getValues(dateFrom, dateTo, buffer);
+            if (Arrays.equals(cached, buffer)) checkmarks = cached;
+            else checkmarks = buffer.clone();
+        }
+    }
+
+    /**
+     * Task that fills an empty cache with the data from the snapshot, so that
+     * the habits can be displayed before the first refresh finishes.
+     */
+    private class LoadSnapshotTask implements Task
+    {
+        @NonNull
+        private final HabitCardListSnapshot snapshot;
+
+        @NonNull
+        private final CacheData newData;
+
+        @Nullable
+        private HashMap<Long, HabitCardListSnapshot.Entry> entries;
+
+        public LoadSnapshotTask(@NonNull HabitCardListSnapshot snapshot)
+        {
+            this.snapshot = snapshot;
+            newData = new CacheData();
+        }
+
+        @Override
+        public synchronized void doInBackground()
+        {
+            entries = snapshot.read(DateUtils.getTodayWithOffset(), checkmarkCount);
+            if (entries != null) newData.fetchHabits();
+        }
+
+        @Override
+        public synchronized void onPostExecute()
+        {
+            if (entries == null) return;
+
+            synchronized (HabitCardListCache.this)
+            {
+                if (!data.habits.isEmpty()) return;
+
+                for (Habit habit : newData.habits)
+                {
+                    HabitCardListSnapshot.Entry entry = entries.get(habit.getId());
+                    if (entry == null) continue;
+
+                    int position = data.habits.size();
+                    data.habits.add(habit);
+                    data.id_to_habit.put(habit.getId(), habit);
+                    data.scores.put(habit.getId(), entry.score);
+                    data.checkmarks.put(habit.getId(), entry.checkmarks);
+                    listener.onItemInserted(position);
+                }
+            }
+        }
+    }
+
     private class RefreshTask implements Task
     {
         @NonNull
@@ -314,6 +477,9 @@ public class HabitCardListCache implements CommandRunner.Listener
         @Nullable
         private final Long targetId;
 
+        @Nullable
+        private final HabitCardListSnapshot snapshot;
+
         private boolean isCancelled;
 
         @Nullable
@@ -323,6 +489,7 @@ public class HabitCardListCache implements CommandRunner.Listener
         {
             newData = new CacheData();
             targetId = null;
+            snapshot = HabitCardListCache.this.snapshot;
             isCancelled = false;
         }
 
@@ -330,6 +497,7 @@ public class HabitCardListCache implements CommandRunner.Listener
         {
             newData = new CacheData();
             this.targetId = targetId;
+            snapshot = null;
         }
 
         @Override
@@ -341,29 +509,87 @@ public class HabitCardListCache implements CommandRunner.Listener
         @Override
         public synchronized void doInBackground()
         {
+            allHabits.loadRepetitions();
             newData.fetchHabits();
             newData.copyScoresFrom(data);
             newData.copyCheckmarksFrom(data);
 
+            long changeCount = 0;
+            if (snapshot != null) changeCount = snapshot.getChangeCount();
+
             Timestamp dateTo = DateUtils.getTodayWithOffset();
             Timestamp dateFrom = dateTo.minus(checkmarkCount - 1);
+            int count = Math.max(0, checkmarkCount);
 
             if (runner != null) runner.publishProgress(this, -1);
 
-            for (int position = 0; position < newData.habits.size(); position++)
+            List<Future<HabitResult>> results = new ArrayList<>();
+            for (Habit habit : newData.habits)
+            {
+                if (targetId != null && !targetId.equals(habit.getId()))
+                {
+                    results.add(null);
+                    continue;
+                }
+
+                int[] cached = newData.checkmarks.get(habit.getId());
+                results.add(workers.submit(() ->
+                    new HabitResult(habit, dateFrom, dateTo, count, cached)));
+            }
+
+            try
             {
-                if (isCancelled) return;
+                for (int position = 0; position < results.size(); position++)
+                {
+                    if (isCancelled) return;
+
+                    Future<HabitResult> result = results.get(position);
+                    if (result == null) continue;
 
-                Habit habit = newData.habits.get(position);
-                Long id = habit.getId();
-                if (targetId != null && !targetId.equals(id)) continue;
+                    Long id = newData.habits.get(position).getId();
+                    HabitResult habitResult = getResult(result);
 
-                newData.scores.put(id, habit.getScores().getTodayValue());
-                newData.checkmarks.put(
-                        id,
-                        habit.getCheckmarks().getValues(dateFrom, dateTo));
+                    if (newData.scores.get(id) != habitResult.score)
+                        newData.scores.put(id, habitResult.score);
 
-                runner.publishProgress(this, position);
+                    // The cached array is kept when nothing changed, so that
+                    // unchanged habits are not reported as modified.
+                    if (newData.checkmarks.get(id) != habitResult.checkmarks)
+                        newData.checkmarks.put(id, habitResult.checkmarks);
+
+                    runner.publishProgress(this, position);
+                }
+
+                if (snapshot != null)
+                    snapshot.write(changeCount, dateTo, checkmarkCount,
+                        newData.getEntries());
+            }
+            finally
+            {
+                for (Future<HabitResult> result : results)
+                    if (result != null) result.cancel(false);
+            }
+        }
+
+        @NonNull
+        private HabitResult getResult(@NonNull Future<HabitResult> result)
+        {
+            try
+            {
+                return result.get();
+            }
+            catch (InterruptedException e)
+            {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException(e);
+            }
+            catch (ExecutionException e)
+            {
+                Throwable cause = e.getCause();
+                if (cause instanceof RuntimeException)
+                    throw (RuntimeException) cause;
+                if (cause instanceof Error) throw (Error) cause;
+                throw new RuntimeException(cause);
             }
         }
 
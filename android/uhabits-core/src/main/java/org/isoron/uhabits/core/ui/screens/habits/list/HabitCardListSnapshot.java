@@ -0,0 +1,199 @@
+/*
+ * Copyright (C) 2017 linson Santos Xavier <isoron@gmail.com>
+ *
+ * This file is part of Loop Habit Tracker.
+ *
+ * Loop Habit Tracker is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * Loop Habit Tracker is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.isoron.uhabits.core.ui.screens.habits.list;
+
+import androidx.annotation.*;
+
+import org.isoron.uhabits.core.database.*;
+import org.isoron.uhabits.core.models.*;
+
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.*;
+import java.util.*;
+
+/**
+ * Binary file holding the data shown by the list of habits at the end of the
+ * last complete refresh, which allows the list to be displayed as soon as the
+ * application starts, before any score or checkmark is computed.
+ * <p>
+ * The snapshot is only used if it was written on the same day, with the same
+ * number of checkmarks, and if the database has not been modified since then,
+ * according to a {@link ChangeCounter}. The file is memory-mapped and read in
+ * a single pass. It has a header, made of a magic number, the version of the
+ * format, the value of the change counter, the day, the number of checkmarks
+ * and the number of habits, followed by the id, the score and the checkmarks
+ * of each habit. Every number is stored in big-endian order.
+ */
+public class HabitCardListSnapshot
+{
+    private static final int MAGIC = 0x4c485343;
+
+    private static final int VERSION = 1;
+
+    private static final int HEADER_SIZE = 4 + 4 + 8 + 8 + 4 + 4;
+
+    @NonNull
+    private final File file;
+
+    @NonNull
+    private final ChangeCounter counter;
+
+    public HabitCardListSnapshot(@NonNull File file,
+                                 @NonNull ChangeCounter counter)
+    {
+        this.file = file;
+        this.counter = counter;
+    }
+
+    /**
+     * Returns the current value of the change counter, which should be read
+     * before the data that is going to be written is computed.
+     */
+    public long getChangeCount()
+    {
+        return counter.get();
+    }
+
+    /**
+     * Returns the data stored in the snapshot, indexed by habit id, or null if
+     * the snapshot is missing, damaged or out of date.
+     */
+    @Nullable
+    public synchronized HashMap<Long, Entry> read(@NonNull Timestamp today,
+                                                  int checkmarkCount)
+    {
+        if (!file.exists()) return null;
+
+        try (FileInputStream stream = new FileInputStream(file))
+        {
+            FileChannel channel = stream.getChannel();
+            ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0,
+                channel.size());
+
+            if (buffer.remaining() < HEADER_SIZE) return null;
+            if (buffer.getInt() != MAGIC) return null;
+            if (buffer.getInt() != VERSION) return null;
+            if (buffer.getLong() != counter.get()) return null;
+            if (buffer.getLong() != today.getUnixTime()) return null;
+            if (buffer.getInt() != checkmarkCount) return null;
+
+            int habitCount = buffer.getInt();
+            if (habitCount < 0) return null;
+            if (buffer.remaining() != (long) habitCount * getEntrySize(checkmarkCount))
+                return null;
+
+            HashMap<Long, Entry> entries = new HashMap<>(habitCount * 2);
+            for (int i = 0; i < habitCount; i++)
+            {
+                long id = buffer.getLong();
+                double score = buffer.getDouble();
+                int checkmarks[] = new int[checkmarkCount];
+                for (int j = 0; j < checkmarkCount; j++)
+                    checkmarks[j] = buffer.getInt();
+                entries.put(id, new Entry(score, checkmarks));
+            }
+
+            return entries;
+        }
+        catch (IOException e)
+        {
+            return null;
+        }
+    }
+
+    /**
+     * Replaces the snapshot by one holding the given data. If the file cannot
+     * be written, the previous snapshot is removed instead.
+     *
+     * @param changeCount    value of the change counter before the data was
+     *                       computed
+     * @param today          the day on which the data was computed
+     * @param checkmarkCount number of checkmarks of each habit
+     * @param entries        the data of each habit, indexed by habit id
+     */
+    public synchronized void write(long changeCount,
+                                   @NonNull Timestamp today,
+                                   int checkmarkCount,
+                                   @NonNull Map<Long, Entry> entries)
+    {
+        int size = HEADER_SIZE + entries.size() * getEntrySize(checkmarkCount);
+        ByteBuffer buffer = ByteBuffer.allocate(size);
+        buffer.putInt(MAGIC);
+        buffer.putInt(VERSION);
+        buffer.putLong(changeCount);
+        buffer.putLong(today.getUnixTime());
+        buffer.putInt(checkmarkCount);
+        buffer.putInt(entries.size());
+
+        for (Map.Entry<Long, Entry> e : entries.entrySet())
+        {
+            Entry entry = e.getValue();
+            if (entry.checkmarks.length != checkmarkCount)
+                throw new IllegalArgumentException();
+
+            buffer.putLong(e.getKey());
+            buffer.putDouble(entry.score);
+            for (int value : entry.checkmarks) buffer.putInt(value);
+        }
+
+        buffer.flip();
+        File temp = new File(file.getPath() + ".tmp");
+        try (FileOutputStream stream = new FileOutputStream(temp))
+        {
+            FileChannel channel = stream.getChannel();
+            while (buffer.hasRemaining()) channel.write(buffer);
+        }
+        catch (IOException e)
+        {
+            temp.delete();
+            file.delete();
+            return;
+        }
+
+        if (!temp.renameTo(file))
+        {
+            temp.delete();
+            file.delete();
+        }
+    }
+
+    private static int getEntrySize(int checkmarkCount)
+    {
+        return 8 + 8 + 4 * checkmarkCount;
+    }
+
+    /**
+     * Data of a single habit, as shown on the list.
+     */
+    public static final class Entry
+    {
+        public final double score;
+
+        @NonNull
+        public final int[] checkmarks;
+
+        public Entry(double score, @NonNull int[] checkmarks)
+        {
+            this.score = score;
+            this.checkmarks = checkmarks;
+        }
+    }
+}
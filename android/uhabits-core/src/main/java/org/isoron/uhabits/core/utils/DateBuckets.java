@@ -0,0 +1,200 @@
+/*
+ * Copyright (C) 2016 linson Santos Xavier <isoron@gmail.com>
+ *
+ * This file is part of Loop Habit Tracker.
+ *
+ * Loop Habit Tracker is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * Loop Habit Tracker is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.isoron.uhabits.core.utils;
+
+import androidx.annotation.*;
+
+/**
+ * Lookup table that maps each day to the beginning of the week, month,
+ * quarter and year that contain it.
+ * <p>
+ * Days are identified by the number of days since 1970-01-01 (UTC), which is
+ * the unix time of a timestamp divided by the length of a day. The table
+ * covers whole years, and is extended lazily as older or newer days are
+ * requested. Finding the month of a day then takes a single array lookup,
+ * instead of setting up a {@link java.util.Calendar}. Weeks do not need a
+ * table, since they always have seven days.
+ */
+public final class DateBuckets
+{
+    public static final int MIN_YEAR = 1970;
+
+    public static final int MAX_YEAR = 2299;
+
+    /**
+     * Number of years added to the table, beyond the one requested, whenever
+     * the table needs to be extended.
+     */
+    private static final int EXTRA_YEARS = 8;
+
+    private static final int MIN_DAY = daysFromCivil(MIN_YEAR, 1);
+
+    private static final int MAX_DAY = daysFromCivil(MAX_YEAR + 1, 1) - 1;
+
+    @Nullable
+    private static volatile Table table;
+
+    private DateBuckets()
+    {
+    }
+
+    /**
+     * Returns true if the given day can be looked up in the table. Days
+     * outside this range must be truncated by other means.
+     */
+    public static boolean isSupported(long day)
+    {
+        return day >= MIN_DAY && day <= MAX_DAY;
+    }
+
+    /**
+     * Returns the first day of the interval that contains the given day.
+     *
+     * @param field        the length of the interval
+     * @param day          number of days since 1970-01-01
+     * @param firstWeekday the first day of the week, as in
+     *                     {@link java.util.Calendar#DAY_OF_WEEK}
+     * @return the first day of the interval, as number of days since
+     * 1970-01-01
+     * @throws IllegalArgumentException if the day is not supported
+     */
+    public static int truncate(@NonNull DateUtils.TruncateField field,
+                               int day,
+                               int firstWeekday)
+    {
+        if (!isSupported(day)) throw new IllegalArgumentException();
+
+        if (field == DateUtils.TruncateField.WEEK_NUMBER)
+        {
+            // 1970-01-01 was a Thursday
+            int weekday = (day + 4) % 7 + 1;
+            int delta = weekday - firstWeekday;
+            if (delta < 0) delta += 7;
+            return day - delta;
+        }
+
+        Table t = getTable(day);
+        int month = t.monthOfDay[day - t.firstDay];
+
+        switch (field)
+        {
+            case MONTH:
+                return t.monthStarts[month];
+
+            case QUARTER:
+                return t.monthStarts[month - month % 3];
+
+            case YEAR:
+                return t.monthStarts[month - month % 12];
+
+            default:
+                throw new IllegalArgumentException();
+        }
+    }
+
+    @NonNull
+    private static Table getTable(int day)
+    {
+        Table t = table;
+        if (t != null && t.contains(day)) return t;
+
+        synchronized (DateBuckets.class)
+        {
+            t = table;
+            if (t != null && t.contains(day)) return t;
+
+            int year = MIN_YEAR + day / 365;
+            int firstYear = Math.max(MIN_YEAR, year - EXTRA_YEARS);
+            int lastYear = Math.min(MAX_YEAR, year + EXTRA_YEARS);
+            if (t != null)
+            {
+                firstYear = Math.min(firstYear, t.firstYear);
+                lastYear = Math.max(lastYear, t.lastYear);
+            }
+
+            t = new Table(firstYear, lastYear);
+            table = t;
+            return t;
+        }
+    }
+
+    /**
+     * Returns the number of days between 1970-01-01 and the first day of the
+     * given month, in the proleptic Gregorian calendar.
+     *
+     * @param year  the year
+     * @param month the month, from 1 (January) to 12 (December)
+     */
+    private static int daysFromCivil(int year, int month)
+    {
+        if (month <= 2) year -= 1;
+        int era = year / 400;
+        int yearOfEra = year - era * 400;
+        int dayOfYear = (153 * (month + (month > 2 ? -3 : 9)) + 2) / 5;
+        int dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 +
+                       dayOfYear;
+        return era * 146097 + dayOfEra - 719468;
+    }
+
+    private static class Table
+    {
+        final int firstYear;
+
+        final int lastYear;
+
+        final int firstDay;
+
+        /**
+         * First day of each month covered by the table, starting with January
+         * of the first year. The last entry is the first day after the table.
+         */
+        @NonNull
+        final int[] monthStarts;
+
+        /**
+         * Index into {@link #monthStarts} of the month of each day covered by
+         * the table, starting with {@link #firstDay}.
+         */
+        @NonNull
+        final short[] monthOfDay;
+
+        Table(int firstYear, int lastYear)
+        {
+            this.firstYear = firstYear;
+            this.lastYear = lastYear;
+
+            int months = (lastYear - firstYear + 1) * 12;
+            monthStarts = new int[months + 1];
+            for (int m = 0; m <= months; m++)
+                monthStarts[m] = daysFromCivil(firstYear + m / 12, m % 12 + 1);
+
+            firstDay = monthStarts[0];
+            monthOfDay = new short[monthStarts[months] - firstDay];
+            for (int m = 0; m < months; m++)
+                for (int d = monthStarts[m]; d < monthStarts[m + 1]; d++)
+                    monthOfDay[d - firstDay] = (short) m;
+        }
+
+        boolean contains(int day)
+        {
+            return day >= firstDay && day - firstDay < monthOfDay.length;
+        }
+    }
+}
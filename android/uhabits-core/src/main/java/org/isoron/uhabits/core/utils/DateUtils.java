@@ -266,9 +266,29 @@ public abstract class DateUtils
         return Locale.getDefault();
     }
 
+    /**
+     * Returns the beginning of the week, month, quarter or year that contains
+     * the given timestamp. The time of the day is preserved.
+     * <p>
+     * Timestamps between {@link DateBuckets#MIN_YEAR} and
+     * {@link DateBuckets#MAX_YEAR} are looked up in {@link DateBuckets}.
+     * Other timestamps fall back to {@link Calendar}.
+     */
     public static Long truncate(TruncateField field,
                                 long timestamp,
                                 int firstWeekday)
+    {
+        long day = timestamp / DAY_LENGTH;
+        if (timestamp < 0 || !DateBuckets.isSupported(day))
+            return truncateWithCalendar(field, timestamp, firstWeekday);
+
+        int start = DateBuckets.truncate(field, (int) day, firstWeekday);
+        return timestamp - (day - start) * DAY_LENGTH;
+    }
+
+    static long truncateWithCalendar(TruncateField field,
+                                     long timestamp,
+                                     int firstWeekday)
     {
         GregorianCalendar cal = DateUtils.getCalendar(timestamp);
 
@@ -0,0 +1,155 @@
+/*
+ * Copyright (C) 2017 linson Santos Xavier <isoron@gmail.com>
+ *
+ * This file is part of Loop Habit Tracker.
+ *
+ * Loop Habit Tracker is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * Loop Habit Tracker is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.isoron.uhabits.core.database;
+
+import org.isoron.uhabits.core.*;
+import org.junit.*;
+
+import java.io.*;
+import java.util.concurrent.*;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.IsEqual.equalTo;
+
+public class JdbcDatabaseTest extends BaseUnitTest
+{
+    private File file;
+
+    private Database db;
+
+    private ExecutorService executor;
+
+    @Before
+    @Override
+    public void setUp() throws Exception
+    {
+        super.setUp();
+        file = File.createTempFile("database", ".db");
+        db = new JdbcDatabase("jdbc:sqlite:" + file.getAbsolutePath(), 2);
+        db.execute("create table tests(id integer primary key, name string)");
+        db.execute("insert into tests(id, name) values (1, 'one')");
+        executor = Executors.newSingleThreadExecutor();
+    }
+
+    @After
+    @Override
+    public void tearDown() throws Exception
+    {
+        executor.shutdownNow();
+        db.close();
+        for (String suffix : new String[]{ "", "-wal", "-shm" })
+            new File(file.getAbsolutePath() + suffix).delete();
+        super.tearDown();
+    }
+
+    @Test
+    public void testJournalMode() throws Exception
+    {
+        try (Cursor c = db.query("pragma journal_mode"))
+        {
+            c.moveToNext();
+            assertThat(c.getString(0), equalTo("wal"));
+        }
+    }
+
+    @Test(timeout = 5000)
+    public void testReadDuringTransaction() throws Exception
+    {
+        db.beginTransaction();
+        db.execute("insert into tests(id, name) values (2, 'two')");
+
+        // The transaction sees its own changes, while other threads keep
+        // reading the committed data, without waiting for it to finish
+        assertThat(count(), equalTo(2));
+        assertThat(executor.submit(this::count).get(), equalTo(1));
+
+        db.setTransactionSuccessful();
+        db.endTransaction();
+        assertThat(executor.submit(this::count).get(), equalTo(2));
+    }
+
+    @Test(timeout = 5000)
+    public void testWriteDuringTransaction() throws Exception
+    {
+        db.beginTransaction();
+        db.execute("insert into tests(id, name) values (2, 'two')");
+
+        // Writes from other threads wait for the transaction, instead of
+        // becoming part of it
+        Future<?> write = executor.submit(() -> db.execute(
+            "insert into tests(id, name) values (3, 'three')"));
+        Thread.sleep(100);
+        assertThat(write.isDone(), equalTo(false));
+
+        db.endTransaction();
+        write.get();
+        assertThat(count(), equalTo(2));
+    }
+
+    @Test
+    public void testMoreCursorsThanReaders() throws Exception
+    {
+        try (Cursor c1 = db.query("select name from tests");
+             Cursor c2 = db.query("select name from tests");
+             Cursor c3 = db.query("select name from tests"))
+        {
+            for (Cursor c : new Cursor[]{ c1, c2, c3 })
+            {
+                c.moveToNext();
+                assertThat(c.getString(0), equalTo("one"));
+            }
+        }
+        assertThat(count(), equalTo(1));
+    }
+
+    @Test
+    public void testQueryBindsParametersByType() throws Exception
+    {
+        try (Cursor c = db.query("select typeof(?), typeof(?), typeof(?)",
+            1L, 0.5, "one"))
+        {
+            c.moveToNext();
+            assertThat(c.getString(0), equalTo("integer"));
+            assertThat(c.getString(1), equalTo("real"));
+            assertThat(c.getString(2), equalTo("text"));
+        }
+
+        try (Cursor c = db.query("select name from tests where id = ?", 1L))
+        {
+            assertThat(c.moveToNext(), equalTo(true));
+            assertThat(c.getString(0), equalTo("one"));
+        }
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testBindUnsupportedType() throws Exception
+    {
+        db.delete("tests", "id = ?", new Object());
+    }
+
+    private int count()
+    {
+        try (Cursor c = db.query("select count(*) from tests"))
+        {
+            c.moveToNext();
+            return c.getInt(0);
+        }
+    }
+}
@@ -23,10 +23,14 @@ import org.apache.commons.lang3.builder.*;
 import org.isoron.uhabits.core.*;
 import org.junit.*;
 
+import java.util.*;
+
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.core.IsEqual.equalTo;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
 
 
 public class RepositoryTest extends BaseUnitTest
@@ -65,6 +69,99 @@ public class RepositoryTest extends BaseUnitTest
         assertThat(record.score, equalTo(8.0));
     }
 
+    @Test
+    public void testIterate() throws Exception
+    {
+        db.execute("insert into tests(id, color_number, name, score) " +
+                   "values (1, 10, 'one', 1.0), (2, 20, 'two', 2.0), " +
+                   "(3, 30, 'three', 3.0)");
+
+        try (Repository.RecordIterator<ThingRecord> it =
+                 repository.iterate("where color_number > ? order by id", "10"))
+        {
+            assertTrue(it.hasNext());
+            assertThat(it.next().name, equalTo("two"));
+            assertTrue(it.hasNext());
+            assertThat(it.next().name, equalTo("three"));
+            assertFalse(it.hasNext());
+        }
+
+        Repository.RecordIterator<ThingRecord> it =
+            repository.iterate("order by id");
+        assertThat(it.next().id, equalTo(1L));
+        it.close();
+        assertFalse(it.hasNext());
+        it.close(); // should have no effect
+    }
+
+    @Test
+    public void testIterate_nested() throws Exception
+    {
+        db.execute("insert into tests(id, color_number, name, score) " +
+                   "values (1, 10, 'one', 1.0), (2, 20, 'two', 2.0)");
+
+        // Both iterators run the same query, and must not share a statement
+        int count = 0;
+        try (Repository.RecordIterator<ThingRecord> outer =
+                 repository.iterate("order by id"))
+        {
+            while (outer.hasNext())
+            {
+                outer.next();
+                try (Repository.RecordIterator<ThingRecord> inner =
+                         repository.iterate("order by id"))
+                {
+                    while (inner.hasNext())
+                    {
+                        inner.next();
+                        count++;
+                    }
+                }
+            }
+        }
+        assertThat(count, equalTo(4));
+    }
+
+    @Test(expected = NoSuchElementException.class)
+    public void testIterate_empty() throws Exception
+    {
+        Repository.RecordIterator<ThingRecord> it =
+            repository.iterate("where id = ?", "1");
+        assertFalse(it.hasNext());
+        it.next();
+    }
+
+    @Test
+    public void testExecuteAsTransaction_nested() throws Exception
+    {
+        ThingRecord record = new ThingRecord();
+        record.color = 10;
+        record.score = 1.0;
+
+        repository.executeAsTransaction(() ->
+            repository.executeAsTransaction(() -> repository.save(record)));
+        Long id = record.id;
+        assertNotNull(repository.find(id));
+
+        try
+        {
+            repository.executeAsTransaction(() ->
+            {
+                repository.remove(record);
+                repository.executeAsTransaction(() ->
+                {
+                    throw new IllegalStateException();
+                });
+            });
+        }
+        catch (RuntimeException e)
+        {
+            // expected
+        }
+
+        assertNotNull(repository.find(id));
+    }
+
     @Test
     public void testSave_withId() throws Exception
     {
@@ -116,6 +213,64 @@ public class RepositoryTest extends BaseUnitTest
         assertThat(r2.id, equalTo(2L));
     }
 
+    @Test
+    public void testSaveAll() throws Exception
+    {
+        ThingRecord existing = new ThingRecord();
+        existing.color = 10;
+        existing.name = "hello";
+        existing.score = 1.0;
+        repository.save(existing);
+
+        existing.name = null;
+        existing.score = 2.0;
+
+        ThingRecord created = new ThingRecord();
+        created.color = 20;
+        created.name = "world";
+        created.score = 3.0;
+
+        ThingRecord withId = new ThingRecord();
+        withId.id = 50L;
+        withId.color = 30;
+        withId.score = 4.0;
+
+        repository.saveAll(Arrays.asList(existing, created, withId));
+
+        assertNotNull(created.id);
+        assertThat(withId.id, equalTo(50L));
+        assertThat(repository.find(existing.id), equalTo(existing));
+        assertThat(repository.find(created.id), equalTo(created));
+        assertThat(repository.find(50L), equalTo(withId));
+        assertThat(repository.findAll("").size(), equalTo(3));
+    }
+
+    @Test
+    public void testUpdateAll() throws Exception
+    {
+        ThingRecord existing = new ThingRecord();
+        existing.color = 10;
+        existing.score = 1.0;
+        repository.save(existing);
+        existing.score = 2.0;
+
+        ThingRecord missing = new ThingRecord();
+        missing.id = 50L;
+        missing.color = 20;
+        missing.score = 3.0;
+
+        ThingRecord withoutId = new ThingRecord();
+        withoutId.color = 30;
+        withoutId.score = 4.0;
+
+        repository.updateAll(Arrays.asList(existing, missing, withoutId));
+
+        assertThat(repository.find(existing.id), equalTo(existing));
+        assertNull(repository.find(50L));
+        assertNull(withoutId.id);
+        assertThat(repository.findAll("").size(), equalTo(1));
+    }
+
     @Test
     public void testRemove() throws Exception
     {
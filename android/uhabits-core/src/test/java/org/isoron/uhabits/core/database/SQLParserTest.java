@@ -0,0 +1,132 @@
+/*
+ * Copyright (C) 2017 linson Santos Xavier <isoron@gmail.com>
+ *
+ * This file is part of Loop Habit Tracker.
+ *
+ * Loop Habit Tracker is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * Loop Habit Tracker is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.isoron.uhabits.core.database;
+
+import org.junit.*;
+
+import java.io.*;
+import java.util.*;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.IsEqual.equalTo;
+
+public class SQLParserTest
+{
+    @Test
+    public void testParse_simpleCommands() throws Exception
+    {
+        List<String> commands = parse(
+            "create table t(a integer);\n" +
+            "-- comment; with semicolon\n" +
+            "insert into t values ('a;b'); /* another; comment */\n" +
+            "delete from t");
+
+        assertThat(commands, equalTo(Arrays.asList(
+            "create table t(a integer)",
+            "insert into t values ('a;b')",
+            "delete from t")));
+    }
+
+    @Test
+    public void testParse_transactionIsNotTrigger() throws Exception
+    {
+        List<String> commands = parse(
+            "begin transaction;\n" +
+            "update t set a = 1;\n" +
+            "commit;");
+
+        assertThat(commands, equalTo(Arrays.asList(
+            "begin transaction",
+            "update t set a = 1",
+            "commit")));
+    }
+
+    @Test
+    public void testParse_trigger() throws Exception
+    {
+        List<String> commands = parse(
+            "create trigger if not exists t_insert after insert on t begin\n" +
+            "    update c set v = v + 1;\n" +
+            "    update c set v = v + 2;\n" +
+            "end;\n" +
+            "delete from t;");
+
+        assertThat(commands, equalTo(Arrays.asList(
+            "create trigger if not exists t_insert after insert on t begin " +
+            "update c set v = v + 1; update c set v = v + 2; end",
+            "delete from t")));
+    }
+
+    @Test
+    public void testParse_tempTrigger() throws Exception
+    {
+        List<String> commands = parse(
+            "CREATE TEMP TRIGGER t1 AFTER INSERT ON t BEGIN\n" +
+            "    UPDATE c SET v = 1;\n" +
+            "END;\n" +
+            "create temporary trigger IF  NOT\tEXISTS t2 after delete on t\n" +
+            "begin update c set v = 2; end;");
+
+        assertThat(commands, equalTo(Arrays.asList(
+            "CREATE TEMP TRIGGER t1 AFTER INSERT ON t BEGIN " +
+            "UPDATE c SET v = 1; END",
+            "create temporary trigger IF NOT EXISTS t2 after delete on t " +
+            "begin update c set v = 2; end")));
+    }
+
+    @Test
+    public void testParse_triggerWithCase() throws Exception
+    {
+        List<String> commands = parse(
+            "create trigger t1 after insert on t begin\n" +
+            "    update c set v = case when new.a > 0 then 1 else 0 end;\n" +
+            "    update c set w = 'end;';\n" +
+            "end;\n" +
+            "select 1;");
+
+        assertThat(commands, equalTo(Arrays.asList(
+            "create trigger t1 after insert on t begin " +
+            "update c set v = case when new.a > 0 then 1 else 0 end; " +
+            "update c set w = 'end;'; end",
+            "select 1")));
+    }
+
+    @Test
+    public void testParse_wholeWords() throws Exception
+    {
+        List<String> commands = parse(
+            "create trigger t1 after insert on t begin\n" +
+            "    update c set backend = 1, beginning = 2;\n" +
+            "    -- end;\n" +
+            "end;\n" +
+            "select 1;");
+
+        assertThat(commands, equalTo(Arrays.asList(
+            "create trigger t1 after insert on t begin " +
+            "update c set backend = 1, beginning = 2; end",
+            "select 1")));
+    }
+
+    private List<String> parse(String sql) throws IOException
+    {
+        return SQLParser.parse(new ByteArrayInputStream(sql.getBytes(UTF_8)));
+    }
+}
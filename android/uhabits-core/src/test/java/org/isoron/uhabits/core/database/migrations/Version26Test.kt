@@ -0,0 +1,65 @@
+package org.isoron.uhabits.core.database.migrations
+
+import org.hamcrest.MatcherAssert
+import org.hamcrest.Matchers
+import org.isoron.uhabits.core.BaseUnitTest
+import org.isoron.uhabits.core.database.ChangeCounter
+import org.isoron.uhabits.core.database.Database
+import org.isoron.uhabits.core.database.MigrationHelper
+import org.junit.Test
+
+class Version26Test: BaseUnitTest() {
+
+    private lateinit var db: Database
+
+    private lateinit var helper: MigrationHelper
+
+    override fun setUp() {
+        super.setUp()
+        db = openDatabaseResource("/databases/022.db")
+        helper = MigrationHelper(db)
+    }
+
+    @Test
+    fun `test migrate to 26 creates change counter`() {
+        helper.migrateTo(26)
+        val counter = ChangeCounter(db)
+        val before = counter.get()
+
+        db.execute("update Habits set name = 'renamed' where id = 1")
+        MatcherAssert.assertThat(counter.get(), Matchers.equalTo(before + 1))
+    }
+
+    @Test
+    fun `test migrate to 26 creates derived data table`() {
+        helper.migrateTo(26)
+        db.execute("insert into DerivedData(habit, series, version, hash, timestamp, data) " +
+                   "values (1, 'scores', 1, 0, 0, '0.5')")
+        val cursor = db.query("select count(*) from DerivedData where habit = 1")
+        cursor.moveToNext()
+        MatcherAssert.assertThat(cursor.getInt(0), Matchers.equalTo(1))
+    }
+
+    @Test
+    fun `test migrate to 26 twice keeps derived data`() {
+        helper.migrateTo(26)
+        db.execute("insert into DerivedData(habit, series, version, hash, timestamp, data) " +
+                   "values (1, 'scores', 1, 0, 0, '0.5')")
+
+        db.execute("pragma user_version=25")
+        helper.migrateTo(26)
+        val cursor = db.query("select count(*) from DerivedData")
+        cursor.moveToNext()
+        MatcherAssert.assertThat(cursor.getInt(0), Matchers.equalTo(1))
+    }
+
+    @Test
+    fun `test migrate to 26 twice keeps counter`() {
+        helper.migrateTo(26)
+        val before = ChangeCounter(db).get()
+
+        db.execute("pragma user_version=25")
+        helper.migrateTo(26)
+        MatcherAssert.assertThat(ChangeCounter(db).get(), Matchers.equalTo(before))
+    }
+}
@@ -194,6 +194,149 @@ public class CheckmarkListTest extends BaseUnitTest
         assertThat(actual, equalTo(expected));
     }
 
+    @Test
+    public void test_compute_incrementalMatchesFullRecompute()
+    {
+        Random random = new Random(42);
+        int values[] = { YES_MANUAL, YES_MANUAL, YES_MANUAL, NO, SKIP };
+        Frequency frequencies[] = {
+                Frequency.DAILY,
+                Frequency.WEEKLY,
+                Frequency.TWO_TIMES_PER_WEEK,
+                Frequency.THREE_TIMES_PER_WEEK,
+                new Frequency(1, 3),
+                new Frequency(4, 30)
+        };
+
+        for (Frequency freq : frequencies)
+        {
+            DateUtils.setFixedLocalTime(FIXED_LOCAL_TIME);
+            Habit habit = fixtures.createEmptyHabit();
+            habit.setFrequency(freq);
+
+            for (int i = 0; i < 300; i++)
+            {
+                if (i % 10 == 0) travelInTime(random.nextInt(9) - 4);
+
+                Timestamp t = today.minus(random.nextInt(90) - 3);
+                int value = values[random.nextInt(values.length)];
+                habit.getRepetitions().setValue(t, value);
+
+                List<Checkmark> expected = computeFromScratch(habit);
+                if (expected.isEmpty()) continue;
+
+                Timestamp from = expected.get(expected.size() - 1).getTimestamp();
+                Timestamp to = expected.get(0).getTimestamp();
+                assertThat(habit.getCheckmarks().getByInterval(from, to),
+                           equalTo(expected));
+            }
+        }
+    }
+
+    @Test
+    public void test_compute_windowMatchesFullRecompute()
+    {
+        Random random = new Random(42);
+        int values[] = { YES_MANUAL, YES_MANUAL, YES_MANUAL, NO, SKIP };
+        Frequency frequencies[] = {
+                Frequency.DAILY,
+                Frequency.WEEKLY,
+                Frequency.THREE_TIMES_PER_WEEK,
+                new Frequency(4, 30)
+        };
+
+        for (Frequency freq : frequencies)
+        {
+            DateUtils.setFixedLocalTime(FIXED_LOCAL_TIME);
+            Habit habit = fixtures.createEmptyHabit();
+            habit.setFrequency(freq);
+
+            for (int i = 0; i < 150; i++)
+            {
+                Timestamp t = today.minus(random.nextInt(300));
+                habit.getRepetitions().setValue(t, values[random.nextInt(values.length)]);
+            }
+
+            for (int i = 0; i < 50; i++)
+            {
+                if (i % 10 == 0) habit.invalidateNewerThan(Timestamp.ZERO);
+                if (i % 10 == 5) travelInTime(random.nextInt(5));
+
+                Timestamp t = today.minus(random.nextInt(40));
+                habit.getRepetitions().setValue(t, values[random.nextInt(values.length)]);
+
+                List<Checkmark> expected = computeFromScratch(habit);
+                int length = Math.min(expected.size(), 1 + random.nextInt(60));
+                Timestamp to = expected.get(0).getTimestamp();
+                Timestamp from = to.minus(length - 1);
+                assertThat(habit.getCheckmarks().getByInterval(from, to),
+                           equalTo(expected.subList(0, length)));
+            }
+
+            List<Checkmark> expected = computeFromScratch(habit);
+            Timestamp from = expected.get(expected.size() - 1).getTimestamp();
+            Timestamp to = expected.get(0).getTimestamp();
+            assertThat(habit.getCheckmarks().getByInterval(from, to),
+                       equalTo(expected));
+        }
+    }
+
+    @Test
+    public void test_compute_incrementalWithNumericalHabit()
+    {
+        Random random = new Random(42);
+        Habit habit = fixtures.createNumericalHabit();
+
+        for (int i = 0; i < 100; i++)
+        {
+            if (i % 10 == 0) travelInTime(random.nextInt(9) - 4);
+
+            Timestamp t = today.minus(random.nextInt(30) - 3);
+            habit.getRepetitions().setValue(t, random.nextInt(1000));
+
+            Timestamp now = DateUtils.getTodayWithOffset();
+            Timestamp oldest = habit.getRepetitions().getOldest().getTimestamp();
+            int expected[] = new int[Math.max(0, oldest.daysUntil(now) + 1)];
+            for (int j = 0; j < expected.length; j++)
+            {
+                Repetition rep = habit.getRepetitions().getByTimestamp(now.minus(j));
+                if (rep != null) expected[j] = rep.getValue();
+            }
+
+            assertThat(habit.getCheckmarks().getAllValues(), equalTo(expected));
+        }
+    }
+
+    @Test
+    public void test_getValueSum_matchesValues()
+    {
+        Random random = new Random(42);
+        Habit habit = fixtures.createEmptyHabit();
+        habit.setFrequency(Frequency.TWO_TIMES_PER_WEEK);
+        int values[] = { YES_MANUAL, YES_MANUAL, NO, SKIP };
+
+        for (int i = 0; i < 200; i++)
+        {
+            Timestamp t = today.minus(random.nextInt(200));
+            habit.getRepetitions().setValue(t, values[random.nextInt(values.length)]);
+
+            Timestamp to = today.minus(random.nextInt(220) - 10);
+            Timestamp from = to.minus(random.nextInt(100));
+
+            long expectedSum = 0;
+            int expectedCount = 0;
+            for (int v : habit.getCheckmarks().getValues(from, to))
+            {
+                if (v != UNKNOWN) expectedSum += v;
+                if (v == YES_MANUAL) expectedCount++;
+            }
+
+            CheckmarkList checkmarks = habit.getCheckmarks();
+            assertThat(checkmarks.getValueSum(from, to), equalTo(expectedSum));
+            assertThat(checkmarks.getYesManualCount(from, to), equalTo(expectedCount));
+        }
+    }
+
     @Test
     public void test_getAllValues_moveBackwardsInTime()
     {
@@ -332,6 +475,25 @@ public class CheckmarkListTest extends BaseUnitTest
         assertThat(actualValues, equalTo(expectedValues));
     }
 
+    @Test
+    public void test_getValues_withBuffer()
+    {
+        int[] buffer = new int[5];
+        nonDailyHabit.getCheckmarks().getValues(today.minus(11), today.minus(7), buffer);
+
+        int[] expectedValues = { YES_AUTO, YES_MANUAL, YES_MANUAL, UNKNOWN, UNKNOWN };
+        assertThat(buffer, equalTo(expectedValues));
+
+        nonDailyHabit.getCheckmarks().getValues(today.minus(4), today, buffer);
+        assertThat(buffer, equalTo(nonDailyHabit.getCheckmarks().getValues(today.minus(4), today)));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void test_getValues_withBufferOfWrongSize()
+    {
+        nonDailyHabit.getCheckmarks().getValues(today.minus(4), today, new int[3]);
+    }
+
     @Test
     public void test_snapIntervalsTogether_1() throws Exception
     {
@@ -386,6 +548,24 @@ public class CheckmarkListTest extends BaseUnitTest
         return DateUtils.getToday().minus(offset);
     }
 
+    private List<Checkmark> computeFromScratch(Habit habit)
+    {
+        Timestamp now = DateUtils.getTodayWithOffset();
+        Repetition oldest = habit.getRepetitions().getOldest();
+        if (oldest == null || oldest.getTimestamp().isNewerThan(now))
+            return new ArrayList<>();
+
+        Repetition reps[] = habit
+                .getRepetitions()
+                .getByInterval(oldest.getTimestamp(), now)
+                .toArray(new Repetition[0]);
+
+        ArrayList<CheckmarkList.Interval> intervals =
+                CheckmarkList.buildIntervals(habit.getFrequency(), reps);
+        CheckmarkList.snapIntervalsTogether(intervals);
+        return CheckmarkList.buildCheckmarksFromIntervals(reps, intervals);
+    }
+
     private void travelInTime(int days)
     {
         DateUtils.setFixedLocalTime(
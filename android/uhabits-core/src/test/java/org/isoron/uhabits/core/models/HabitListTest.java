@@ -20,6 +20,7 @@
 package org.isoron.uhabits.core.models;
 
 import org.isoron.uhabits.core.*;
+import org.isoron.uhabits.core.utils.*;
 import org.junit.*;
 import org.junit.rules.*;
 
@@ -32,6 +33,7 @@ import static org.hamcrest.CoreMatchers.*;
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.isoron.uhabits.core.models.HabitList.Order.*;
 import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
 
 @SuppressWarnings("JavaDoc")
 public class HabitListTest extends BaseUnitTest
@@ -108,6 +110,185 @@ public class HabitListTest extends BaseUnitTest
         assertNull(habitList.getById(100L));
     }
 
+    @Test
+    public void testGetById_afterIdChanged()
+    {
+        Habit habit = habitsArray.get(3);
+        Long oldId = habit.getId();
+        habit.setId(1000L);
+        habitList.update(habit);
+        assertNull(habitList.getById(oldId));
+        assertNull(activeHabits.getById(oldId));
+        assertThat(habitList.getById(1000L), equalTo(habit));
+        assertThat(activeHabits.getById(1000L), equalTo(habit));
+
+        habitList.remove(habit);
+        assertNull(habitList.getById(1000L));
+        assertNull(activeHabits.getById(1000L));
+    }
+
+    @Test
+    public void testGetByUUID()
+    {
+        Habit habit = habitsArray.get(3);
+        assertThat(habitList.getByUUID(habit.getUUID()), equalTo(habit));
+        assertThat(activeHabits.getByUUID(habit.getUUID()), equalTo(habit));
+        assertNull(activeHabits.getByUUID(habitsArray.get(4).getUUID()));
+        assertNull(habitList.getByUUID("invalid"));
+
+        String oldUUID = habit.getUUID();
+        habit.setUUID("abc123");
+        habitList.update(habit);
+        assertNull(habitList.getByUUID(oldUUID));
+        assertThat(habitList.getByUUID("abc123"), equalTo(habit));
+
+        habitList.remove(habit);
+        assertNull(habitList.getByUUID("abc123"));
+        assertNull(habitList.getById(habit.getId()));
+        assertNull(activeHabits.getById(habit.getId()));
+    }
+
+    @Test
+    public void testGetFiltered()
+    {
+        HabitList other = habitList.getFiltered(new HabitMatcherBuilder().build());
+        assertSame(activeHabits, other);
+
+        habitList.setPrimaryOrder(BY_NAME_DESC);
+        other = habitList.getFiltered(new HabitMatcherBuilder().build());
+        assertNotSame(activeHabits, other);
+        assertThat(other.getPrimaryOrder(), equalTo(BY_NAME_DESC));
+        assertThat(activeHabits.getPrimaryOrder(), equalTo(BY_POSITION));
+    }
+
+    @Test
+    public void testGetFiltered_sharedListCannotBeSorted()
+    {
+        activeHabits.setPrimaryOrder(activeHabits.getPrimaryOrder());
+        thrown.expect(IllegalStateException.class);
+        activeHabits.setPrimaryOrder(BY_NAME_DESC);
+    }
+
+    @Test
+    public void testGetFiltered_incremental()
+    {
+        CountingMatcher matcher = new CountingMatcher();
+        HabitList view = habitList.getFiltered(matcher);
+        assertThat(view.size(), equalTo(6));
+
+        matcher.count = 0;
+        Habit habit = habitsArray.get(2);
+        habit.setArchived(true);
+        habitList.update(habit);
+        assertThat(matcher.count, equalTo(1));
+        assertThat(view.size(), equalTo(5));
+        assertThat(view.indexOf(habit), equalTo(-1));
+
+        matcher.count = 0;
+        Habit added = fixtures.createEmptyHabit();
+        habitList.add(added);
+        assertThat(matcher.count, equalTo(1));
+        assertThat(view.size(), equalTo(6));
+
+        matcher.count = 0;
+        habitList.remove(added);
+        assertThat(matcher.count, equalTo(0));
+        assertThat(view.size(), equalTo(5));
+        assertNull(view.getById(added.getId()));
+    }
+
+    @Test
+    public void testExecuteAsBatch()
+    {
+        habitList.setPrimaryOrder(BY_NAME_ASC);
+        ModelObservable.Listener listener = mock(ModelObservable.Listener.class);
+        habitList.getObservable().addListener(listener);
+
+        habitList.executeAsBatch(() ->
+        {
+            Habit h1 = fixtures.createEmptyHabit();
+            h1.setName("B Habit");
+            habitList.add(h1);
+
+            Habit h2 = fixtures.createEmptyHabit();
+            h2.setName("A Habit");
+            habitList.add(h2);
+
+            habitList.remove(habitsArray.get(2));
+            habitList.resort();
+            verify(listener, never()).onModelChange();
+        });
+
+        verify(listener).onModelChange();
+        assertThat(habitList.size(), equalTo(11));
+        assertThat(habitList.getByPosition(0).getName(), equalTo("A Habit"));
+        assertThat(habitList.getByPosition(1).getName(), equalTo("B Habit"));
+        assertThat(activeHabits.size(), equalTo(7));
+    }
+
+    @Test
+    public void testReposition()
+    {
+        habitList.setPrimaryOrder(BY_SCORE_DESC);
+        activeHabits = habitList.getFiltered(new HabitMatcherBuilder().build());
+        Habit habit = habitsArray.get(5);
+        int from = habitList.indexOf(habit);
+        int activeFrom = activeHabits.indexOf(habit);
+
+        ModelObservable.Listener listener = mock(ModelObservable.Listener.class);
+        habitList.getObservable().addListener(listener);
+        ModelObservable.Listener activeListener =
+            mock(ModelObservable.Listener.class);
+        activeHabits.getObservable().addListener(activeListener);
+
+        Timestamp today = DateUtils.getToday();
+        for (int i = 0; i < 30; i++)
+            habit.getRepetitions().setValue(today.minus(i), Checkmark.YES_MANUAL);
+        habitList.reposition(habit);
+
+        int to = habitList.indexOf(habit);
+        int activeTo = activeHabits.indexOf(habit);
+        assertThat(to, not(equalTo(from)));
+        assertThat(activeTo, not(equalTo(activeFrom)));
+        verify(listener).onItemMoved(from, to);
+        verify(activeListener).onItemMoved(activeFrom, activeTo);
+        verify(listener, never()).onModelChange();
+        verify(activeListener, never()).onModelChange();
+
+        List<Habit> expected = new ArrayList<>();
+        for (Habit h : habitList) expected.add(h);
+        habitList.resort();
+        List<Habit> actual = new ArrayList<>();
+        for (Habit h : habitList) actual.add(h);
+        assertThat(actual, equalTo(expected));
+    }
+
+    @Test
+    public void testReposition_afterDayChange()
+    {
+        habitList.setPrimaryOrder(BY_STATUS_DESC);
+        Habit first = habitsArray.get(3);
+        Habit second = habitsArray.get(5);
+
+        first.getRepetitions().setValue(DateUtils.getToday(), Checkmark.YES_MANUAL);
+        habitList.reposition(first);
+        assertThat(habitList.getByPosition(0), equalTo(first));
+
+        // On the next day, the first habit is no longer completed, without
+        // being repositioned
+        DateUtils.setFixedLocalTime(FIXED_LOCAL_TIME + DateUtils.DAY_LENGTH);
+        second.getRepetitions().setValue(DateUtils.getToday(), Checkmark.YES_MANUAL);
+        habitList.reposition(second);
+        assertThat(habitList.getByPosition(0), equalTo(second));
+
+        List<Habit> expected = new ArrayList<>();
+        for (Habit h : habitList) expected.add(h);
+        habitList.resort();
+        List<Habit> actual = new ArrayList<>();
+        for (Habit h : habitList) actual.add(h);
+        assertThat(actual, equalTo(expected));
+    }
+
     @Test
     public void testOrdering()
     {
@@ -315,4 +496,21 @@ public class HabitListTest extends BaseUnitTest
         thrown.expect(IllegalStateException.class);
         habitList.reorder(h1, h2);
     }
-}
\ No newline at end of file
+
+    private static class CountingMatcher extends HabitMatcher
+    {
+        int count = 0;
+
+        CountingMatcher()
+        {
+            super(false, false, true);
+        }
+
+        @Override
+        public boolean matches(Habit habit)
+        {
+            count++;
+            return super.matches(habit);
+        }
+    }
+}
@@ -23,6 +23,10 @@ import org.isoron.uhabits.core.*;
 import org.junit.*;
 import org.junit.rules.*;
 
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+
 import nl.jqno.equalsverifier.*;
 
 import static org.hamcrest.CoreMatchers.*;
@@ -118,6 +122,81 @@ public class HabitTest extends BaseUnitTest
         assertTrue(h.isCompletedToday());
     }
 
+    @Test
+    public void test_concurrentReads() throws Exception
+    {
+        Habit h = modelFactory.buildHabit();
+        h.setFrequency(Frequency.DAILY);
+        Timestamp today = getToday();
+        Timestamp from = today.minus(59);
+        RepetitionList reps = h.getRepetitions();
+        for (int i = 1; i < 60; i++) reps.setValue(today.minus(i), Checkmark.YES_MANUAL);
+
+        // Computes the results expected for each of the two states below
+        reps.setValue(today, Checkmark.NO);
+        int[] checkmarksNo = h.getCheckmarks().getValues(from, today);
+        double scoreNo = h.getScores().getTodayValue();
+        reps.setValue(today, Checkmark.YES_MANUAL);
+        int[] checkmarksYes = h.getCheckmarks().getValues(from, today);
+        double scoreYes = h.getScores().getTodayValue();
+
+        Habit modelA = modelFactory.buildHabit();
+        modelA.setFrequency(Frequency.DAILY);
+        modelA.setName("A");
+        modelA.setDescription("A");
+        Habit modelB = modelFactory.buildHabit();
+        modelB.setFrequency(Frequency.DAILY);
+        modelB.setName("B");
+        modelB.setDescription("B");
+
+        AtomicBoolean done = new AtomicBoolean(false);
+        Queue<String> errors = new ConcurrentLinkedQueue<>();
+
+        Thread writer = new Thread(() ->
+        {
+            for (int i = 0; i < 2000; i++)
+            {
+                boolean even = i % 2 == 0;
+                reps.setValue(today, even ? Checkmark.NO : Checkmark.YES_MANUAL);
+                h.copyFrom(even ? modelA : modelB);
+            }
+            done.set(true);
+        });
+
+        Runnable reader = () ->
+        {
+            while (!done.get() && errors.isEmpty())
+            {
+                int[] checkmarks = h.getCheckmarks().getValues(from, today);
+                if (!Arrays.equals(checkmarks, checkmarksNo) &&
+                    !Arrays.equals(checkmarks, checkmarksYes))
+                    errors.add("checkmarks: " + Arrays.toString(checkmarks));
+
+                double score = h.getScores().getTodayValue();
+                if (score != scoreNo && score != scoreYes)
+                    errors.add("score: " + score);
+
+                Habit.HabitData data = h.getData();
+                if (!data.name.equals(data.description))
+                    errors.add("data: " + data);
+            }
+        };
+
+        Thread readers[] = new Thread[3];
+        for (int i = 0; i < readers.length; i++)
+            readers[i] = new Thread(reader);
+
+        writer.start();
+        for (Thread t : readers) t.start();
+
+        writer.join();
+        for (Thread t : readers) t.join();
+
+        assertThat(errors.isEmpty() ? null : errors.peek(), nullValue());
+        assertThat(h.getCheckmarks().getValues(from, today), equalTo(checkmarksYes));
+        assertThat(h.getScores().getTodayValue(), equalTo(scoreYes));
+    }
+
     @Test
     public void testURI() throws Exception
     {
@@ -132,10 +211,7 @@ public class HabitTest extends BaseUnitTest
     @Test
     public void testEquals() throws Exception
     {
-        EqualsVerifier
-            .forClass(Habit.HabitData.class)
-            .suppress(Warning.NONFINAL_FIELDS)
-            .verify();
+        EqualsVerifier.forClass(Habit.HabitData.class).verify();
 
         EqualsVerifier.forClass(Repetition.class).verify();
         EqualsVerifier.forClass(Score.class).verify();
@@ -83,6 +83,45 @@ public class RepetitionListTest extends BaseUnitTest
         assertThat(rep.getTimestamp(), equalTo(today.minus(7)));
     }
 
+    @Test
+    public void test_getNewest()
+    {
+        Repetition rep = reps.getNewest();
+        assertThat(rep.getTimestamp(), equalTo(today));
+    }
+
+    @Test
+    public void test_getByInterval()
+    {
+        List<Repetition> actual = reps.getByInterval(today.minus(6), today.minus(1));
+        List<Repetition> expected = Arrays.asList(
+            new Repetition(today.minus(5), YES_MANUAL),
+            new Repetition(today.minus(3), YES_MANUAL),
+            new Repetition(today.minus(2), YES_MANUAL));
+        assertThat(actual, equalTo(expected));
+
+        assertThat(reps.getByInterval(today.minus(1), today.minus(1)).size(), equalTo(0));
+    }
+
+    @Test
+    public void test_getTotalCount()
+    {
+        assertThat(reps.getTotalCount(), equalTo(5L));
+
+        reps.setValue(today.minus(3), SKIP);
+        assertThat(reps.getTotalCount(), equalTo(4L));
+
+        reps.setValue(today.minus(2), NO);
+        assertThat(reps.getTotalCount(), equalTo(3L));
+
+        reps.remove(reps.getByTimestamp(today));
+        assertThat(reps.getTotalCount(), equalTo(2L));
+        assertThat(reps.getByTimestamp(today), equalTo(null));
+
+        reps.removeAll();
+        assertThat(reps.getTotalCount(), equalTo(0L));
+    }
+
     @Test
     public void test_getWeekDayFrequency()
     {
@@ -162,6 +201,45 @@ public class RepetitionListTest extends BaseUnitTest
         reset(listener);
     }
 
+    @Test
+    public void test_setValues()
+    {
+        CheckmarkList checkmarks = habit.getCheckmarks();
+        assertThat(checkmarks.getTodayValue(), equalTo(YES_MANUAL));
+
+        reps.setValues(Arrays.asList(
+            new Repetition(today, SKIP),
+            new Repetition(today.minus(9), YES_MANUAL),
+            new Repetition(today, NO)));
+
+        verify(listener).onModelChange();
+        assertThat(reps.getValue(today), equalTo(NO));
+        assertThat(reps.getTotalCount(), equalTo(5L));
+        assertThat(checkmarks.getTodayValue(), equalTo(NO));
+        assertThat(checkmarks.getValues(today.minus(9), today.minus(8)),
+            equalTo(new int[]{ UNKNOWN, YES_MANUAL }));
+    }
+
+    @Test
+    public void test_executeAsBatch()
+    {
+        CheckmarkList checkmarks = habit.getCheckmarks();
+        assertThat(checkmarks.getTodayValue(), equalTo(YES_MANUAL));
+
+        reps.executeAsBatch(() ->
+        {
+            reps.setValue(today, NO);
+            reps.setValue(today.minus(1), YES_MANUAL);
+            reps.setValue(today.minus(9), YES_MANUAL);
+            verify(listener, never()).onModelChange();
+        });
+
+        verify(listener).onModelChange();
+        assertThat(checkmarks.getTodayValue(), equalTo(NO));
+        assertThat(checkmarks.getValues(today.minus(9), today.minus(8)),
+            equalTo(new int[]{ UNKNOWN, YES_MANUAL }));
+    }
+
     @Test
     public void testToString() throws Exception
     {
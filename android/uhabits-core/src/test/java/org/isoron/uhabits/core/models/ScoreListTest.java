@@ -197,6 +197,31 @@ public class ScoreListTest extends BaseUnitTest
             assertThat(actual[i], closeTo(expected[i], E));
     }
 
+    @Test
+    public void test_getValues_withBuffer()
+    {
+        check(0, 20);
+
+        Timestamp today = DateUtils.getToday();
+        double[] buffer = new double[3];
+        habit.getScores().getValues(today.minus(4), today.minus(2), buffer);
+
+        double[] expected = {
+            0.617008, 0.596033, 0.573909,
+        };
+
+        for (int i = 0; i < buffer.length; i++)
+            assertThat(buffer[i], closeTo(expected[i], E));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void test_getValues_withBufferOfWrongSize()
+    {
+        check(0, 20);
+        Timestamp today = DateUtils.getToday();
+        habit.getScores().getValues(today.minus(4), today, new double[3]);
+    }
+
     @Test
     public void test_imperfectNonDaily()
     {
@@ -287,6 +312,38 @@ public class ScoreListTest extends BaseUnitTest
         assertThat(list.get(2).getValue(), closeTo(0.571922, E));
     }
 
+    @Test
+    public void test_groupBy_matchesAverageOfEachInterval()
+    {
+        Habit habit = fixtures.createLongHabit();
+
+        for (DateUtils.TruncateField field : DateUtils.TruncateField.values())
+        {
+            TreeMap<Timestamp, List<Double>> groups =
+                new TreeMap<>((t1, t2) -> t2.compare(t1));
+
+            for (Score s : habit.getScores())
+            {
+                Timestamp t = new Timestamp(DateUtils.truncate(field,
+                    s.getTimestamp().getUnixTime(), Calendar.SATURDAY));
+                if (!groups.containsKey(t)) groups.put(t, new ArrayList<>());
+                groups.get(t).add(s.getValue());
+            }
+
+            List<Score> expected = new ArrayList<>();
+            for (Timestamp t : groups.keySet())
+            {
+                double sum = 0.0;
+                for (double v : groups.get(t)) sum += v;
+                expected.add(new Score(t, sum / groups.get(t).size()));
+            }
+
+            List<Score> actual =
+                habit.getScores().groupBy(field, Calendar.SATURDAY);
+            assertThat(actual, equalTo(expected));
+        }
+    }
+
     @Test
     public void test_invalidateNewerThan()
     {
@@ -301,6 +358,106 @@ public class ScoreListTest extends BaseUnitTest
         assertThat(habit.getScores().getTodayValue(), closeTo(0.054816, E));
     }
 
+    @Test
+    public void test_invalidateNewerThan_matchesFullRecompute()
+    {
+        Random random = new Random(42);
+        int values[] = { YES_MANUAL, YES_MANUAL, NO, SKIP };
+        Frequency frequencies[] = {
+            Frequency.DAILY,
+            Frequency.WEEKLY,
+            Frequency.THREE_TIMES_PER_WEEK,
+            new Frequency(1, 30)
+        };
+
+        for (Frequency freq : frequencies)
+        {
+            DateUtils.setFixedLocalTime(FIXED_LOCAL_TIME);
+            habit = fixtures.createEmptyHabit();
+            habit.setFrequency(freq);
+
+            for (int i = 0; i < 200; i++)
+            {
+                if (i % 20 == 0) travelInTime(i / 20);
+                int day = random.nextInt(150);
+                setValue(day, values[random.nextInt(values.length)]);
+                assertMatchesFullRecompute();
+            }
+        }
+    }
+
+    @Test
+    public void test_invalidateNewerThan_matchesFullRecomputeWithNumericalHabit()
+    {
+        Random random = new Random(42);
+        habit = fixtures.createNumericalHabit();
+
+        for (int i = 0; i < 200; i++)
+        {
+            if (i % 20 == 0) travelInTime(i / 20);
+            setValue(random.nextInt(150), random.nextInt(5000));
+            assertMatchesFullRecompute();
+        }
+    }
+
+    @Test
+    public void test_compute_withLongHistory()
+    {
+        Random random = new Random(42);
+        int values[] = { YES_MANUAL, YES_MANUAL, NO, SKIP };
+        Frequency frequencies[] = {
+            Frequency.DAILY,
+            Frequency.THREE_TIMES_PER_WEEK,
+            Frequency.WEEKLY
+        };
+
+        for (Frequency freq : frequencies)
+        {
+            DateUtils.setFixedLocalTime(FIXED_LOCAL_TIME);
+            habit = fixtures.createEmptyHabit();
+            habit.setFrequency(freq);
+            for (int i = 0; i < 3000; i++)
+                setValue(i, values[random.nextInt(values.length)]);
+
+            Timestamp today = DateUtils.getToday();
+            Timestamp oldest = habit.getRepetitions().getOldest().getTimestamp();
+            ScoreList scores = habit.getScores();
+            scores.invalidateNewerThan(Timestamp.ZERO);
+
+            // Only the requested scores are computed, from a seed
+            double[] actual = scores.getValues(today.minus(29), today);
+            assertThat(scores.getOldestComputed().getTimestamp(), equalTo(today.minus(29)));
+
+            double[] expected = modelFactory.buildScoreList(habit).getValues(oldest, today);
+            for (int i = 0; i < actual.length; i++)
+                assertThat(actual[i], closeTo(expected[i], E));
+
+            // Scores for the following days are computed incrementally
+            travelInTime(3);
+            today = DateUtils.getToday();
+            expected = modelFactory.buildScoreList(habit).getValues(oldest, today);
+            assertThat(scores.getTodayValue(), closeTo(expected[0], E));
+
+            // Requesting older scores recomputes the list from the beginning
+            assertThat(scores.getValues(oldest, today), equalTo(expected));
+        }
+    }
+
+    @Test
+    public void test_invalidateNewerThan_keepsOlderScores()
+    {
+        check(0, 20);
+        ScoreList scores = habit.getScores();
+        Timestamp today = DateUtils.getToday();
+        double[] before = scores.getValues(today.minus(19), today);
+
+        scores.invalidateNewerThan(today.minus(5));
+        Score newest = scores.getNewestComputed();
+        assertThat(newest.getTimestamp(), equalTo(today.minus(6)));
+
+        assertThat(scores.getValues(today.minus(19), today), equalTo(before));
+    }
+
     @Test
     public void test_writeCSV() throws IOException
     {
@@ -349,6 +506,32 @@ public class ScoreListTest extends BaseUnitTest
                 reps.setValue(today.minus(i), YES_MANUAL);
     }
 
+    private void setValue(final int offset, final int value)
+    {
+        RepetitionList reps = habit.getRepetitions();
+        Timestamp today = DateUtils.getToday();
+        reps.setValue(today.minus(offset), value);
+    }
+
+    private void travelInTime(int days)
+    {
+        DateUtils.setFixedLocalTime(
+            FIXED_LOCAL_TIME + days * Timestamp.DAY_LENGTH);
+    }
+
+    private void assertMatchesFullRecompute()
+    {
+        Timestamp today = DateUtils.getToday();
+        Timestamp oldest = habit.getRepetitions().getOldest().getTimestamp();
+        double[] actual = habit.getScores().getValues(oldest, today);
+
+        ScoreList fresh = modelFactory.buildScoreList(habit);
+        double[] expected = fresh.getValues(oldest, today);
+
+        // Arrays of doubles are compared bit by bit
+        assertThat(actual, equalTo(expected));
+    }
+
     private void addSkip(final int day)
     {
         RepetitionList reps = habit.getRepetitions();
@@ -69,6 +69,45 @@ public class ScoreTest extends BaseUnitTest
         assertThat(compute(freq, 0.75, check), closeTo(0.727263, E));
     }
 
+    @Test
+    public void test_computeYesNo()
+    {
+        int[] checks = {
+            Checkmark.SKIP, Checkmark.YES_MANUAL, Checkmark.NO,
+            Checkmark.YES_AUTO, Checkmark.YES_MANUAL, Checkmark.NO,
+        };
+        double[] scores = new double[5];
+        computeYesNo(checks, 1, 2, 4, 0.5, 0.25, scores);
+
+        double[] expected = new double[5];
+        expected[4] = compute(0.5, 0.25, 0.5);
+        expected[3] = compute(0.5, expected[4], 0.5);
+        expected[2] = compute(0.5, expected[3], 0.5);
+        expected[1] = compute(0.5, expected[2], 1.0);
+        expected[0] = expected[1];
+        assertThat(scores, equalTo(expected));
+    }
+
+    @Test
+    public void test_computeNumerical()
+    {
+        int[] checks = { 3000, 0, 1000, 5000 };
+        double[] scores = new double[4];
+        computeNumerical(checks, 0, 2, 4.0, 1.0, 0.0, scores);
+
+        double[] expected = new double[4];
+        expected[3] = compute(1.0, 0.0, 1.0);
+        expected[2] = compute(1.0, expected[3], 1.0);
+        expected[1] = compute(1.0, expected[2], 0.25);
+        expected[0] = compute(1.0, expected[1], 0.75);
+        assertThat(scores, equalTo(expected));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void test_computeYesNo_withWrongLength()
+    {
+        computeYesNo(new int[5], 1, 1, 1, 1.0, 0.0, new double[5]);
+    }
 
     @Test
     public void testToString() throws Exception
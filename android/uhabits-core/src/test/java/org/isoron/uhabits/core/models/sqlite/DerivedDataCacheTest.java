@@ -0,0 +1,223 @@
+/*
+ * Copyright (C) 2017 linson Santos Xavier <isoron@gmail.com>
+ *
+ * This file is part of Loop Habit Tracker.
+ *
+ * Loop Habit Tracker is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * Loop Habit Tracker is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.isoron.uhabits.core.models.sqlite;
+
+import org.isoron.uhabits.core.*;
+import org.isoron.uhabits.core.database.*;
+import org.isoron.uhabits.core.models.*;
+import org.isoron.uhabits.core.models.memory.*;
+import org.isoron.uhabits.core.models.sqlite.records.*;
+import org.isoron.uhabits.core.test.*;
+import org.isoron.uhabits.core.utils.*;
+import org.junit.*;
+
+import java.util.*;
+
+import static org.hamcrest.MatcherAssert.*;
+import static org.hamcrest.core.IsEqual.*;
+import static org.hamcrest.number.IsCloseTo.*;
+import static org.isoron.uhabits.core.models.Checkmark.*;
+
+public class DerivedDataCacheTest extends BaseUnitTest
+{
+    private static final double E = 1e-9;
+
+    private Database db;
+
+    private Habit habit;
+
+    private Repository<DerivedDataRecord> repository;
+
+    @Override
+    public void setUp() throws Exception
+    {
+        super.setUp();
+
+        db = buildMemoryDatabase();
+        modelFactory = new SQLModelFactory(db);
+        habitList = modelFactory.buildHabitList();
+        fixtures = new HabitFixtures(modelFactory, habitList);
+        repository = new Repository<>(DerivedDataRecord.class, db);
+        habit = fixtures.createLongHabit();
+        habitList.update(habit);
+    }
+
+    @Test
+    public void testFlush()
+    {
+        habit.getScores().getTodayValue();
+        habit.getStreaks().getAll();
+        assertThat(repository.findAll("").size(), equalTo(0));
+
+        flush();
+        DerivedDataRecord scores = find(DerivedDataCache.SCORES);
+        assertThat(scores.timestamp, equalTo(DateUtils.getToday().getUnixTime()));
+        assertThat(Double.parseDouble(scores.data),
+            equalTo(habit.getScores().getTodayValue()));
+
+        DerivedDataRecord streaks = find(DerivedDataCache.STREAKS);
+        assertThat(SQLiteStreakList.decode(streaks.data),
+            equalTo(habit.getStreaks().getAll()));
+    }
+
+    @Test
+    public void testReload()
+    {
+        List<Streak> expectedStreaks = habit.getStreaks().getAll();
+        habit.getScores().getTodayValue();
+        flush();
+
+        // Stored data is used instead of recomputing the history
+        repository.execSQL("update DerivedData set data = ? where series = ?",
+            "0.5", DerivedDataCache.SCORES);
+        Habit reloaded = reload();
+        assertThat(reloaded.getScores().getTodayValue(), equalTo(0.5));
+        assertThat(reloaded.getStreaks().getAll(), equalTo(expectedStreaks));
+    }
+
+    @Test
+    public void testGet_doesNotLoadRepetitions()
+    {
+        habit.getScores().getTodayValue();
+        flush();
+
+        SQLModelFactory factory = new SQLModelFactory(db);
+        Habit reloaded = factory.buildHabitList().getById(habit.getId());
+        DerivedDataRecord record =
+            factory.derivedDataCache.get(reloaded, DerivedDataCache.SCORES);
+        assertThat(record.id, equalTo(find(DerivedDataCache.SCORES).id));
+
+        SQLiteRepetitionList reps =
+            (SQLiteRepetitionList) reloaded.getRepetitions();
+        assertThat(reps.isLoaded(), equalTo(false));
+    }
+
+    @Test
+    public void testGet_withModifiedValue()
+    {
+        habit.getScores().getTodayValue();
+        flush();
+
+        Repetition rep = habit.getRepetitions().getNewest();
+        repository.execSQL("update Repetitions set value = ? " +
+                           "where habit = ? and timestamp = ?",
+            rep.getValue() == SKIP ? YES_MANUAL : SKIP, habit.getId(),
+            rep.getTimestamp().getUnixTime());
+
+        SQLModelFactory factory = new SQLModelFactory(db);
+        Habit reloaded = factory.buildHabitList().getById(habit.getId());
+        assertThat(factory.derivedDataCache.get(reloaded, DerivedDataCache.SCORES),
+            equalTo(null));
+    }
+
+    @Test(timeout = 5000)
+    public void testFlushInBackground() throws Exception
+    {
+        habit.getScores().getTodayValue();
+        ((SQLModelFactory) modelFactory).derivedDataCache.flushInBackground();
+        while (find(DerivedDataCache.SCORES) == null) Thread.sleep(10);
+    }
+
+    @Test
+    public void testReload_nextDay()
+    {
+        habit.getScores().getTodayValue();
+        habit.getStreaks().getAll();
+        flush();
+
+        DateUtils.setFixedLocalTime(FIXED_LOCAL_TIME + 3 * Timestamp.DAY_LENGTH);
+        habit.getRepetitions().setValue(DateUtils.getToday(), YES_MANUAL);
+
+        Habit reloaded = reload();
+        ScoreList expectedScores = new ArrayScoreList(reloaded);
+        StreakList expectedStreaks = new MemoryStreakList(reloaded);
+
+        assertThat(reloaded.getScores().getTodayValue(),
+            closeTo(expectedScores.getTodayValue(), E));
+        assertThat(reloaded.getStreaks().getAll(),
+            equalTo(expectedStreaks.getAll()));
+    }
+
+    @Test
+    public void testReload_withModifiedRepetitions()
+    {
+        habit.getScores().getTodayValue();
+        flush();
+
+        repository.execSQL("update DerivedData set data = ?", "0.5");
+        repository.execSQL("delete from Repetitions where habit = ? and timestamp = ?",
+            habit.getId(), DateUtils.getToday().minus(10).getUnixTime());
+
+        Habit reloaded = reload();
+        ScoreList expected = new ArrayScoreList(reloaded);
+        assertThat(reloaded.getScores().getTodayValue(),
+            equalTo(expected.getTodayValue()));
+    }
+
+    @Test
+    public void testInvalidateNewerThan()
+    {
+        habit.getScores().getTodayValue();
+        flush();
+
+        Timestamp today = DateUtils.getToday();
+        habit.getRepetitions().setValue(today.minus(5), NO);
+        flush();
+        assertThat(repository.findAll("").size(), equalTo(0));
+
+        double value = habit.getScores().getTodayValue();
+        flush();
+        assertThat(Double.parseDouble(find(DerivedDataCache.SCORES).data),
+            equalTo(value));
+    }
+
+    @Test
+    public void testEncode()
+    {
+        Timestamp today = DateUtils.getToday();
+        List<Streak> streaks = Arrays.asList(
+            new Streak(today.minus(10), today),
+            new Streak(today.minus(30), today.minus(30)),
+            new Streak(Timestamp.ZERO, Timestamp.ZERO.plus(15)));
+
+        String data = SQLiteStreakList.encode(streaks);
+        assertThat(SQLiteStreakList.decode(data), equalTo(streaks));
+        assertThat(SQLiteStreakList.decode("").size(), equalTo(0));
+    }
+
+    private void flush()
+    {
+        ((SQLModelFactory) modelFactory).repetitionWriteQueue.flush();
+        ((SQLModelFactory) modelFactory).derivedDataCache.flush();
+    }
+
+    private DerivedDataRecord find(String series)
+    {
+        return repository.findFirst("where habit = ? and series = ?",
+            habit.getId().toString(), series);
+    }
+
+    private Habit reload()
+    {
+        ((SQLModelFactory) modelFactory).repetitionWriteQueue.flush();
+        HabitList habits = new SQLModelFactory(db).buildHabitList();
+        return habits.getById(habit.getId());
+    }
+}
@@ -0,0 +1,194 @@
+/*
+ * Copyright (C) 2017 linson Santos Xavier <isoron@gmail.com>
+ *
+ * This file is part of Loop Habit Tracker.
+ *
+ * Loop Habit Tracker is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * Loop Habit Tracker is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.isoron.uhabits.core.models.sqlite;
+
+import org.isoron.uhabits.core.*;
+import org.isoron.uhabits.core.database.*;
+import org.isoron.uhabits.core.models.*;
+import org.isoron.uhabits.core.models.sqlite.records.*;
+import org.junit.*;
+
+import java.io.*;
+import java.util.*;
+
+import static org.hamcrest.MatcherAssert.*;
+import static org.hamcrest.core.IsEqual.*;
+import static org.isoron.uhabits.core.models.Checkmark.*;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+
+public class RepetitionWriteQueueTest extends BaseUnitTest
+{
+    private static final long NEVER = 3600000;
+
+    private Database db;
+
+    private Repository<RepetitionRecord> repository;
+
+    private File journalFile;
+
+    private Timestamp day;
+
+    private long h1;
+
+    private long h2;
+
+    @Override
+    public void setUp() throws Exception
+    {
+        super.setUp();
+        db = buildMemoryDatabase();
+        repository = new Repository<>(RepetitionRecord.class, db);
+        journalFile = File.createTempFile("repetitions", null);
+        journalFile.delete();
+        day = Timestamp.ZERO.plus(100);
+
+        SQLModelFactory factory = new SQLModelFactory(db);
+        HabitList habits = factory.buildHabitList();
+        Habit habit1 = factory.buildHabit();
+        Habit habit2 = factory.buildHabit();
+        habits.add(habit1);
+        habits.add(habit2);
+        h1 = habit1.getId();
+        h2 = habit2.getId();
+    }
+
+    @Override
+    public void tearDown() throws Exception
+    {
+        journalFile.delete();
+        new File(journalFile.getPath() + ".flushing").delete();
+        super.tearDown();
+    }
+
+    @Test
+    public void testFlush()
+    {
+        RepetitionWriteQueue queue = new RepetitionWriteQueue(db, null, NEVER);
+        queue.put(h1, day, YES_MANUAL);
+        queue.remove(h1, day);
+        queue.put(h1, day, SKIP);
+        queue.put(h1, day.plus(1), YES_MANUAL);
+        assertThat(repository.findAll("").size(), equalTo(0));
+
+        queue.flush();
+        assertThat(getValue(h1, day), equalTo(SKIP));
+        assertThat(getValue(h1, day.plus(1)), equalTo(YES_MANUAL));
+        assertThat(repository.findAll("").size(), equalTo(2));
+
+        queue.remove(h1, day.plus(1));
+        queue.put(h1, day, NO);
+        queue.flush();
+        assertThat(getValue(h1, day), equalTo(NO));
+        assertNull(getValue(h1, day.plus(1)));
+    }
+
+    @Test(timeout = 5000)
+    public void testScheduledFlush() throws Exception
+    {
+        RepetitionWriteQueue queue = new RepetitionWriteQueue(db, null, 10);
+        queue.put(h1, day, YES_MANUAL);
+        while (getValue(h1, day) == null) Thread.sleep(10);
+        assertThat(getValue(h1, day), equalTo(YES_MANUAL));
+    }
+
+    @Test(timeout = 5000)
+    public void testFlushInBackground() throws Exception
+    {
+        RepetitionWriteQueue queue = new RepetitionWriteQueue(db, null, NEVER);
+        queue.put(h1, day, YES_MANUAL);
+        queue.flushInBackground();
+        while (getValue(h1, day) == null) Thread.sleep(10);
+    }
+
+    @Test(timeout = 5000)
+    public void testRetryFailedFlush() throws Exception
+    {
+        RepetitionWriteQueue queue = new RepetitionWriteQueue(db, null, 10);
+        db.execute("alter table Repetitions rename to Repetitions2");
+        queue.put(h1, day, YES_MANUAL);
+        Thread.sleep(100);
+
+        db.execute("alter table Repetitions2 rename to Repetitions");
+        while (getValue(h1, day) == null) Thread.sleep(10);
+        assertThat(getValue(h1, day), equalTo(YES_MANUAL));
+    }
+
+    @Test(timeout = 5000)
+    public void testFlushInsideTransaction() throws Exception
+    {
+        RepetitionWriteQueue queue = new RepetitionWriteQueue(db, null, NEVER);
+        queue.put(h1, day, YES_MANUAL);
+
+        // Another thread starts flushing the queue while this thread has a
+        // transaction open, and then this thread flushes it too
+        db.beginTransaction();
+        Thread thread = new Thread(queue::flush);
+        thread.start();
+        Thread.sleep(100);
+        queue.put(h2, day, SKIP);
+        queue.flush();
+        db.setTransactionSuccessful();
+        db.endTransaction();
+        thread.join();
+
+        assertThat(getValue(h1, day), equalTo(YES_MANUAL));
+        assertThat(getValue(h2, day), equalTo(SKIP));
+    }
+
+    @Test
+    public void testReplay() throws Exception
+    {
+        RepetitionWriteQueue queue =
+            new RepetitionWriteQueue(db, journalFile, NEVER);
+        queue.put(h1, day, YES_MANUAL);
+        queue.flush();
+        queue.remove(h1, day);
+        queue.put(h2, day, 500);
+        queue.put(h2, day.plus(1), SKIP);
+        queue.put(h2, day, 1000);
+        queue.put(h2 + 100, day, YES_MANUAL);
+
+        // The process is killed while writing another entry, without
+        // flushing the queue
+        try (Writer out = new FileWriter(journalFile, true))
+        {
+            out.write(h1 + " " + day.getUnixTime());
+        }
+        assertThat(getValue(h1, day), equalTo(YES_MANUAL));
+        assertNull(getValue(h2, day));
+
+        new RepetitionWriteQueue(db, journalFile, NEVER);
+        assertNull(getValue(h1, day));
+        assertThat(getValue(h2, day), equalTo(1000));
+        assertThat(getValue(h2, day.plus(1)), equalTo(SKIP));
+        assertThat(repository.findAll("").size(), equalTo(2));
+        assertFalse(journalFile.exists());
+    }
+
+    private Integer getValue(long habitId, Timestamp timestamp)
+    {
+        RepetitionRecord record = repository.findFirst(
+            "where habit = ? and timestamp = ?", Long.toString(habitId),
+            Long.toString(timestamp.getUnixTime()));
+        if (record == null) return null;
+        return record.value;
+    }
+}
@@ -201,6 +201,33 @@ public class SQLiteHabitListTest extends BaseUnitTest
         assertThat(rec.position, equalTo(1));
     }
 
+    @Test
+    public void testLoadRepetitions()
+    {
+        Timestamp day = Timestamp.ZERO.plus(100);
+        habitsArray.get(0).getRepetitions().setValue(day, Checkmark.YES_MANUAL);
+        habitsArray.get(2).getRepetitions().setValue(day, Checkmark.SKIP);
+        habitsArray.get(2).getRepetitions().setValue(day.plus(1), 500);
+
+        SQLiteHabitList loaded = new SQLiteHabitList(modelFactory);
+        loaded.loadRepetitions();
+
+        for (Habit h : loaded)
+            assertTrue(((SQLiteRepetitionList) h.getRepetitions()).isLoaded());
+
+        RepetitionList reps = loaded.getById(habitsArray.get(2).getId())
+                                    .getRepetitions();
+        assertThat(reps.getByInterval(day, day.plus(1)).size(), equalTo(2));
+        assertThat(reps.getValue(day), equalTo(Checkmark.SKIP));
+        assertThat(reps.getValue(day.plus(1)), equalTo(500));
+
+        reps = loaded.getById(habitsArray.get(0).getId()).getRepetitions();
+        assertThat(reps.getValue(day), equalTo(Checkmark.YES_MANUAL));
+
+        reps = loaded.getById(habitsArray.get(1).getId()).getRepetitions();
+        assertNull(reps.getOldest());
+    }
+
     @Test
     public void testReorder()
     {
@@ -130,9 +130,35 @@ public class SQLiteRepetitionListTest extends BaseUnitTest
         assertNull(record);
     }
 
+    @Test
+    public void testSetValues()
+    {
+        repetitions.setValues(Arrays.asList(
+            new Repetition(today, NO),
+            new Repetition(today.plus(1), YES_MANUAL),
+            new Repetition(today.plus(2), SKIP)));
+
+        RepetitionRecord record = getByTimestamp(today);
+        assertNotNull(record);
+        assertThat(record.value, equalTo(NO));
+
+        record = getByTimestamp(today.plus(2));
+        assertNotNull(record);
+        assertThat(record.value, equalTo(SKIP));
+
+        assertThat(repository.findAll("where habit = ? and timestamp = ?",
+            Long.toString(habit.getId()),
+            Long.toString(today.getUnixTime())).size(), equalTo(1));
+
+        ((SQLiteRepetitionList) repetitions).reload();
+        assertThat(repetitions.getValue(today.plus(1)), equalTo(YES_MANUAL));
+        assertThat(repetitions.getValue(today), equalTo(NO));
+    }
+
     @Nullable
     private RepetitionRecord getByTimestamp(Timestamp timestamp)
     {
+        ((SQLModelFactory) modelFactory).repetitionWriteQueue.flush();
         String query = "where habit = ? and timestamp = ?";
         String params[] = {
             Long.toString(habit.getId()), Long.toString(timestamp.getUnixTime())
@@ -22,9 +22,12 @@
 package org.isoron.uhabits.core.models.sqlite.records;
 
 import org.isoron.uhabits.core.*;
+import org.isoron.uhabits.core.database.*;
 import org.isoron.uhabits.core.models.*;
 import org.junit.*;
 
+import java.util.*;
+
 import static org.hamcrest.MatcherAssert.*;
 import static org.hamcrest.core.IsEqual.*;
 
@@ -78,4 +81,42 @@ public class HabitRecordTest extends BaseUnitTest
 
         assertThat(original.getData(), equalTo(duplicate.getData()));
     }
+
+    @Test
+    public void testMapper()
+    {
+        Habit habit = modelFactory.buildHabit();
+        habit.setName("Hello world");
+        habit.setDescription("Description");
+        habit.setReminder(new Reminder(8, 30, WeekdayList.EVERY_DAY));
+        habit.setType(Habit.NUMBER_HABIT);
+        habit.setUnit("miles");
+        habit.setId(10L);
+
+        HabitRecord record = new HabitRecord();
+        record.copyFrom(habit);
+
+        RecordMapper<HabitRecord> mapper = new HabitRecordMapper();
+        RecordMapper<HabitRecord> reflection =
+            new ReflectionRecordMapper<>(HabitRecord.class, "id");
+        assertThat(toMap(mapper, record), equalTo(toMap(reflection, record)));
+
+        Repository<HabitRecord> repository =
+            new Repository<>(HabitRecord.class, buildMemoryDatabase());
+        repository.save(record);
+        HabitRecord loaded = repository.find(10L);
+        assertThat(toMap(mapper, loaded), equalTo(toMap(mapper, record)));
+    }
+
+    private static Map<String, Object> toMap(RecordMapper<HabitRecord> mapper,
+                                             HabitRecord record)
+    {
+        String columns[] = mapper.getColumnNames();
+        Object values[] = new Object[columns.length];
+        mapper.write(record, values);
+
+        Map<String, Object> map = new HashMap<>();
+        for (int i = 0; i < columns.length; i++) map.put(columns[i], values[i]);
+        return map;
+    }
 }
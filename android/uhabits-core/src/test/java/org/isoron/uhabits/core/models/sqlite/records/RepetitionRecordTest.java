@@ -22,9 +22,12 @@
 package org.isoron.uhabits.core.models.sqlite.records;
 
 import org.isoron.uhabits.core.*;
+import org.isoron.uhabits.core.database.*;
 import org.isoron.uhabits.core.models.*;
 import org.junit.*;
 
+import java.util.*;
+
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.core.IsEqual.equalTo;
 
@@ -38,4 +41,30 @@ public class RepetitionRecordTest extends BaseUnitTest
         record.copyFrom(rep);
         assertThat(rep, equalTo(record.toRepetition()));
     }
+
+    @Test
+    public void testMapper()
+    {
+        RepetitionRecord record = new RepetitionRecord();
+        record.copyFrom(new Repetition(Timestamp.ZERO.plus(100), 50));
+        record.habit_id = 1L;
+        record.id = 2L;
+
+        RecordMapper<RepetitionRecord> mapper = new RepetitionRecordMapper();
+        RecordMapper<RepetitionRecord> reflection =
+            new ReflectionRecordMapper<>(RepetitionRecord.class, "id");
+        assertThat(toMap(mapper, record), equalTo(toMap(reflection, record)));
+    }
+
+    private static Map<String, Object> toMap(RecordMapper<RepetitionRecord> mapper,
+                                             RepetitionRecord record)
+    {
+        String columns[] = mapper.getColumnNames();
+        Object values[] = new Object[columns.length];
+        mapper.write(record, values);
+
+        Map<String, Object> map = new HashMap<>();
+        for (int i = 0; i < columns.length; i++) map.put(columns[i], values[i]);
+        return map;
+    }
 }
@@ -0,0 +1,144 @@
+/*
+ * Copyright (C) 2017 linson Santos Xavier <isoron@gmail.com>
+ *
+ * This file is part of Loop Habit Tracker.
+ *
+ * Loop Habit Tracker is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * Loop Habit Tracker is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.isoron.uhabits.core.ui.screens.habits.list;
+
+import org.isoron.uhabits.core.*;
+import org.isoron.uhabits.core.database.*;
+import org.isoron.uhabits.core.models.*;
+import org.isoron.uhabits.core.models.sqlite.*;
+import org.isoron.uhabits.core.test.*;
+import org.isoron.uhabits.core.utils.*;
+import org.junit.*;
+
+import java.io.*;
+import java.util.*;
+
+import static org.hamcrest.MatcherAssert.*;
+import static org.hamcrest.core.IsEqual.*;
+import static org.isoron.uhabits.core.models.Checkmark.*;
+
+public class HabitCardListSnapshotTest extends BaseUnitTest
+{
+    private File file;
+
+    private ChangeCounter counter;
+
+    private HabitCardListSnapshot snapshot;
+
+    private Timestamp today;
+
+    @Override
+    public void setUp() throws Exception
+    {
+        super.setUp();
+
+        Database db = buildMemoryDatabase();
+        modelFactory = new SQLModelFactory(db);
+        habitList = modelFactory.buildHabitList();
+        fixtures = new HabitFixtures(modelFactory, habitList);
+        fixtures.createShortHabit();
+        fixtures.createLongHabit();
+
+        file = File.createTempFile("snapshot", null);
+        file.delete();
+        counter = new ChangeCounter(db);
+        snapshot = new HabitCardListSnapshot(file, counter);
+        today = DateUtils.getToday();
+    }
+
+    @Override
+    public void tearDown() throws Exception
+    {
+        file.delete();
+        super.tearDown();
+    }
+
+    @Test
+    public void testRead()
+    {
+        Map<Long, HabitCardListSnapshot.Entry> entries = new LinkedHashMap<>();
+        entries.put(1L, new HabitCardListSnapshot.Entry(0.5, new int[]{ 2, 0, 1 }));
+        entries.put(5L, new HabitCardListSnapshot.Entry(0.25, new int[]{ 0, 0, 0 }));
+        snapshot.write(snapshot.getChangeCount(), today, 3, entries);
+
+        HashMap<Long, HabitCardListSnapshot.Entry> actual = snapshot.read(today, 3);
+        Assert.assertNotNull(actual);
+        assertThat(actual.size(), equalTo(2));
+        assertThat(actual.get(1L).score, equalTo(0.5));
+        assertThat(actual.get(1L).checkmarks, equalTo(new int[]{ 2, 0, 1 }));
+        assertThat(actual.get(5L).score, equalTo(0.25));
+        assertThat(actual.get(5L).checkmarks, equalTo(new int[]{ 0, 0, 0 }));
+    }
+
+    @Test
+    public void testRead_missing()
+    {
+        assertThat(snapshot.read(today, 3), equalTo(null));
+    }
+
+    @Test
+    public void testRead_outOfDate()
+    {
+        snapshot.write(snapshot.getChangeCount(), today, 3, new HashMap<>());
+        assertThat(snapshot.read(today.plus(1), 3), equalTo(null));
+        assertThat(snapshot.read(today, 4), equalTo(null));
+        Assert.assertNotNull(snapshot.read(today, 3));
+
+        Habit habit = habitList.getByPosition(0);
+        habit.getRepetitions().setValue(today, YES_MANUAL);
+        ((SQLModelFactory) modelFactory).repetitionWriteQueue.flush();
+        assertThat(snapshot.read(today, 3), equalTo(null));
+
+        snapshot.write(snapshot.getChangeCount(), today, 3, new HashMap<>());
+        habit.setName("Renamed");
+        habitList.update(habit);
+        assertThat(snapshot.read(today, 3), equalTo(null));
+    }
+
+    @Test
+    public void testRefresh()
+    {
+        HabitCardListCache cache =
+            new HabitCardListCache(habitList, commandRunner, taskRunner);
+        cache.setCheckmarkCount(10);
+        cache.setSnapshot(snapshot);
+        cache.refreshAllHabits();
+
+        HashMap<Long, HabitCardListSnapshot.Entry> entries =
+            snapshot.read(DateUtils.getTodayWithOffset(), 10);
+        Assert.assertNotNull(entries);
+        assertThat(entries.size(), equalTo(2));
+
+        for (Habit h : habitList)
+        {
+            HabitCardListSnapshot.Entry entry = entries.get(h.getId());
+            assertThat(entry.score, equalTo(cache.getScore(h.getId())));
+            assertThat(entry.checkmarks, equalTo(cache.getCheckmarks(h.getId())));
+        }
+
+        HabitCardListCache other =
+            new HabitCardListCache(habitList, commandRunner, taskRunner);
+        other.setCheckmarkCount(10);
+        other.setSnapshot(snapshot);
+        other.refreshAllHabits();
+        assertThat(other.getHabitCount(), equalTo(2));
+        Assert.assertNotNull(snapshot.read(DateUtils.getTodayWithOffset(), 10));
+    }
+}
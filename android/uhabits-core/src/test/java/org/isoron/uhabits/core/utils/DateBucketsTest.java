@@ -0,0 +1,68 @@
+/*
+ * Copyright (C) 2017 linson Santos Xavier <isoron@gmail.com>
+ *
+ * This file is part of Loop Habit Tracker.
+ *
+ * Loop Habit Tracker is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * Loop Habit Tracker is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.isoron.uhabits.core.utils;
+
+import org.isoron.uhabits.core.*;
+import org.junit.*;
+
+import static java.util.Calendar.*;
+import static org.hamcrest.CoreMatchers.*;
+import static org.hamcrest.MatcherAssert.*;
+import static org.isoron.uhabits.core.utils.DateUtils.*;
+
+public class DateBucketsTest extends BaseUnitTest
+{
+    @Test
+    public void testTruncate_matchesCalendar()
+    {
+        long from = unixTime(1970, JANUARY, 1);
+        long to = unixTime(2101, JANUARY, 1);
+
+        for (TruncateField field : TruncateField.values())
+        {
+            for (int weekday = SUNDAY; weekday <= SATURDAY; weekday++)
+            {
+                for (long t = from; t < to; t += DAY_LENGTH)
+                {
+                    long expected = truncateWithCalendar(field, t, weekday);
+                    long actual = DateUtils.truncate(field, t, weekday);
+                    assertThat(actual, equalTo(expected));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testTruncate_preservesTimeOfDay()
+    {
+        long t = unixTime(2019, FEBRUARY, 14) + 13 * HOUR_LENGTH;
+        long expected = unixTime(2019, JANUARY, 1) + 13 * HOUR_LENGTH;
+        assertThat(DateUtils.truncate(TruncateField.YEAR, t, SUNDAY),
+            equalTo(expected));
+    }
+
+    @Test
+    public void testTruncate_outsideTable()
+    {
+        long t = unixTime(2350, AUGUST, 20);
+        assertThat(DateUtils.truncate(TruncateField.QUARTER, t, SUNDAY),
+            equalTo(unixTime(2350, JULY, 1)));
+    }
+}
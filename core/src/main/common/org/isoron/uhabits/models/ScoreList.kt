@@ -32,22 +32,14 @@ class ScoreList(private val checkmarkList: CheckmarkList) {
      * provided.
      */
     fun getUntil(date: LocalDate): List<Score> {
-        val frequency = checkmarkList.frequency
         val checks = checkmarkList.getUntil(date)
-        val scores = mutableListOf<Score>()
-        val type = checkmarkList.habitType
-
-        var currentScore = 0.0
-        checks.reversed().forEach { check ->
-            val value = if (type == HabitType.BOOLEAN_HABIT) {
-                min(1, check.value)
-            } else {
-                check.value
-            }
-            currentScore = compute(frequency, currentScore, value)
-            scores.add(Score(check.date, currentScore))
-        }
-        return scores.reversed()
+        val values = IntArray(checks.size) { checks[it].value }
+        val scores = DoubleArray(checks.size)
+        compute(checkmarkList.frequency,
+                checkmarkList.habitType,
+                values,
+                scores)
+        return checks.mapIndexed { i, check -> Score(check.date, scores[i]) }
     }
 
     fun getAt(date: LocalDate): Score {
@@ -62,9 +54,45 @@ class ScoreList(private val checkmarkList: CheckmarkList) {
         fun compute(frequency: Frequency,
                     previousScore: Double,
                     checkmarkValue: Int): Double {
-            val multiplier = 0.5.pow(frequency.toDouble() / 13.0)
+            val multiplier = multiplier(frequency)
             val score =  previousScore * multiplier + checkmarkValue * (1 - multiplier)
             return floor(score * 1e6) / 1e6
         }
+
+        /**
+         * Computes the scores for a sequence of consecutive days, given the
+         * values of their checkmarks. Both arrays are sorted from newest to
+         * oldest, and must have the same size. The oldest score is computed
+         * from an initial score of zero.
+         *
+         * Produces the same result as calling [compute] once per day, but
+         * evaluates the multiplier only once.
+         */
+        fun compute(frequency: Frequency,
+                    habitType: HabitType,
+                    checkmarkValues: IntArray,
+                    scores: DoubleArray) {
+            require(checkmarkValues.size == scores.size)
+            val multiplier = multiplier(frequency)
+            val complement = 1 - multiplier
+            var score = 0.0
+            if (habitType == HabitType.BOOLEAN_HABIT) {
+                for (i in checkmarkValues.indices.reversed()) {
+                    val value = min(1, checkmarkValues[i])
+                    score = floor((score * multiplier + value * complement) * 1e6) / 1e6
+                    scores[i] = score
+                }
+            } else {
+                for (i in checkmarkValues.indices.reversed()) {
+                    val value = checkmarkValues[i]
+                    score = floor((score * multiplier + value * complement) * 1e6) / 1e6
+                    scores[i] = score
+                }
+            }
+        }
+
+        private fun multiplier(frequency: Frequency): Double {
+            return 0.5.pow(frequency.toDouble() / 13.0)
+        }
     }
 }
\ No newline at end of file
@@ -23,6 +23,7 @@ import org.isoron.platform.time.*
 import org.isoron.uhabits.models.Checkmark.Companion.CHECKED_MANUAL
 import org.isoron.uhabits.models.Frequency.Companion.DAILY
 import org.isoron.uhabits.models.ScoreList.Companion.compute
+import kotlin.math.*
 import kotlin.test.*
 
 class ScoreListTest {
@@ -56,6 +57,20 @@ class ScoreListTest {
         assertEquals(compute(freq, 0.75, check), 0.736788)
     }
 
+    @Test
+    fun computeBulkMatchesSingleDay() {
+        val freq = Frequency(2, 7)
+        val values = intArrayOf(CHECKED_MANUAL, 0, 1, 0, CHECKED_MANUAL)
+        val actual = DoubleArray(values.size)
+        compute(freq, HabitType.BOOLEAN_HABIT, values, actual)
+
+        var previous = 0.0
+        for (i in values.indices.reversed()) {
+            previous = compute(freq, previous, min(1, values[i]))
+            assertEquals(previous, actual[i])
+        }
+    }
+
     @Test
     fun getValueUntilWithBooleanHabit() {
         val checks = CheckmarkList(DAILY,